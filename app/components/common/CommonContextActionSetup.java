@@ -1,11 +1,15 @@
 package components.common;
 
 import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import components.common.client.RequestDeadline;
 import components.common.journey.JourneyManager;
 import components.common.state.ContextParamManager;
 import play.i18n.MessagesApi;
 import play.mvc.Http;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Helper which sets up an HttpContext at the start of a request with all attributes required by the common library.
  */
@@ -13,20 +17,36 @@ public class CommonContextActionSetup {
 
   public static final String CTX_MESSAGE_API_NAME = "message_api";
 
+  private static final String REQUEST_BUDGET_CONFIG_PATH = "requestDeadline.budget";
+
   private final JourneyManager journeyManager;
   private final ContextParamManager contextParamManager;
   private final MessagesApi messagesApi;
+  private final long requestBudgetMillis;
 
+  /**
+   * @param config Config to read the optional {@code requestDeadline.budget} from, which limits the time allowed for
+   *               each request's calls to backend services (see {@link RequestDeadline}).
+   */
   @Inject
   public CommonContextActionSetup(JourneyManager journeyManager,
                                   ContextParamManager contextParamManager,
-                                  MessagesApi messagesApi) {
+                                  MessagesApi messagesApi,
+                                  Config config) {
     this.journeyManager = journeyManager;
     this.contextParamManager = contextParamManager;
     this.messagesApi = messagesApi;
+    this.requestBudgetMillis = config.hasPath(REQUEST_BUDGET_CONFIG_PATH) ?
+        config.getDuration(REQUEST_BUDGET_CONFIG_PATH, TimeUnit.MILLISECONDS) : 0;
   }
 
   public void setupContext(Http.Context ctx) {
+    if (requestBudgetMillis > 0) {
+      RequestDeadline.setUp(ctx, requestBudgetMillis);
+    } else {
+      RequestDeadline.setUp(ctx);
+    }
+
     //Order is important!
     contextParamManager.setAllContextArgsFromRequest();
     journeyManager.setContextArguments();
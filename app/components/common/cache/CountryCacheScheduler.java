@@ -4,22 +4,41 @@ import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.typesafe.config.Config;
 import scala.concurrent.duration.Duration;
 
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Refreshes the country cache at startup and then every {@code countryCache.refreshInterval} (default 1 day). Refreshes
+ * are conditional, so a short interval only rebuilds the cache when the countries have changed.
+ */
 public class CountryCacheScheduler {
 
+  private static final String REFRESH_INTERVAL_PATH = "countryCache.refreshInterval";
+  private static final long DEFAULT_REFRESH_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
   @Inject
-  public CountryCacheScheduler(ActorSystem system, @Named("updateCountryCacheActor") ActorRef updateCountryCache) {
+  public CountryCacheScheduler(ActorSystem system, @Named("updateCountryCacheActor") ActorRef updateCountryCache,
+                               Config config) {
+
+    long refreshIntervalMillis = getRefreshIntervalMillis(config);
 
     system.scheduler().schedule(
       Duration.create(0, TimeUnit.MILLISECONDS), // Initial delay
-      Duration.create(1, TimeUnit.DAYS), // Frequency
+      Duration.create(refreshIntervalMillis, TimeUnit.MILLISECONDS), // Frequency
       updateCountryCache,
-      "update country cache",
+      UpdateCountryCacheActor.LOAD_MESSAGE,
       system.dispatcher(),
       null);
   }
 
+  /**
+   * @return Interval between refreshes of the country cache.
+   */
+  public static long getRefreshIntervalMillis(Config config) {
+    return config.hasPath(REFRESH_INTERVAL_PATH) ?
+        config.getDuration(REFRESH_INTERVAL_PATH, TimeUnit.MILLISECONDS) : DEFAULT_REFRESH_INTERVAL_MILLIS;
+  }
+
 }
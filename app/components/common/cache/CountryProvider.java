@@ -1,68 +1,114 @@
 package components.common.cache;
 
-import static java.util.stream.Collectors.toMap;
-
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import components.common.client.CountryServiceClient;
-import org.slf4j.LoggerFactory;
 import uk.gov.bis.lite.countryservice.api.CountryView;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletionStage;
-import java.util.function.Function;
 
 public class CountryProvider {
 
-  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(CountryProvider.class);
-
-  private volatile Map<String, CountryView> cache = new HashMap<>();
   private final CountryServiceClient countryServiceClient;
+  private final ReferenceDataCache<String, CountryView> cache;
+  private volatile CountrySearchIndex searchIndex = new CountrySearchIndex(CountrySnapshot.EMPTY);
 
   @Inject
   public CountryProvider(CountryServiceClient countryServiceClient) {
+    this(countryServiceClient, new CountrySnapshotStore[0]);
+  }
+
+  /**
+   * Creates a provider which saves each successful load to the given stores. The countries last saved to the first store
+   * which has any are loaded immediately, so countries are available before the first load from the country service.
+   *
+   * @param countryServiceClient Client to load countries from.
+   * @param stores               Stores to load saved countries from and save loaded countries to, in order of preference.
+   */
+  public CountryProvider(CountryServiceClient countryServiceClient, CountrySnapshotStore... stores) {
     this.countryServiceClient = countryServiceClient;
+    this.cache = new ReferenceDataCache<>("country", CountrySnapshot::new, this::load, Arrays.asList(stores));
   }
 
   public CompletionStage<Boolean> serviceReachable() {
     return countryServiceClient.serviceReachable();
   }
 
+  /**
+   * @return The current countries. Use a single snapshot when making several lookups so they are consistent with each
+   * other, even if the countries are refreshed in between.
+   */
+  public CountrySnapshot getSnapshot() {
+    return (CountrySnapshot) cache.getSnapshot();
+  }
+
   public CountryView getCountry(String countryRef) {
-    if (countryRef == null) {
-      return null;
-    } else {
-      return cache.get(countryRef);
-    }
+    return cache.get(countryRef);
   }
 
-  public Collection<CountryView> getCountries() {
-    return Collections.unmodifiableCollection(cache.values());
+  /**
+   * @return Countries sorted by name.
+   */
+  public List<CountryView> getCountries() {
+    return getSnapshot().getCountries();
   }
 
   public Map<String, CountryView> getCountriesMap() {
-    return Collections.unmodifiableMap(cache);
+    return getSnapshot().getCountriesMap();
+  }
+
+  /**
+   * @see CountrySnapshot#findByName(String)
+   */
+  public CountryView findCountryByName(String name) {
+    return getSnapshot().findByName(name);
   }
 
+  /**
+   * @return Search index over the current countries, built on first use after each refresh.
+   */
+  public CountrySearchIndex getSearchIndex() {
+    CountrySnapshot snapshot = getSnapshot();
+    CountrySearchIndex index = searchIndex;
+    if (index.getVersion() != snapshot.getVersion()) {
+      index = new CountrySearchIndex(snapshot);
+      searchIndex = index;
+    }
+    return index;
+  }
+
+  /**
+   * Refreshes the countries from the country service. If the countries have not changed since the last refresh the
+   * current snapshot is kept.
+   */
   public CompletionStage<Void> loadCountries() {
-    LOGGER.info("Attempting to refresh the country cache....");
-    return countryServiceClient.getCountries()
-        .thenAcceptAsync(countries -> {
-          if (!countries.isEmpty()) {
-            cache = countries.stream()
-                .collect(toMap(CountryView::getCountryRef, Function.identity()));
-            LOGGER.info("Successfully refreshed the country cache.");
-          } else {
-            throw new RuntimeException("Failed to refresh country cache - Country Service Client getCountries error occurred.");
-          }
-        });
+    return cache.refresh();
+  }
+
+  public ReferenceDataCacheStatus getStatus() {
+    return cache.getStatus();
+  }
+
+  /**
+   * Replaces the countries with countries loaded elsewhere, e.g. by another instance of the application.
+   */
+  void updateCountries(List<CountryView> countries) {
+    cache.update(countries);
+  }
+
+  private CompletionStage<ReferenceDataLoadResult<CountryView>> load(String etag) {
+    return countryServiceClient.getCountriesIfModified(etag)
+        .thenApply(result -> result.isModified()
+            ? ReferenceDataLoadResult.modified(result.getCountries(), result.getEtag())
+            : ReferenceDataLoadResult.notModified());
   }
 
   @VisibleForTesting
   void setCache(Map<String, CountryView> cache) {
-    this.cache = cache;
+    this.cache.update(new ArrayList<>(cache.values()));
   }
 }
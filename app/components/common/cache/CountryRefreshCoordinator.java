@@ -0,0 +1,192 @@
+package components.common.cache;
+
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.LoggerFactory;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coordinates refreshes of a {@link CountryProvider} between the instances of an application which share a Redis server,
+ * so only one instance calls the country service per refresh.
+ * <p>
+ * After a random delay, each instance tries to take a short lease in Redis. The instance which gets the lease refreshes
+ * from the country service, saves the countries to Redis, records that they were published and publishes a message, then
+ * releases the lease. The other instances load the countries from Redis if they were already published in this round,
+ * otherwise when the message is received. They refresh from the country service themselves if no message is received
+ * before the lease expires. A round lasts for the maximum jitter plus the lease time, so instances which start late in a
+ * round don't refresh from the country service again.
+ * <p>
+ * The message includes the {@link CountrySnapshot#getContentHash() content hash} of the published countries, so other
+ * instances only load them from Redis if their own countries are different.
+ */
+public class CountryRefreshCoordinator {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(CountryRefreshCoordinator.class);
+
+  public static final long DEFAULT_MAX_JITTER_MILLIS = TimeUnit.SECONDS.toMillis(5);
+  public static final long DEFAULT_LEASE_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+  private static final char HASH_SEPARATOR = ':';
+
+  private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "country-refresh-coordinator");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final CountryProvider countryProvider;
+  private final RedisCountrySnapshotStore store;
+  private final RBucket<String> lease;
+  private final RBucket<String> lastPublished;
+  private final RTopic<String> topic;
+  private final long maxJitterMillis;
+  private final long leaseMillis;
+  private final String instanceId = UUID.randomUUID().toString();
+
+  private volatile CompletableFuture<Void> published = new CompletableFuture<>();
+
+  public CountryRefreshCoordinator(CountryProvider countryProvider, RedissonClient redissonClient, String keyPrefix) {
+    this(countryProvider, redissonClient, keyPrefix, DEFAULT_MAX_JITTER_MILLIS, DEFAULT_LEASE_MILLIS);
+  }
+
+  /**
+   * @param countryProvider Provider to refresh.
+   * @param redissonClient  Client for the Redis server shared by all instances.
+   * @param keyPrefix       Prefix of the Redis keys used, which must be the same for all instances.
+   * @param maxJitterMillis Maximum random delay before each refresh.
+   * @param leaseMillis     Time the instance refreshing from the country service has to publish the countries, before
+   *                        other instances refresh from the country service themselves.
+   */
+  public CountryRefreshCoordinator(CountryProvider countryProvider, RedissonClient redissonClient, String keyPrefix,
+                                   long maxJitterMillis, long leaseMillis) {
+    this.countryProvider = countryProvider;
+    this.store = new RedisCountrySnapshotStore(redissonClient, keyPrefix + ":countries");
+    this.lease = redissonClient.getBucket(keyPrefix + ":countries-lease", StringCodec.INSTANCE);
+    this.lastPublished = redissonClient.getBucket(keyPrefix + ":countries-last-published", StringCodec.INSTANCE);
+    this.topic = redissonClient.getTopic(keyPrefix + ":countries-published", StringCodec.INSTANCE);
+    this.maxJitterMillis = maxJitterMillis;
+    this.leaseMillis = leaseMillis;
+    this.topic.addListener((channel, message) -> SCHEDULER.execute(() -> onPublished(message)));
+  }
+
+  /**
+   * Refreshes the countries, from the country service if this instance is chosen to refresh, otherwise from Redis.
+   */
+  public CompletionStage<Void> refresh() {
+    long jitterMillis = maxJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(maxJitterMillis) : 0;
+    CompletableFuture<Void> result = new CompletableFuture<>();
+    SCHEDULER.schedule(() -> coordinate().whenComplete((nothing, error) -> {
+      if (error != null) {
+        result.completeExceptionally(error);
+      } else {
+        result.complete(null);
+      }
+    }), jitterMillis, TimeUnit.MILLISECONDS);
+    return result;
+  }
+
+  private CompletionStage<Void> coordinate() {
+    CompletableFuture<Void> waiting = new CompletableFuture<>();
+    published = waiting;
+    boolean leader;
+    String publishedMessage;
+    try {
+      leader = lease.trySet(instanceId, leaseMillis, TimeUnit.MILLISECONDS);
+      // Checked after the lease, so an instance which takes the lease after it was released doesn't refresh again
+      publishedMessage = lastPublished.get();
+    } catch (RuntimeException exception) {
+      LOGGER.warn("Unable to coordinate country cache refresh, refreshing from the country service", exception);
+      return countryProvider.loadCountries();
+    }
+
+    if (publishedMessage != null) {
+      if (leader) {
+        releaseLease();
+      }
+      if (load(publishedMessage)) {
+        return CompletableFuture.completedFuture(null);
+      } else {
+        return countryProvider.loadCountries();
+      }
+    } else if (leader) {
+      long version = countryProvider.getSnapshot().getVersion();
+      return countryProvider.loadCountries().thenRun(() -> {
+        CountrySnapshot snapshot = countryProvider.getSnapshot();
+        if (snapshot.getVersion() != version) {
+          store.save(snapshot.getCountries());
+        }
+        String message = instanceId + HASH_SEPARATOR + snapshot.getContentHash();
+        lastPublished.set(message, maxJitterMillis + leaseMillis, TimeUnit.MILLISECONDS);
+        topic.publish(message);
+      }).whenComplete((nothing, error) -> releaseLease());
+    } else {
+      SCHEDULER.schedule(() -> waiting.completeExceptionally(new TimeoutException()), leaseMillis, TimeUnit.MILLISECONDS);
+      return waiting.handle((nothing, error) -> error == null).thenCompose(received -> {
+        if (received) {
+          return CompletableFuture.completedFuture(null);
+        } else {
+          LOGGER.warn("Countries were not published by another instance, refreshing from the country service");
+          return countryProvider.loadCountries();
+        }
+      });
+    }
+  }
+
+  private void onPublished(String message) {
+    if (!message.startsWith(instanceId) && load(message)) {
+      published.complete(null);
+    }
+  }
+
+  /**
+   * Loads the countries published by another instance from Redis, unless this instance already has the same countries.
+   *
+   * @return False if the published countries could not be read from Redis.
+   */
+  private boolean load(String message) {
+    if (message.startsWith(instanceId)) {
+      return true;
+    }
+    int separator = message.indexOf(HASH_SEPARATOR);
+    String publishedHash = separator != -1 ? message.substring(separator + 1) : null;
+    CountrySnapshot current = countryProvider.getSnapshot();
+    if (!current.isEmpty() && current.getContentHash().equals(publishedHash)) {
+      return true;
+    }
+    Optional<List<CountryView>> countries = store.load().filter(list -> !list.isEmpty());
+    if (!countries.isPresent()) {
+      LOGGER.warn("Countries published by another instance could not be read from Redis");
+      return false;
+    }
+    // The countries are only saved when they change, so check they are the ones which were published
+    if (publishedHash != null && !new CountrySnapshot(0, countries.get()).getContentHash().equals(publishedHash)) {
+      LOGGER.warn("Countries in Redis are not the countries published by another instance");
+      return false;
+    }
+    countryProvider.updateCountries(countries.get());
+    LOGGER.info("Loaded {} countries published by another instance", countries.get().size());
+    return true;
+  }
+
+  private void releaseLease() {
+    try {
+      lease.compareAndSet(instanceId, null);
+    } catch (RuntimeException exception) {
+      LOGGER.warn("Unable to release country refresh lease", exception);
+    }
+  }
+
+}
@@ -0,0 +1,235 @@
+package components.common.cache;
+
+import org.apache.commons.lang3.StringUtils;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable search index over the names and synonyms of the countries in a {@link CountrySnapshot}, for autocomplete.
+ * <p>
+ * Queries are matched against the start of names and synonyms using a sorted term array, then against any part of them
+ * using a trigram index. Results are ranked: name prefix matches, then synonym prefix matches, then name and synonym
+ * substring matches, each in name order.
+ */
+public class CountrySearchIndex {
+
+  private static final int NAME_PREFIX = 0;
+  private static final int SYNONYM_PREFIX = 1;
+  private static final int NAME_SUBSTRING = 2;
+  private static final int SYNONYM_SUBSTRING = 3;
+  private static final int NO_MATCH = Integer.MAX_VALUE;
+
+  private final long version;
+  private final String etag;
+  private final List<CountryView> countries;
+  private final String[] names;
+  private final String[][] synonyms;
+  // Normalised names and synonyms in sorted order, with the index of the country each belongs to
+  private final String[] terms;
+  private final int[] termCountries;
+  private final Map<String, int[]> trigrams;
+
+  public CountrySearchIndex(CountrySnapshot snapshot) {
+    this.version = snapshot.getVersion();
+    this.countries = snapshot.getCountries();
+    this.etag = snapshot.getContentHash();
+
+    int size = countries.size();
+    this.names = new String[size];
+    this.synonyms = new String[size][];
+    List<Term> termList = new ArrayList<>();
+    Map<String, Set<Integer>> trigramSets = new HashMap<>();
+
+    for (int i = 0; i < size; i++) {
+      CountryView country = countries.get(i);
+      names[i] = normalise(country.getCountryName());
+      addTerm(termList, trigramSets, names[i], i);
+
+      List<String> countrySynonyms = country.getSynonyms() == null ? Collections.emptyList() : country.getSynonyms();
+      synonyms[i] = new String[countrySynonyms.size()];
+      for (int j = 0; j < countrySynonyms.size(); j++) {
+        synonyms[i][j] = normalise(countrySynonyms.get(j));
+        addTerm(termList, trigramSets, synonyms[i][j], i);
+      }
+    }
+
+    termList.sort((a, b) -> a.term.equals(b.term) ? Integer.compare(a.country, b.country) : a.term.compareTo(b.term));
+    this.terms = new String[termList.size()];
+    this.termCountries = new int[termList.size()];
+    for (int i = 0; i < termList.size(); i++) {
+      terms[i] = termList.get(i).term;
+      termCountries[i] = termList.get(i).country;
+    }
+
+    Map<String, int[]> postings = new HashMap<>();
+    trigramSets.forEach((trigram, set) -> postings.put(trigram, set.stream().mapToInt(Integer::intValue).sorted().toArray()));
+    this.trigrams = postings;
+  }
+
+  /**
+   * @return Version of the snapshot the index was built from.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return Hash of the indexed countries, see {@link CountrySnapshot#getContentHash()}.
+   */
+  public String getEtag() {
+    return etag;
+  }
+
+  /**
+   * @return All countries, sorted by name.
+   */
+  public List<CountryView> getCountries() {
+    return countries;
+  }
+
+  /**
+   * Finds countries whose name or a synonym starts with or contains the query, ignoring case and surrounding
+   * whitespace. Queries of fewer than three characters only match the start of names and synonyms.
+   *
+   * @param query Text entered by the user.
+   * @param limit Maximum number of countries to return.
+   * @return Matching countries, best matches first.
+   */
+  public List<CountryView> search(String query, int limit) {
+    String normalised = normalise(query);
+    if (normalised.isEmpty() || limit <= 0) {
+      return Collections.emptyList();
+    }
+
+    int[] ranks = new int[countries.size()];
+    Arrays.fill(ranks, NO_MATCH);
+    BitSet matched = new BitSet(countries.size());
+
+    for (int i = lowerBound(normalised); i < terms.length && terms[i].startsWith(normalised); i++) {
+      int country = termCountries[i];
+      ranks[country] = Math.min(ranks[country], names[country].startsWith(normalised) ? NAME_PREFIX : SYNONYM_PREFIX);
+      matched.set(country);
+    }
+
+    if (normalised.length() >= 3) {
+      for (int country : candidates(normalised)) {
+        if (ranks[country] == NO_MATCH) {
+          int rank = substringRank(country, normalised);
+          if (rank != NO_MATCH) {
+            ranks[country] = rank;
+            matched.set(country);
+          }
+        }
+      }
+    }
+
+    List<Integer> results = new ArrayList<>(matched.cardinality());
+    matched.stream().forEach(results::add);
+    // Countries are in name order, so a stable sort by rank keeps name order within each rank
+    results.sort((a, b) -> Integer.compare(ranks[a], ranks[b]));
+
+    List<CountryView> found = new ArrayList<>(Math.min(limit, results.size()));
+    for (int i = 0; i < results.size() && i < limit; i++) {
+      found.add(countries.get(results.get(i)));
+    }
+    return found;
+  }
+
+  private int substringRank(int country, String query) {
+    if (names[country].contains(query)) {
+      return NAME_SUBSTRING;
+    }
+    for (String synonym : synonyms[country]) {
+      if (synonym.contains(query)) {
+        return SYNONYM_SUBSTRING;
+      }
+    }
+    return NO_MATCH;
+  }
+
+  /**
+   * @return Countries with a name or synonym containing every trigram of the query, which must be at least three
+   * characters long. Candidates must still be checked for the whole query.
+   */
+  private int[] candidates(String query) {
+    int[] result = null;
+    for (int i = 0; i + 3 <= query.length(); i++) {
+      int[] posting = trigrams.get(query.substring(i, i + 3));
+      if (posting == null) {
+        return new int[0];
+      }
+      result = result == null ? posting : intersect(result, posting);
+      if (result.length == 0) {
+        return result;
+      }
+    }
+    return result;
+  }
+
+  private int lowerBound(String query) {
+    int low = 0;
+    int high = terms.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (terms[mid].compareTo(query) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int[] intersect(int[] a, int[] b) {
+    int[] result = new int[Math.min(a.length, b.length)];
+    int count = 0;
+    for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[count++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static void addTerm(List<Term> terms, Map<String, Set<Integer>> trigrams, String term, int country) {
+    if (term.isEmpty()) {
+      return;
+    }
+    terms.add(new Term(term, country));
+    for (int i = 0; i + 3 <= term.length(); i++) {
+      trigrams.computeIfAbsent(term.substring(i, i + 3), key -> new HashSet<>()).add(country);
+    }
+  }
+
+  private static String normalise(String text) {
+    return StringUtils.trimToEmpty(text).toLowerCase(Locale.ROOT);
+  }
+
+  private static class Term {
+
+    private final String term;
+    private final int country;
+
+    private Term(String term, int country) {
+      this.term = term;
+      this.country = country;
+    }
+  }
+
+}
@@ -0,0 +1,141 @@
+package components.common.cache;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang3.StringUtils;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Immutable view of a set of countries, with the lookups needed by country pages built up front. A new snapshot is built
+ * each time the countries are refreshed, so readers never see a partially updated set of countries.
+ */
+public class CountrySnapshot extends ReferenceDataSnapshot<String, CountryView> {
+
+  public static final CountrySnapshot EMPTY = new CountrySnapshot(0, Collections.emptyList());
+
+  private static final Comparator<CountryView> NAME_ORDER = Comparator
+      .comparing((CountryView country) -> StringUtils.defaultString(country.getCountryName()), String.CASE_INSENSITIVE_ORDER)
+      .thenComparing(country -> StringUtils.defaultString(country.getCountryRef()));
+
+  private final Map<String, CountryView> countriesByName;
+  private final Countries countries;
+  private volatile String contentHash;
+
+  /**
+   * @param version   Version of the snapshot, increasing each time the countries are refreshed.
+   * @param countries Countries in any order.
+   */
+  public CountrySnapshot(long version, Collection<CountryView> countries) {
+    super(version, countries, CountryView::getCountryRef, NAME_ORDER);
+
+    Map<String, CountryView> byName = new HashMap<>();
+    for (CountryView country : getValues()) {
+      if (country.getSynonyms() != null) {
+        country.getSynonyms().forEach(synonym -> byName.putIfAbsent(normalise(synonym), country));
+      }
+    }
+    // Names take precedence over synonyms
+    getValues().forEach(country -> byName.put(normalise(country.getCountryName()), country));
+    byName.remove("");
+    this.countriesByName = Collections.unmodifiableMap(byName);
+    this.countries = new Countries(this);
+  }
+
+  /**
+   * @return Countries sorted by name. The list is a {@link Countries}, so views can tell it comes from this snapshot.
+   */
+  public List<CountryView> getCountries() {
+    return countries;
+  }
+
+  /**
+   * @return Countries keyed by country ref, iterating in name order.
+   */
+  public Map<String, CountryView> getCountriesMap() {
+    return getMap();
+  }
+
+  public CountryView getCountry(String countryRef) {
+    return get(countryRef);
+  }
+
+  /**
+   * Finds a country by its name or one of its synonyms, ignoring case and surrounding whitespace.
+   *
+   * @param name Country name or synonym.
+   * @return The matching country, or null if there is no match.
+   */
+  public CountryView findByName(String name) {
+    return name == null ? null : countriesByName.get(normalise(name));
+  }
+
+  /**
+   * @return Hash of the refs, names and synonyms of the countries, which only changes when the countries change, even
+   * across restarts and between instances of an application. Unlike the version, this can be used to tell whether two
+   * instances have the same countries.
+   */
+  public String getContentHash() {
+    String hash = contentHash;
+    if (hash == null) {
+      Hasher hasher = Hashing.sha256().newHasher();
+      for (CountryView country : getValues()) {
+        hasher.putString(StringUtils.defaultString(country.getCountryRef()), StandardCharsets.UTF_8).putByte((byte) 0)
+            .putString(StringUtils.defaultString(country.getCountryName()), StandardCharsets.UTF_8).putByte((byte) 0);
+        if (country.getSynonyms() != null) {
+          country.getSynonyms().forEach(synonym ->
+              hasher.putString(StringUtils.defaultString(synonym), StandardCharsets.UTF_8).putByte((byte) 1));
+        }
+        hasher.putByte((byte) 2);
+      }
+      hash = hasher.hash().toString();
+      contentHash = hash;
+    }
+    return hash;
+  }
+
+  private static String normalise(String name) {
+    return StringUtils.trimToEmpty(name).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Unmodifiable list of the countries of a snapshot, which allows values derived from the countries (e.g. rendered
+   * options) to be cached per snapshot.
+   */
+  public static final class Countries extends AbstractList<CountryView> implements RandomAccess {
+
+    private final CountrySnapshot snapshot;
+
+    private Countries(CountrySnapshot snapshot) {
+      this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The snapshot the countries belong to.
+     */
+    public CountrySnapshot getSnapshot() {
+      return snapshot;
+    }
+
+    @Override
+    public CountryView get(int index) {
+      return snapshot.getValues().get(index);
+    }
+
+    @Override
+    public int size() {
+      return snapshot.getValues().size();
+    }
+  }
+
+}
@@ -0,0 +1,10 @@
+package components.common.cache;
+
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+/**
+ * Persists the last successfully loaded countries, so a {@link CountryProvider} can serve countries as soon as it starts,
+ * before the country service has been called.
+ */
+public interface CountrySnapshotStore extends ReferenceDataStore<CountryView> {
+}
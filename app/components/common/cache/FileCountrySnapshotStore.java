@@ -0,0 +1,16 @@
+package components.common.cache;
+
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.io.File;
+
+/**
+ * Stores countries as JSON in a local file.
+ */
+public class FileCountrySnapshotStore extends FileReferenceDataStore<CountryView> implements CountrySnapshotStore {
+
+  public FileCountrySnapshotStore(File file) {
+    super(file, CountryView[].class);
+  }
+
+}
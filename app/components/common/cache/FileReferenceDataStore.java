@@ -0,0 +1,68 @@
+package components.common.cache;
+
+import components.common.json.JsonCodec;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores reference data as JSON in a local file. The file is replaced atomically, so a partially written file is never
+ * read.
+ *
+ * @param <V> Type of the values.
+ */
+public class FileReferenceDataStore<V> implements ReferenceDataStore<V> {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(FileReferenceDataStore.class);
+
+  private final Path path;
+  private final Class<V[]> arrayClass;
+
+  /**
+   * @param file       File to store values in.
+   * @param arrayClass Array type of the values, used to read the file.
+   */
+  public FileReferenceDataStore(File file, Class<V[]> arrayClass) {
+    this.path = file.toPath();
+    this.arrayClass = arrayClass;
+  }
+
+  @Override
+  public Optional<List<V>> load() {
+    if (!Files.exists(path)) {
+      return Optional.empty();
+    }
+    try {
+      V[] values = JsonCodec.shared().readerFor(arrayClass).readValue(path.toFile());
+      return Optional.of(Arrays.asList(values));
+    } catch (IOException | RuntimeException exception) {
+      LOGGER.warn("Unable to read reference data from {}", path, exception);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void save(List<V> values) {
+    try {
+      Path directory = path.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+      try {
+        Files.write(temp, JsonCodec.shared().writeValueAsBytes(values));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException | RuntimeException exception) {
+      LOGGER.warn("Unable to write reference data to {}", path, exception);
+    }
+  }
+
+}
@@ -0,0 +1,15 @@
+package components.common.cache;
+
+import org.redisson.api.RedissonClient;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+/**
+ * Stores countries as JSON in a Redis key, so they can be shared between instances of an application.
+ */
+public class RedisCountrySnapshotStore extends RedisReferenceDataStore<CountryView> implements CountrySnapshotStore {
+
+  public RedisCountrySnapshotStore(RedissonClient redissonClient, String key) {
+    super(redissonClient, key, CountryView[].class);
+  }
+
+}
@@ -0,0 +1,59 @@
+package components.common.cache;
+
+import components.common.json.JsonCodec;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores reference data as JSON in a Redis key, so it can be shared between instances of an application.
+ *
+ * @param <V> Type of the values.
+ */
+public class RedisReferenceDataStore<V> implements ReferenceDataStore<V> {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(RedisReferenceDataStore.class);
+
+  private final RBucket<String> bucket;
+  private final Class<V[]> arrayClass;
+
+  /**
+   * @param redissonClient Redis client.
+   * @param key            Key to store values in.
+   * @param arrayClass     Array type of the values, used to read the stored JSON.
+   */
+  public RedisReferenceDataStore(RedissonClient redissonClient, String key, Class<V[]> arrayClass) {
+    this.bucket = redissonClient.getBucket(key, StringCodec.INSTANCE);
+    this.arrayClass = arrayClass;
+  }
+
+  @Override
+  public Optional<List<V>> load() {
+    try {
+      String json = bucket.get();
+      if (json == null) {
+        return Optional.empty();
+      }
+      V[] values = JsonCodec.shared().readerFor(arrayClass).readValue(json);
+      return Optional.of(Arrays.asList(values));
+    } catch (Exception exception) {
+      LOGGER.warn("Unable to read reference data from Redis", exception);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void save(List<V> values) {
+    try {
+      bucket.set(JsonCodec.shared().writeValueAsString(values));
+    } catch (Exception exception) {
+      LOGGER.warn("Unable to write reference data to Redis", exception);
+    }
+  }
+
+}
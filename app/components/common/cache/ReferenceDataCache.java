@@ -0,0 +1,233 @@
+package components.common.cache;
+
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory cache of reference data (e.g. countries or OGELs) which is loaded in full from a backend service and
+ * refreshed periodically.
+ * <p>
+ * Each load builds an immutable {@link ReferenceDataSnapshot}, which replaces the previous snapshot with a single
+ * volatile write, so readers never block and never see a partially updated set of values. Loads may be conditional: if
+ * the loader reports the values are unchanged the current snapshot is kept. Successful loads are saved to any
+ * {@link ReferenceDataStore}s, and the most recently saved values are loaded when the cache is created, so values are
+ * available immediately after a restart.
+ *
+ * @param <K> Type of the key of each value.
+ * @param <V> Type of the values.
+ */
+public class ReferenceDataCache<K, V> {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ReferenceDataCache.class);
+
+  private static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+  private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "reference-data-refresh");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Loads all values from their source.
+   */
+  public interface Loader<V> {
+
+    /**
+     * @param etag ETag of the previous successful load, or null if there is none.
+     * @return The values, or a not modified result if they are unchanged since the given ETag. Empty results are
+     * treated as a failure.
+     */
+    CompletionStage<ReferenceDataLoadResult<V>> load(String etag);
+  }
+
+  /**
+   * Builds a snapshot from loaded values, e.g. {@code CountrySnapshot::new}.
+   */
+  public interface SnapshotFactory<K, V> {
+    ReferenceDataSnapshot<K, V> create(long version, Collection<V> values);
+  }
+
+  private final String name;
+  private final SnapshotFactory<K, V> snapshotFactory;
+  private final Loader<V> loader;
+  private final List<ReferenceDataStore<V>> stores;
+
+  private final AtomicLong versions = new AtomicLong();
+  private volatile ReferenceDataSnapshot<K, V> snapshot;
+  private volatile String etag;
+
+  private final LongAdder refreshCount = new LongAdder();
+  private final LongAdder notModifiedCount = new LongAdder();
+  private final LongAdder failureCount = new LongAdder();
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private volatile long lastSuccessMillis;
+  private volatile long lastFailureMillis;
+  private volatile long lastRefreshDurationMillis;
+
+  private volatile ScheduledFuture<?> scheduledRefresh;
+  private volatile boolean scheduled;
+
+  /**
+   * @param name            Name of the cache, used for logging.
+   * @param snapshotFactory Factory to build snapshots with.
+   * @param loader          Loader for the values.
+   * @param stores          Stores to load saved values from when the cache is created, in order of preference, and to
+   *                        save loaded values to.
+   */
+  public ReferenceDataCache(String name, SnapshotFactory<K, V> snapshotFactory, Loader<V> loader,
+                            List<? extends ReferenceDataStore<V>> stores) {
+    this.name = name;
+    this.snapshotFactory = snapshotFactory;
+    this.loader = loader;
+    this.stores = Collections.unmodifiableList(new ArrayList<>(stores));
+    this.snapshot = snapshotFactory.create(0, Collections.emptyList());
+    warmStart();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public ReferenceDataSnapshot<K, V> getSnapshot() {
+    return snapshot;
+  }
+
+  public V get(K key) {
+    return snapshot.get(key);
+  }
+
+  /**
+   * @return Values in sorted order.
+   */
+  public List<V> getValues() {
+    return snapshot.getValues();
+  }
+
+  /**
+   * Loads the values from the loader, replacing the current snapshot unless the values are unchanged.
+   *
+   * @return Stage which completes when the load has finished, exceptionally if it failed.
+   */
+  public CompletionStage<Void> refresh() {
+    LOGGER.info("Attempting to refresh the {} cache....", name);
+    refreshCount.increment();
+    long startNanos = System.nanoTime();
+    return loader.load(etag)
+        .thenAccept(result -> {
+          if (!result.isModified()) {
+            notModifiedCount.increment();
+            LOGGER.info("The {} cache is up to date.", name);
+          } else if (!result.getValues().isEmpty()) {
+            setValues(result.getValues());
+            etag = result.getEtag();
+            stores.forEach(store -> store.save(result.getValues()));
+            LOGGER.info("Successfully refreshed the {} cache.", name);
+          } else {
+            throw new RuntimeException("Failed to refresh " + name + " cache - no values were loaded.");
+          }
+        })
+        .whenComplete((nothing, error) -> {
+          lastRefreshDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+          if (error != null) {
+            failureCount.increment();
+            consecutiveFailures.incrementAndGet();
+            lastFailureMillis = System.currentTimeMillis();
+          } else {
+            consecutiveFailures.set(0);
+            lastSuccessMillis = System.currentTimeMillis();
+          }
+        });
+  }
+
+  /**
+   * Replaces the values with values loaded elsewhere, e.g. by another instance of the application, and saves them to
+   * the stores.
+   */
+  public void update(List<V> values) {
+    setValues(values);
+    etag = null;
+    lastSuccessMillis = System.currentTimeMillis();
+    stores.forEach(store -> store.save(values));
+  }
+
+  /**
+   * Refreshes the cache now and then every interval. Failed refreshes are retried with exponential backoff, starting at
+   * one second, instead of waiting for the next interval.
+   *
+   * @param intervalMillis   Time between successful refreshes.
+   * @param maxBackoffMillis Maximum time between failed refreshes.
+   */
+  public synchronized void schedule(long intervalMillis, long maxBackoffMillis) {
+    cancel();
+    scheduled = true;
+    scheduleRefresh(0, intervalMillis, maxBackoffMillis);
+  }
+
+  /**
+   * Stops refreshes started by {@link #schedule(long, long)}. A refresh in progress is allowed to complete.
+   */
+  public synchronized void cancel() {
+    scheduled = false;
+    if (scheduledRefresh != null) {
+      scheduledRefresh.cancel(false);
+      scheduledRefresh = null;
+    }
+  }
+
+  public ReferenceDataCacheStatus getStatus() {
+    ReferenceDataSnapshot<K, V> current = snapshot;
+    return new ReferenceDataCacheStatus(name, current.getVersion(), current.size(), consecutiveFailures.get(),
+        refreshCount.sum(), notModifiedCount.sum(), failureCount.sum(), lastSuccessMillis, lastFailureMillis,
+        lastRefreshDurationMillis);
+  }
+
+  private synchronized void scheduleRefresh(long delayMillis, long intervalMillis, long maxBackoffMillis) {
+    if (!scheduled) {
+      return;
+    }
+    scheduledRefresh = SCHEDULER.schedule(() -> refresh().whenComplete((nothing, error) -> {
+      if (error != null) {
+        long backoffMillis = backoffMillis(consecutiveFailures.get(), maxBackoffMillis);
+        LOGGER.error("Error refreshing the {} cache, retrying in {}ms", name, backoffMillis, error);
+        scheduleRefresh(backoffMillis, intervalMillis, maxBackoffMillis);
+      } else {
+        scheduleRefresh(intervalMillis, intervalMillis, maxBackoffMillis);
+      }
+    }), delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private static long backoffMillis(int failures, long maxBackoffMillis) {
+    return Math.min(INITIAL_BACKOFF_MILLIS << Math.min(Math.max(failures - 1, 0), 20), maxBackoffMillis);
+  }
+
+  private void warmStart() {
+    for (ReferenceDataStore<V> store : stores) {
+      Optional<List<V>> values = store.load().filter(list -> !list.isEmpty());
+      if (values.isPresent()) {
+        setValues(values.get());
+        LOGGER.info("Loaded {} saved values into the {} cache from {}", values.get().size(), name,
+            store.getClass().getSimpleName());
+        return;
+      }
+    }
+  }
+
+  private void setValues(Collection<V> values) {
+    snapshot = snapshotFactory.create(versions.incrementAndGet(), values);
+  }
+
+}
@@ -0,0 +1,93 @@
+package components.common.cache;
+
+/**
+ * Health and metrics of a {@link ReferenceDataCache} at a point in time. Times are epoch milliseconds, or 0 if the event
+ * has not happened.
+ */
+public class ReferenceDataCacheStatus {
+
+  private final String name;
+  private final long version;
+  private final int size;
+  private final int consecutiveFailures;
+  private final long refreshCount;
+  private final long notModifiedCount;
+  private final long failureCount;
+  private final long lastSuccessMillis;
+  private final long lastFailureMillis;
+  private final long lastRefreshDurationMillis;
+
+  public ReferenceDataCacheStatus(String name, long version, int size, int consecutiveFailures, long refreshCount,
+                                  long notModifiedCount, long failureCount, long lastSuccessMillis,
+                                  long lastFailureMillis, long lastRefreshDurationMillis) {
+    this.name = name;
+    this.version = version;
+    this.size = size;
+    this.consecutiveFailures = consecutiveFailures;
+    this.refreshCount = refreshCount;
+    this.notModifiedCount = notModifiedCount;
+    this.failureCount = failureCount;
+    this.lastSuccessMillis = lastSuccessMillis;
+    this.lastFailureMillis = lastFailureMillis;
+    this.lastRefreshDurationMillis = lastRefreshDurationMillis;
+  }
+
+  /**
+   * @return true if the cache has values to serve, even if the most recent refreshes failed.
+   */
+  public boolean isHealthy() {
+    return size > 0;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  /**
+   * @return Number of refresh attempts, successful or not.
+   */
+  public long getRefreshCount() {
+    return refreshCount;
+  }
+
+  public long getNotModifiedCount() {
+    return notModifiedCount;
+  }
+
+  public long getFailureCount() {
+    return failureCount;
+  }
+
+  public long getLastSuccessMillis() {
+    return lastSuccessMillis;
+  }
+
+  public long getLastFailureMillis() {
+    return lastFailureMillis;
+  }
+
+  public long getLastRefreshDurationMillis() {
+    return lastRefreshDurationMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: healthy=%s, version=%d, size=%d, consecutiveFailures=%d, refreshes=%d, notModified=%d, " +
+            "failures=%d, lastSuccess=%d, lastFailure=%d, lastRefreshDuration=%dms", name, isHealthy(), version, size,
+        consecutiveFailures, refreshCount, notModifiedCount, failureCount, lastSuccessMillis, lastFailureMillis,
+        lastRefreshDurationMillis);
+  }
+
+}
@@ -0,0 +1,51 @@
+package components.common.cache;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of loading reference data for a {@link ReferenceDataCache}.
+ *
+ * @param <V> Type of the values.
+ */
+public class ReferenceDataLoadResult<V> {
+
+  private final boolean modified;
+  private final List<V> values;
+  private final String etag;
+
+  private ReferenceDataLoadResult(boolean modified, List<V> values, String etag) {
+    this.modified = modified;
+    this.values = values;
+    this.etag = etag;
+  }
+
+  /**
+   * @param values Loaded values.
+   * @param etag   Version of the values to pass to the next load, or null if the source does not support conditional
+   *               loads.
+   */
+  public static <V> ReferenceDataLoadResult<V> modified(List<V> values, String etag) {
+    return new ReferenceDataLoadResult<>(true, values, etag);
+  }
+
+  /**
+   * @return Result for a source whose values are unchanged since the previous load.
+   */
+  public static <V> ReferenceDataLoadResult<V> notModified() {
+    return new ReferenceDataLoadResult<>(false, Collections.emptyList(), null);
+  }
+
+  public boolean isModified() {
+    return modified;
+  }
+
+  public List<V> getValues() {
+    return values;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+}
@@ -0,0 +1,73 @@
+package components.common.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable set of reference data values, sorted and indexed by key when the snapshot is built. Subclass to add further
+ * indexes.
+ *
+ * @param <K> Type of the key of each value.
+ * @param <V> Type of the values.
+ */
+public class ReferenceDataSnapshot<K, V> {
+
+  private final long version;
+  private final List<V> values;
+  private final Map<K, V> valuesByKey;
+
+  /**
+   * @param version     Version of the snapshot, increasing each time the data is refreshed.
+   * @param values      Values in any order.
+   * @param keyFunction Function returning the key of a value.
+   * @param order       Order to sort values in.
+   */
+  public ReferenceDataSnapshot(long version, Collection<V> values, Function<V, K> keyFunction, Comparator<? super V> order) {
+    this.version = version;
+
+    List<V> sorted = new ArrayList<>(values);
+    sorted.sort(order);
+    this.values = Collections.unmodifiableList(sorted);
+
+    Map<K, V> byKey = new LinkedHashMap<>();
+    sorted.forEach(value -> byKey.put(keyFunction.apply(value), value));
+    this.valuesByKey = Collections.unmodifiableMap(byKey);
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return Values in sorted order.
+   */
+  public List<V> getValues() {
+    return values;
+  }
+
+  /**
+   * @return Values keyed by key, iterating in sorted order.
+   */
+  public Map<K, V> getMap() {
+    return valuesByKey;
+  }
+
+  public V get(K key) {
+    return key == null ? null : valuesByKey.get(key);
+  }
+
+  public boolean isEmpty() {
+    return values.isEmpty();
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+}
@@ -0,0 +1,24 @@
+package components.common.cache;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Persists the last successfully loaded values of a {@link ReferenceDataCache}, so the cache can serve values as soon as
+ * it is created, before the values have been loaded from their source.
+ *
+ * @param <V> Type of the values.
+ */
+public interface ReferenceDataStore<V> {
+
+  /**
+   * @return The last saved values, or empty if none have been saved or they cannot be read.
+   */
+  Optional<List<V>> load();
+
+  /**
+   * Saves the values, replacing any previously saved values. Implementations should log rather than throw on failure.
+   */
+  void save(List<V> values);
+
+}
@@ -9,7 +9,9 @@ import scala.concurrent.ExecutionContext;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class UpdateCountryCacheActor extends UntypedAbstractActor {
   public static final String LOAD_MESSAGE = "load";
@@ -17,14 +19,28 @@ public class UpdateCountryCacheActor extends UntypedAbstractActor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(UpdateCountryCacheActor.class);
 
-  private final CountryProvider countryProvider;
+  private final Supplier<CompletionStage<Void>> load;
   private final int maxDelaySeconds;
   private final ExecutionContext executionContext;
 
   private int attempts;
 
   public UpdateCountryCacheActor(CountryProvider countryProvider, int maxDelaySeconds, ExecutionContext executionContext) {
-    this.countryProvider = countryProvider;
+    this(countryProvider::loadCountries, maxDelaySeconds, executionContext);
+  }
+
+  /**
+   * Creates an actor which refreshes countries through a {@link CountryRefreshCoordinator}, so instances of the
+   * application share a single refresh from the country service.
+   */
+  public UpdateCountryCacheActor(CountryRefreshCoordinator coordinator, int maxDelaySeconds,
+                                 ExecutionContext executionContext) {
+    this(coordinator::refresh, maxDelaySeconds, executionContext);
+  }
+
+  private UpdateCountryCacheActor(Supplier<CompletionStage<Void>> load, int maxDelaySeconds,
+                                  ExecutionContext executionContext) {
+    this.load = load;
     this.maxDelaySeconds = maxDelaySeconds;
     this.executionContext = executionContext;
   }
@@ -38,7 +54,7 @@ public class UpdateCountryCacheActor extends UntypedAbstractActor {
       LOGGER.info("Scheduling cache load for delay of {} second(s)", delay.toSeconds());
       system.scheduler().scheduleOnce(delay, () -> {
         try {
-          countryProvider.loadCountries().toCompletableFuture().get();
+          load.get().toCompletableFuture().get();
           self().tell(STOP_MESSAGE, ActorRef.noSender());
           LOGGER.info("Successful cache load after {} attempts", attempts);
         } catch (Exception e) {
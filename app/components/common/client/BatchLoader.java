@@ -0,0 +1,215 @@
+package components.common.client;
+
+import components.common.logging.MdcUtil;
+import play.libs.concurrent.HttpExecutionContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects keys requested by concurrent callers over a short window, then loads them together with a single batch
+ * call. Each key is only loaded once per batch, however many callers requested it.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public class BatchLoader<K, V> {
+
+  private static final ScheduledExecutorService BATCH_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "service-client-batch");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final Function<Set<K>, CompletionStage<Map<K, V>>> batchFunction;
+  private final HttpExecutionContext context;
+
+  private Batch<K, V> pending;
+
+  /**
+   * @param windowMillis  Time to wait for further keys after the first key of a batch is requested.
+   * @param maxBatchSize  Number of keys which causes a batch to be loaded without waiting for the window to end.
+   * @param batchFunction Loads a batch of keys. Keys missing from the returned map fail with a {@link ClientException}.
+   */
+  public BatchLoader(long windowMillis, int maxBatchSize, Function<Set<K>, CompletionStage<Map<K, V>>> batchFunction) {
+    this(windowMillis, maxBatchSize, batchFunction, new HttpExecutionContext(Runnable::run));
+  }
+
+  /**
+   * @param windowMillis  Time to wait for further keys after the first key of a batch is requested.
+   * @param maxBatchSize  Number of keys which causes a batch to be loaded without waiting for the window to end.
+   * @param batchFunction Loads a batch of keys. Keys missing from the returned map fail with a {@link ClientException}.
+   * @param context       Execution context the batch function is run on. Each batch is loaded with the HTTP context and
+   *                      MDC of the request which started it, so the batch function sees that request's deadline, user
+   *                      and Correlation ID.
+   */
+  public BatchLoader(long windowMillis, int maxBatchSize, Function<Set<K>, CompletionStage<Map<K, V>>> batchFunction,
+                     HttpExecutionContext context) {
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.batchFunction = batchFunction;
+    this.context = context;
+  }
+
+  /**
+   * @param keys Keys to load.
+   * @return Values keyed by key, in the order of the given keys. Fails if any key fails to load.
+   */
+  public CompletionStage<Map<K, V>> loadAll(Collection<K> keys) {
+    Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+    List<Batch<K, V>> fullBatches = new ArrayList<>();
+    synchronized (this) {
+      for (K key : keys) {
+        if (!futures.containsKey(key)) {
+          if (pending == null) {
+            pending = new Batch<>(context.current(), MdcUtil.copy());
+            BATCH_SCHEDULER.schedule(this::dispatchPending, windowMillis, TimeUnit.MILLISECONDS);
+          }
+          futures.put(key, pending.futures.computeIfAbsent(key, k -> new CompletableFuture<>()));
+          if (pending.futures.size() >= maxBatchSize) {
+            fullBatches.add(pending);
+            pending = null;
+          }
+        }
+      }
+    }
+    fullBatches.forEach(this::dispatch);
+
+    return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+      Map<K, V> values = new LinkedHashMap<>();
+      futures.forEach((key, future) -> values.put(key, future.join()));
+      return values;
+    });
+  }
+
+  private void dispatchPending() {
+    Batch<K, V> batch;
+    synchronized (this) {
+      batch = pending;
+      pending = null;
+    }
+    if (batch != null) {
+      dispatch(batch);
+    }
+  }
+
+  private void dispatch(Batch<K, V> batch) {
+    try {
+      batch.executor.execute(() -> MdcUtil.runWith(batch.mdc, () -> load(batch.futures)));
+    } catch (RuntimeException exception) {
+      batch.futures.values().forEach(future -> future.completeExceptionally(exception));
+    }
+  }
+
+  private void load(Map<K, CompletableFuture<V>> futures) {
+    CompletionStage<Map<K, V>> stage;
+    try {
+      stage = batchFunction.apply(new LinkedHashSet<>(futures.keySet()));
+    } catch (RuntimeException exception) {
+      futures.values().forEach(future -> future.completeExceptionally(exception));
+      return;
+    }
+
+    stage.whenComplete((values, error) -> futures.forEach((key, future) -> {
+      if (error != null) {
+        future.completeExceptionally(error);
+      } else if (values.containsKey(key)) {
+        future.complete(values.get(key));
+      } else {
+        future.completeExceptionally(new ClientException("No value loaded for key " + key));
+      }
+    }));
+  }
+
+  /**
+   * Loads keys individually, with at most {@code parallelism} loads in progress at once. Useful as a batch function
+   * for services without a bulk endpoint.
+   *
+   * @param keys        Keys to load.
+   * @param parallelism Maximum number of concurrent loads.
+   * @param load        Loads a single key.
+   * @return Values keyed by key. Fails if any key fails to load.
+   */
+  public static <K, V> CompletionStage<Map<K, V>> fanOut(Collection<K> keys, int parallelism,
+                                                         Function<K, CompletionStage<V>> load) {
+    CompletableFuture<Map<K, V>> result = new CompletableFuture<>();
+    Map<K, V> values = new HashMap<>();
+    Set<K> uniqueKeys = new LinkedHashSet<>(keys);
+    Iterator<K> iterator = uniqueKeys.iterator();
+    int[] remaining = {uniqueKeys.size()};
+    if (uniqueKeys.isEmpty()) {
+      result.complete(values);
+    }
+    Map<String, String> mdc = MdcUtil.copy();
+    for (int i = 0; i < parallelism; i++) {
+      loadNext(iterator, load, mdc, values, remaining, result);
+    }
+    return result;
+  }
+
+  private static <K, V> void loadNext(Iterator<K> iterator, Function<K, CompletionStage<V>> load,
+                                      Map<String, String> mdc, Map<K, V> values, int[] remaining,
+                                      CompletableFuture<Map<K, V>> result) {
+    K key;
+    synchronized (values) {
+      if (!iterator.hasNext() || result.isDone()) {
+        return;
+      }
+      key = iterator.next();
+    }
+
+    CompletionStage<V> stage;
+    try {
+      // Later keys are loaded on the thread which completed the previous load, so restore the caller's MDC
+      stage = MdcUtil.callWith(mdc, () -> load.apply(key));
+    } catch (RuntimeException exception) {
+      result.completeExceptionally(exception);
+      return;
+    }
+
+    stage.whenComplete((value, error) -> {
+      if (error != null) {
+        result.completeExceptionally(error);
+        return;
+      }
+      boolean complete;
+      synchronized (values) {
+        values.put(key, value);
+        complete = --remaining[0] == 0;
+      }
+      if (complete) {
+        result.complete(values);
+      } else {
+        loadNext(iterator, load, mdc, values, remaining, result);
+      }
+    });
+  }
+
+  private static class Batch<K, V> {
+
+    private final Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+    private final Executor executor;
+    private final Map<String, String> mdc;
+
+    private Batch(Executor executor, Map<String, String> mdc) {
+      this.executor = executor;
+      this.mdc = mdc;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package components.common.client;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker for a single backend service. After a configured number of consecutive failures the breaker opens
+ * and rejects all requests until the reset timeout has elapsed. A single trial request is then allowed through (half
+ * open): if it succeeds the breaker closes, otherwise it opens again.
+ */
+public class CircuitBreaker {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final String serviceName;
+  private final int maxFailures;
+  private final long resetTimeoutMillis;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAtMillis;
+
+  public CircuitBreaker(String serviceName, int maxFailures, long resetTimeoutMillis) {
+    this.serviceName = serviceName;
+    this.maxFailures = maxFailures;
+    this.resetTimeoutMillis = resetTimeoutMillis;
+  }
+
+  /**
+   * @return True if a request may be made, false if the breaker is rejecting requests.
+   */
+  public synchronized boolean tryAcquirePermission() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (System.currentTimeMillis() - openedAtMillis >= resetTimeoutMillis) {
+          LOGGER.info("{} circuit breaker half open, allowing trial request", serviceName);
+          state = State.HALF_OPEN;
+          return true;
+        } else {
+          return false;
+        }
+      default:
+        //Trial request already in flight
+        return false;
+    }
+  }
+
+  public synchronized void recordSuccess() {
+    consecutiveFailures = 0;
+    if (state != State.CLOSED) {
+      LOGGER.info("{} circuit breaker closed", serviceName);
+      state = State.CLOSED;
+    }
+  }
+
+  public synchronized void recordFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= maxFailures)) {
+      LOGGER.warn("{} circuit breaker opened after {} consecutive failure(s)", serviceName, consecutiveFailures);
+      state = State.OPEN;
+      openedAtMillis = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Records the end of a request whose outcome says nothing about the service, such as a request whose body failed on
+   * the client side. The consecutive failure count is unchanged, and a trial request is allowed again if this was the
+   * trial.
+   */
+  public synchronized void releasePermission() {
+    if (state == State.HALF_OPEN) {
+      state = State.OPEN;
+    }
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+}
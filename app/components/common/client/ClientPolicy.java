@@ -0,0 +1,85 @@
+package components.common.client;
+
+import com.typesafe.config.Config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resilience settings applied to every request made through a {@link ServiceClientCore}.
+ */
+public class ClientPolicy {
+
+  public static final ClientPolicy DEFAULT = new ClientPolicy(50, 5, 30000, 2, 100);
+
+  private final int maxConcurrentRequests;
+  private final int maxFailures;
+  private final long resetTimeoutMillis;
+  private final int maxRetries;
+  private final long retryBaseDelayMillis;
+
+  /**
+   * @param maxConcurrentRequests Maximum number of in-flight requests to the service. Further requests are rejected
+   *                              immediately.
+   * @param maxFailures           Number of consecutive failures (errors or 5xx responses) which opens the circuit breaker.
+   * @param resetTimeoutMillis    Time the circuit breaker stays open before allowing a trial request.
+   * @param maxRetries            Maximum number of retries for idempotent requests.
+   * @param retryBaseDelayMillis  Base delay for exponential retry backoff. Each delay is randomly jittered between zero
+   *                              and the backoff value.
+   */
+  public ClientPolicy(int maxConcurrentRequests, int maxFailures, long resetTimeoutMillis, int maxRetries,
+                      long retryBaseDelayMillis) {
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.maxFailures = maxFailures;
+    this.resetTimeoutMillis = resetTimeoutMillis;
+    this.maxRetries = maxRetries;
+    this.retryBaseDelayMillis = retryBaseDelayMillis;
+  }
+
+  /**
+   * Reads the {@code maxConcurrentRequests}, {@code maxFailures}, {@code resetTimeout}, {@code maxRetries} and
+   * {@code retryBaseDelay} settings at the given path, e.g.
+   * <pre>customerService.policy { maxConcurrentRequests = 100, maxFailures = 10, resetTimeout = 10s }</pre>
+   * Missing settings are taken from the defaults.
+   *
+   * @param config   Application config.
+   * @param path     Path of the settings.
+   * @param defaults Settings to use where the config has none.
+   * @return Client policy.
+   */
+  public static ClientPolicy fromConfig(Config config, String path, ClientPolicy defaults) {
+    if (!config.hasPath(path)) {
+      return defaults;
+    }
+    Config policyConfig = config.getConfig(path);
+    int maxConcurrentRequests = policyConfig.hasPath("maxConcurrentRequests") ?
+        policyConfig.getInt("maxConcurrentRequests") : defaults.getMaxConcurrentRequests();
+    int maxFailures = policyConfig.hasPath("maxFailures") ?
+        policyConfig.getInt("maxFailures") : defaults.getMaxFailures();
+    long resetTimeoutMillis = policyConfig.hasPath("resetTimeout") ?
+        policyConfig.getDuration("resetTimeout", TimeUnit.MILLISECONDS) : defaults.getResetTimeoutMillis();
+    int maxRetries = policyConfig.hasPath("maxRetries") ? policyConfig.getInt("maxRetries") : defaults.getMaxRetries();
+    long retryBaseDelayMillis = policyConfig.hasPath("retryBaseDelay") ?
+        policyConfig.getDuration("retryBaseDelay", TimeUnit.MILLISECONDS) : defaults.getRetryBaseDelayMillis();
+    return new ClientPolicy(maxConcurrentRequests, maxFailures, resetTimeoutMillis, maxRetries, retryBaseDelayMillis);
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  public int getMaxFailures() {
+    return maxFailures;
+  }
+
+  public long getResetTimeoutMillis() {
+    return resetTimeoutMillis;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public long getRetryBaseDelayMillis() {
+    return retryBaseDelayMillis;
+  }
+}
@@ -0,0 +1,49 @@
+package components.common.client;
+
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a conditional request for countries, see {@link CountryServiceClient#getCountriesIfModified(String)}.
+ */
+public class CountriesResult {
+
+  private final boolean modified;
+  private final List<CountryView> countries;
+  private final String etag;
+
+  private CountriesResult(boolean modified, List<CountryView> countries, String etag) {
+    this.modified = modified;
+    this.countries = countries;
+    this.etag = etag;
+  }
+
+  public static CountriesResult modified(List<CountryView> countries, String etag) {
+    return new CountriesResult(true, countries, etag);
+  }
+
+  public static CountriesResult notModified(String etag) {
+    return new CountriesResult(false, Collections.emptyList(), etag);
+  }
+
+  /**
+   * @return false if the countries are unchanged since the given ETag, in which case {@link #getCountries()} is empty.
+   */
+  public boolean isModified() {
+    return modified;
+  }
+
+  public List<CountryView> getCountries() {
+    return countries;
+  }
+
+  /**
+   * @return ETag to pass to the next conditional request.
+   */
+  public String getEtag() {
+    return etag;
+  }
+
+}
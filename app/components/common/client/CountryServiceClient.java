@@ -3,7 +3,7 @@ package components.common.client;
 import static components.common.client.RequestUtil.handleAsBoolean;
 import static components.common.client.RequestUtil.parseList;
 
-import components.common.logging.CorrelationId;
+import com.google.common.hash.Hashing;
 import org.slf4j.LoggerFactory;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.WSClient;
@@ -26,6 +26,10 @@ public class CountryServiceClient {
   private static final String GET_COUNTRIES_GROUP_URL = "%s/countries/group/%s";
   private static final String GET_COUNTRY_DATA_URL = "%s/country-data";
 
+  private static final String ETAG = "ETag";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String HASH_ETAG_PREFIX = "sha256:";
+
   public enum CountryServiceEndpoint {
     SET,
     GROUP,
@@ -38,17 +42,33 @@ public class CountryServiceClient {
   private final String credentials;
   private final WSClient wsClient;
   private final HttpExecutionContext context;
+  private final ServiceClientCore core;
 
   public CountryServiceClient(String address, int timeout, String credentials,
                               WSClient wsClient, HttpExecutionContext httpExecutionContext,
                               CountryServiceEndpoint countryServiceEndpoint,
                               String countryParamName) {
+    this(address, timeout, credentials, wsClient, httpExecutionContext, countryServiceEndpoint, countryParamName,
+        ClientPolicy.DEFAULT);
+  }
+
+  /**
+   * All clients of the country service share one circuit breaker and bulkhead, whichever endpoint they use.
+   *
+   * @param policy Resilience settings of requests to the service, e.g. read from {@code countryService.policy} with
+   *               {@link ClientPolicy#fromConfig}. See {@link ServiceClientCore#shared}.
+   */
+  public CountryServiceClient(String address, int timeout, String credentials,
+                              WSClient wsClient, HttpExecutionContext httpExecutionContext,
+                              CountryServiceEndpoint countryServiceEndpoint,
+                              String countryParamName, ClientPolicy policy) {
     this.address = address;
     this.timeout = timeout;
     this.credentials = credentials;
     this.wsClient = wsClient;
     this.context = httpExecutionContext;
     this.url = buildUrl(address, countryServiceEndpoint, countryParamName);
+    this.core = ServiceClientCore.shared(COUNTRY_SERVICE, timeout, policy, wsClient);
   }
 
   public CompletionStage<Boolean> serviceReachable() {
@@ -61,12 +81,10 @@ public class CountryServiceClient {
   }
 
   public CompletionStage<List<CountryView>> getCountries() {
-    WSRequest request = wsClient.url(url)
-        .setAuth(credentials)
-        .setRequestFilter(CorrelationId.requestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
+    WSRequest request = core.url(url, timeout)
+        .setAuth(credentials);
 
-    return request.get().handleAsync((response, error) ->
+    return core.get(request).handleAsync((response, error) ->
             parseList(request, response, error, COUNTRY_SERVICE, "getCountries", CountryView[].class),
         context.current())
         .exceptionally(error -> {
@@ -75,6 +93,40 @@ public class CountryServiceClient {
         });
   }
 
+  /**
+   * Gets countries only if they have changed since a previous request. An {@code If-None-Match} header is sent if the
+   * service provided an ETag. Otherwise a hash of the response body is used as the ETag, so unchanged countries are not
+   * parsed again.
+   *
+   * @param etag ETag from the previous {@link CountriesResult}, or null to always get the countries.
+   * @return The countries if they have changed. Completes exceptionally with a {@link ClientException} if the
+   * countries cannot be retrieved.
+   */
+  public CompletionStage<CountriesResult> getCountriesIfModified(String etag) {
+    WSRequest request = core.url(url, timeout)
+        .setAuth(credentials);
+    if (etag != null && !etag.startsWith(HASH_ETAG_PREFIX)) {
+      request.addHeader(IF_NONE_MATCH, etag);
+    }
+
+    return core.get(request).handleAsync((response, error) -> {
+      if (error == null && response.getStatus() == 304) {
+        return CountriesResult.notModified(etag);
+      }
+      String responseEtag = null;
+      if (error == null && response.getStatus() == 200) {
+        responseEtag = response.getSingleHeader(ETAG)
+            .orElseGet(() -> HASH_ETAG_PREFIX + Hashing.sha256().hashBytes(response.asByteArray()));
+        if (responseEtag.equals(etag)) {
+          return CountriesResult.notModified(etag);
+        }
+      }
+      List<CountryView> countries = parseList(request, response, error, COUNTRY_SERVICE, "getCountriesIfModified",
+          CountryView[].class);
+      return CountriesResult.modified(countries, responseEtag);
+    }, context.current());
+  }
+
   private String buildUrl(String address, CountryServiceEndpoint countryServiceEndpoint, String countryParamName) {
     switch (countryServiceEndpoint) {
       case SET:
@@ -4,11 +4,15 @@ import static components.common.client.RequestUtil.handleAsBoolean;
 import static components.common.client.RequestUtil.parse;
 import static components.common.client.RequestUtil.parseList;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import components.common.logging.CorrelationId;
+import com.typesafe.config.Config;
 import components.common.logging.ServiceClientLogger;
 import filters.common.JwtRequestFilter;
+import filters.common.JwtUserRequestFilter;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.WSClient;
 import play.libs.ws.WSRequest;
@@ -16,37 +20,69 @@ import uk.gov.bis.lite.customer.api.view.CustomerView;
 import uk.gov.bis.lite.customer.api.view.SiteView;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
+@Singleton
 public class CustomerServiceClient {
 
   private static final String SERVICE_ADMIN_SERVLET_PING_PATH = "/admin/ping";
   private static final String CUSTOMER_SERVICE = "customer-service";
+  private static final String POLICY_CONFIG_PATH = "customerService.policy";
 
   private static final String GET_CUSTOMER_PATH = "%s/customers/%s";
   private static final String GET_CUSTOMERS_PATH = "%s/user-customers/user/%s";
   private static final String GET_SITE_PATH = "%s/sites/%s";
   private static final String GET_SITES_PATH = "%s/user-sites/customer/%s/user/%s";
 
+  private static final long BATCH_WINDOW_MILLIS = 5;
+  private static final int MAX_BATCH_SIZE = 100;
+  private static final int MAX_PARALLEL_REQUESTS = 8;
+
   private final String address;
   private final int timeout;
   private final String credentials;
   private final WSClient wsClient;
   private final HttpExecutionContext context;
+  private final ServiceClientCore core;
   private final JwtRequestFilter jwtRequestFilter;
 
+  //Batches are loaded on behalf of a single user, so each user has their own loaders
+  private final Cache<String, BatchLoader<String, CustomerView>> customerLoaders = CacheBuilder.newBuilder()
+      .expireAfterAccess(1, TimeUnit.MINUTES)
+      .build();
+  private final Cache<String, BatchLoader<String, SiteView>> siteLoaders = CacheBuilder.newBuilder()
+      .expireAfterAccess(1, TimeUnit.MINUTES)
+      .build();
+
   @Inject
   public CustomerServiceClient(@Named("customerServiceAddress") String address,
                                @Named("customerServiceTimeout") int timeout,
                                @Named("customerServiceCredentials") String credentials,
                                WSClient wsClient, HttpExecutionContext httpExecutionContext,
-                               JwtRequestFilter jwtRequestFilter) {
+                               JwtRequestFilter jwtRequestFilter, Config config) {
+    this(address, timeout, credentials, wsClient, httpExecutionContext, jwtRequestFilter,
+        ClientPolicy.fromConfig(config, POLICY_CONFIG_PATH, ClientPolicy.DEFAULT));
+  }
+
+  /**
+   * @param policy Resilience settings of requests to the service, see {@link ServiceClientCore#shared}.
+   */
+  public CustomerServiceClient(String address, int timeout, String credentials, WSClient wsClient,
+                               HttpExecutionContext httpExecutionContext, JwtRequestFilter jwtRequestFilter,
+                               ClientPolicy policy) {
     this.address = address;
     this.timeout = timeout;
     this.credentials = credentials;
     this.wsClient = wsClient;
     this.context = httpExecutionContext;
+    this.core = ServiceClientCore.shared(CUSTOMER_SERVICE, timeout, policy, wsClient);
     this.jwtRequestFilter = jwtRequestFilter;
   }
 
@@ -61,50 +97,92 @@ public class CustomerServiceClient {
 
   public CompletionStage<List<SiteView>> getSitesByCustomerIdUserId(String customerId, String userId) {
     String url = String.format(GET_SITES_PATH, address, customerId, userId);
-    WSRequest request = wsClient.url(url)
+    JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter("Customer", "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestFilter(CorrelationId.requestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
-    return request.get().handleAsync((response, error) ->
+        .setRequestFilter(jwtFilter);
+    return core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parseList(request, response, error, CUSTOMER_SERVICE, "getSitesByCustomerIdUserId", SiteView[].class),
         context.current());
   }
 
   public CompletionStage<List<CustomerView>> getCustomersByUserId(String userId) {
     String url = String.format(GET_CUSTOMERS_PATH, address, userId);
-    WSRequest request = wsClient.url(url)
+    JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter("Customer", "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestFilter(CorrelationId.requestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
-    return request.get().handleAsync((response, error) ->
+        .setRequestFilter(jwtFilter);
+    return core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parseList(request, response, error, CUSTOMER_SERVICE, "getCustomersByUserId", CustomerView[].class),
         context.current());
   }
 
   public CompletionStage<CustomerView> getCustomer(String customerId) {
+    return getCustomer(customerId, jwtRequestFilter.forCurrentUser());
+  }
+
+  public CompletionStage<SiteView> getSite(String siteId) {
+    return getSite(siteId, jwtRequestFilter.forCurrentUser());
+  }
+
+  /**
+   * Gets several customers at once. Ids requested by concurrent calls for the same user are combined into a single
+   * batch, and each id in a batch is only requested once.
+   *
+   * @param customerIds Ids of the customers to get.
+   * @return Customers keyed by id. Fails if any customer cannot be retrieved.
+   */
+  public CompletionStage<Map<String, CustomerView>> getCustomers(Collection<String> customerIds) {
+    return getLoader(customerLoaders, this::getCustomer).loadAll(customerIds)
+        .thenApplyAsync(Function.identity(), context.current());
+  }
+
+  /**
+   * Gets several sites at once, batching requests as {@link #getCustomers(Collection)}.
+   *
+   * @param siteIds Ids of the sites to get.
+   * @return Sites keyed by id. Fails if any site cannot be retrieved.
+   */
+  public CompletionStage<Map<String, SiteView>> getSites(Collection<String> siteIds) {
+    return getLoader(siteLoaders, this::getSite).loadAll(siteIds)
+        .thenApplyAsync(Function.identity(), context.current());
+  }
+
+  private CompletionStage<CustomerView> getCustomer(String customerId, JwtUserRequestFilter jwtFilter) {
     String url = String.format(GET_CUSTOMER_PATH, address, customerId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter("Customer", "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
-    return request.get().handleAsync((response, error) ->
+        .setRequestFilter(jwtFilter);
+    return core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parse(request, response, error, CUSTOMER_SERVICE, "getCustomer", CustomerView.class),
         context.current());
   }
 
-  public CompletionStage<SiteView> getSite(String siteId) {
+  private CompletionStage<SiteView> getSite(String siteId, JwtUserRequestFilter jwtFilter) {
     String url = String.format(GET_SITE_PATH, address, siteId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter("Customer", "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
-    return request.get().handleAsync((response, error) ->
+        .setRequestFilter(jwtFilter);
+    return core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parse(request, response, error, CUSTOMER_SERVICE, "getSite", SiteView.class),
         context.current());
   }
 
+  /**
+   * Batches are loaded with the HTTP context of the request which started them, so the JWT filter is created for each
+   * batch from that request's user, rather than kept for the lifetime of the loader.
+   */
+  private <V> BatchLoader<String, V> getLoader(Cache<String, BatchLoader<String, V>> loaders,
+                                               BiFunction<String, JwtUserRequestFilter, CompletionStage<V>> load) {
+    String userId = String.valueOf(jwtRequestFilter.forCurrentUser().getUserId());
+    try {
+      return loaders.get(userId, () -> new BatchLoader<>(BATCH_WINDOW_MILLIS, MAX_BATCH_SIZE, ids -> {
+        JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+        return BatchLoader.fanOut(ids, MAX_PARALLEL_REQUESTS, id -> load.apply(id, jwtFilter));
+      }, context));
+    } catch (ExecutionException e) {
+      throw new ClientException("Unable to create " + CUSTOMER_SERVICE + " batch loader", e.getCause());
+    }
+  }
+
 }
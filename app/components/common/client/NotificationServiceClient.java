@@ -1,32 +1,144 @@
 package components.common.client;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import com.typesafe.config.Config;
+import components.common.json.JsonCodec;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
 import uk.gov.bis.lite.notification.api.EmailNotification;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+/**
+ * Sends email notifications to the Notification service's SQS queue.
+ * <p>
+ * Emails are added to a bounded in-memory queue and sent by a background thread in batches of up to 10 messages, so
+ * callers are never blocked by SQS. Batches which fail are retried with exponential backoff. Messages which still cannot
+ * be sent, or which do not fit in the queue, are written to the spool directory (if one is configured) and resent once
+ * SQS is available again.
+ * <p>
+ * Spooled messages are written to a temporary file which is then atomically renamed, so a partly written message is
+ * never resent. Spooled messages which cannot be read, and messages which are larger than SQS accepts or which SQS has
+ * rejected {@value #MAX_SPOOL_ATTEMPTS} times, are moved to the {@code dead-letter} subdirectory of the
+ * spool directory, so they do not hold up the rest of the spool.
+ */
+@Singleton
 public class NotificationServiceClient {
 
   private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(NotificationServiceClient.class);
-  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+  private static final String QUEUE_CAPACITY_PATH = "notificationService.queueCapacity";
+  private static final String SPOOL_DIRECTORY_PATH = "notificationService.spoolDirectory";
+
+  private static final int MAX_BATCH_SIZE = 10;
+  private static final int MAX_BATCH_BYTES = 256 * 1024;
+  private static final int MAX_SPOOL_ATTEMPTS = 10;
+  private static final int MAX_ATTEMPTS = 5;
+  private static final long INITIAL_BACKOFF_MILLIS = 100;
+  private static final long MAX_BACKOFF_MILLIS = 5000;
+  private static final long IDLE_POLL_MILLIS = 1000;
+  private static final long SPOOL_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+  private static final String SPOOL_FILE_SUFFIX = ".json";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final String DEAD_LETTER_DIRECTORY = "dead-letter";
 
   private final AmazonSQS amazonSQS;
   private final String notificationServiceAwsSqsQueueUrl;
+  private final Path spoolDirectory;
+  private final Path deadLetterDirectory;
+  private final BlockingQueue<String> queue;
+  private final Thread sender;
+
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final LongAdder sentCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private volatile boolean running = true;
+  private long nextSpoolAttemptMillis;
 
+  /**
+   * The queue capacity and spool directory are read from {@code notificationService.queueCapacity} and
+   * {@code notificationService.spoolDirectory}. Messages are not spooled if no spool directory is configured.
+   */
   @Inject
   public NotificationServiceClient(@Named("notificationServiceAwsSqsQueueUrl") String notificationServiceAwsSqsQueueUrl,
-                                   AmazonSQS amazonSQS) {
+                                   AmazonSQS amazonSQS, ApplicationLifecycle applicationLifecycle, Config config) {
+    this(notificationServiceAwsSqsQueueUrl, amazonSQS,
+        config.hasPath(QUEUE_CAPACITY_PATH) ? config.getInt(QUEUE_CAPACITY_PATH) : DEFAULT_QUEUE_CAPACITY,
+        config.hasPath(SPOOL_DIRECTORY_PATH) ? new File(config.getString(SPOOL_DIRECTORY_PATH)) : null);
+    applicationLifecycle.addStopHook(() -> {
+      close();
+      return CompletableFuture.completedFuture(null);
+    });
+  }
+
+  public NotificationServiceClient(String notificationServiceAwsSqsQueueUrl, AmazonSQS amazonSQS) {
+    this(notificationServiceAwsSqsQueueUrl, amazonSQS, DEFAULT_QUEUE_CAPACITY, null);
+  }
+
+  /**
+   * @param notificationServiceAwsSqsQueueUrl URL of the Notification service's SQS queue.
+   * @param amazonSQS                         SQS client.
+   * @param queueCapacity                     Maximum number of messages waiting to be sent.
+   * @param spoolDirectory                    Directory to write messages which cannot be sent to, or null to log and
+   *                                          discard them.
+   */
+  public NotificationServiceClient(String notificationServiceAwsSqsQueueUrl, AmazonSQS amazonSQS, int queueCapacity,
+                                   File spoolDirectory) {
     this.notificationServiceAwsSqsQueueUrl = notificationServiceAwsSqsQueueUrl;
     this.amazonSQS = amazonSQS;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    if (spoolDirectory != null) {
+      this.spoolDirectory = spoolDirectory.toPath();
+      this.deadLetterDirectory = this.spoolDirectory.resolve(DEAD_LETTER_DIRECTORY);
+      try {
+        Files.createDirectories(this.deadLetterDirectory);
+      } catch (IOException ioe) {
+        throw new RuntimeException("Unable to create notification spool directory " + spoolDirectory, ioe);
+      }
+    } else {
+      this.spoolDirectory = null;
+      this.deadLetterDirectory = null;
+    }
+    this.sender = new Thread(this::run, "notification-sender");
+    this.sender.setDaemon(true);
+    this.sender.start();
   }
 
   /**
-   * Sends an email using the Notification service.
+   * Sends an email using the Notification service. The email is queued and sent in the background.
    *
    * @param templateName    Template name of email to send. This must be registered on the Notification service.
    * @param emailAddress    Recipient email address.
@@ -39,15 +151,402 @@ public class NotificationServiceClient {
     emailNotification.setPersonalisation(personalisation);
     String message;
     try {
-      message = MAPPER.writeValueAsString(emailNotification);
+      message = JsonCodec.shared().writeValueAsString(emailNotification);
     } catch (JsonProcessingException jpe) {
       throw new RuntimeException("Unable to write email notification as string ", jpe);
     }
+    LOGGER.info("Sending message type {} to {}", templateName, emailAddress);
+    pendingCount.incrementAndGet();
+    if (!running || !queue.offer(message)) {
+      pendingCount.decrementAndGet();
+      LOGGER.warn("Notification queue is full or closed, spooling message type {} to {}", templateName, emailAddress);
+      spool(message);
+    }
+  }
+
+  /**
+   * @return Number of messages waiting in the in-memory queue.
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * @return Number of messages sent to SQS.
+   */
+  public long getSentCount() {
+    return sentCount.sum();
+  }
+
+  /**
+   * @return Number of messages which could not be sent and were discarded or moved to the dead letter directory.
+   */
+  public long getFailedCount() {
+    return failedCount.sum();
+  }
+
+  /**
+   * @return Number of messages in the spool directory waiting to be resent.
+   */
+  public long getSpooledCount() {
+    return countSpoolFiles(spoolDirectory);
+  }
+
+  /**
+   * @return Number of messages in the dead letter directory, which will not be resent.
+   */
+  public long getDeadLetterCount() {
+    return countSpoolFiles(deadLetterDirectory);
+  }
+
+  /**
+   * Waits for all queued messages to be sent, retried to exhaustion or spooled.
+   *
+   * @return true if the queue was emptied before the timeout.
+   */
+  public boolean flush(long timeout, TimeUnit unit) {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (pendingCount.get() > 0) {
+      if (System.nanoTime() > deadline) {
+        return false;
+      }
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stops accepting messages and sends those already queued. Messages which cannot be sent before the timeout are
+   * spooled.
+   */
+  public void close() {
+    running = false;
+    flush(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    sender.interrupt();
+    try {
+      sender.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    List<String> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    remaining.forEach(this::spool);
+  }
+
+  private void run() {
+    while (running || !queue.isEmpty()) {
+      String first;
+      try {
+        first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ie) {
+        return;
+      }
+      if (first == null) {
+        resendSpooled();
+        continue;
+      }
+      List<String> batch = new ArrayList<>(MAX_BATCH_SIZE);
+      batch.add(first);
+      queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+      try {
+        for (List<String> part : partitionBySize(batch)) {
+          try {
+            sendBatch(part, new ArrayList<>()).forEach(index -> spool(part.get(index)));
+          } catch (RuntimeException exception) {
+            LOGGER.error("Unexpected error sending notifications", exception);
+            part.forEach(this::spool);
+          }
+        }
+      } finally {
+        pendingCount.addAndGet(-batch.size());
+      }
+    }
+  }
+
+  /**
+   * Splits messages into batches which SQS accepts, as the total size of a batch must not exceed 256KB. Messages which
+   * are too large to send on their own are moved to the dead letter directory.
+   */
+  private List<List<String>> partitionBySize(List<String> messages) {
+    List<List<String>> batches = new ArrayList<>();
+    List<String> batch = new ArrayList<>();
+    int batchBytes = 0;
+    for (String message : messages) {
+      int messageBytes = message.getBytes(StandardCharsets.UTF_8).length;
+      if (messageBytes > MAX_BATCH_BYTES) {
+        deadLetter(message);
+      } else {
+        if (batchBytes + messageBytes > MAX_BATCH_BYTES) {
+          batches.add(batch);
+          batch = new ArrayList<>();
+          batchBytes = 0;
+        }
+        batch.add(message);
+        batchBytes += messageBytes;
+      }
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  /**
+   * Sends messages with SendMessageBatch, retrying messages which fail with a server side error. If SQS rejects the
+   * whole batch as a client error, e.g. as one of its messages is invalid, the messages are sent one at a time so only
+   * the rejected messages are returned.
+   *
+   * @param rejected List to add the indexes of messages rejected as a client error to, rather than failing as SQS is
+   *                 unavailable.
+   * @return Indexes of messages which could not be sent after all attempts, including those which were rejected.
+   */
+  private List<Integer> sendBatch(List<String> messages, List<Integer> rejected) {
+    List<Integer> remaining = IntStream.range(0, messages.size()).boxed().collect(Collectors.toList());
+    long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    for (int attempt = 1; ; attempt++) {
+      List<Integer> retry = new ArrayList<>();
+      try {
+        List<SendMessageBatchRequestEntry> entries = remaining.stream()
+            .map(index -> new SendMessageBatchRequestEntry(String.valueOf(index), messages.get(index)))
+            .collect(Collectors.toList());
+        SendMessageBatchResult result = amazonSQS.sendMessageBatch(
+            new SendMessageBatchRequest(notificationServiceAwsSqsQueueUrl, entries));
+        sentCount.add(result.getSuccessful().size());
+        for (BatchResultErrorEntry error : result.getFailed()) {
+          int index = Integer.parseInt(error.getId());
+          if (Boolean.TRUE.equals(error.getSenderFault())) {
+            failedCount.increment();
+            LOGGER.error("Unable to send message {} - {}: {}", messages.get(index), error.getCode(), error.getMessage());
+          } else {
+            retry.add(index);
+          }
+        }
+      } catch (RuntimeException exception) {
+        if (isClientError(exception)) {
+          LOGGER.warn("SQS rejected batch of {} messages", remaining.size(), exception);
+          if (remaining.size() > 1) {
+            return sendIndividually(messages, remaining, rejected);
+          }
+          rejected.addAll(remaining);
+          return remaining;
+        }
+        LOGGER.warn("Unable to send {} messages, attempt {} of {}", remaining.size(), attempt, MAX_ATTEMPTS, exception);
+        retry = remaining;
+      }
+      if (retry.isEmpty() || attempt >= MAX_ATTEMPTS) {
+        return retry;
+      }
+      remaining = retry;
+      try {
+        Thread.sleep(backoffMillis);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return remaining;
+      }
+      backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+    }
+  }
+
+  private List<Integer> sendIndividually(List<String> messages, List<Integer> indexes, List<Integer> rejected) {
+    List<Integer> unsent = new ArrayList<>();
+    for (Integer index : indexes) {
+      List<Integer> messageRejected = new ArrayList<>();
+      if (!sendBatch(Collections.singletonList(messages.get(index)), messageRejected).isEmpty()) {
+        unsent.add(index);
+        if (!messageRejected.isEmpty()) {
+          rejected.add(index);
+        }
+      }
+    }
+    return unsent;
+  }
+
+  private static boolean isClientError(RuntimeException exception) {
+    return exception instanceof AmazonServiceException &&
+        ((AmazonServiceException) exception).getErrorType() == AmazonServiceException.ErrorType.Client;
+  }
+
+  private void spool(String message) {
+    if (spoolDirectory == null) {
+      failedCount.increment();
+      LOGGER.error("Unable to send message {}", message);
+      return;
+    }
+    try {
+      write(spoolDirectory, spoolFileName(UUID.randomUUID().toString(), 0), message);
+    } catch (IOException ioe) {
+      failedCount.increment();
+      LOGGER.error("Unable to spool message {}", message, ioe);
+    }
+  }
+
+  private void deadLetter(String message) {
+    failedCount.increment();
+    if (deadLetterDirectory == null) {
+      LOGGER.error("Message is too large to send {}", message);
+      return;
+    }
+    LOGGER.error("Message is too large to send, moving it to {}", deadLetterDirectory);
     try {
-      LOGGER.info("Sending message type {} to {}", templateName, emailAddress);
-      amazonSQS.sendMessage(notificationServiceAwsSqsQueueUrl, message);
-    } catch (Exception exception) {
-      LOGGER.error("Unable to send message {}", message, exception);
+      write(deadLetterDirectory, spoolFileName(UUID.randomUUID().toString(), 0), message);
+    } catch (IOException ioe) {
+      LOGGER.error("Unable to spool message {}", message, ioe);
+    }
+  }
+
+  /**
+   * Writes the message to a temporary file which is then renamed, so the spool never contains a partly written file.
+   */
+  private static void write(Path directory, String fileName, String message) throws IOException {
+    Path tempFile = directory.resolve(fileName + TEMP_FILE_SUFFIX);
+    Files.write(tempFile, message.getBytes(StandardCharsets.UTF_8));
+    Files.move(tempFile, directory.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Spool file names start with the time the message was spooled, so they are resent in order, and end with the number
+   * of times they have been resent.
+   */
+  private static String spoolFileName(String id, int attempts) {
+    return String.format("%013d-%s.%d%s", System.currentTimeMillis(), id, attempts, SPOOL_FILE_SUFFIX);
+  }
+
+  private static Stream<Path> listSpoolFiles(Path directory) throws IOException {
+    return Files.list(directory)
+        .filter(file -> file.getFileName().toString().endsWith(SPOOL_FILE_SUFFIX) && Files.isRegularFile(file));
+  }
+
+  private static long countSpoolFiles(Path directory) {
+    if (directory == null) {
+      return 0;
+    }
+    try (Stream<Path> files = listSpoolFiles(directory)) {
+      return files.count();
+    } catch (IOException ioe) {
+      LOGGER.warn("Unable to list notification spool directory {}", directory, ioe);
+      return 0;
+    }
+  }
+
+  /**
+   * Moves a spooled message which SQS rejected to the end of the spool, or to the dead letter directory once it has
+   * been rejected {@value #MAX_SPOOL_ATTEMPTS} times.
+   *
+   * @return false if the file could not be moved.
+   */
+  private boolean retryLater(Path file) {
+    String name = file.getFileName().toString();
+    String baseName = name.substring(0, name.length() - SPOOL_FILE_SUFFIX.length());
+    int idStart = baseName.indexOf('-') + 1;
+    int attemptsStart = baseName.lastIndexOf('.') + 1;
+    String id = attemptsStart > idStart ? baseName.substring(idStart, attemptsStart - 1) : baseName.substring(idStart);
+    int attempts = attemptsStart > idStart ? NumberUtils.toInt(baseName.substring(attemptsStart)) + 1 : 1;
+    if (attempts >= MAX_SPOOL_ATTEMPTS) {
+      return moveToDeadLetter(file, String.format("not sent after %d attempts", attempts));
+    }
+    try {
+      Files.move(file, spoolDirectory.resolve(spoolFileName(id, attempts)), StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (IOException ioe) {
+      LOGGER.warn("Unable to move spooled notification {}", file, ioe);
+      return false;
+    }
+  }
+
+  private boolean moveToDeadLetter(Path file, String reason) {
+    failedCount.increment();
+    LOGGER.error("Moving spooled notification {} to {}, {}", file.getFileName(), deadLetterDirectory, reason);
+    try {
+      Files.move(file, deadLetterDirectory.resolve(file.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (IOException ioe) {
+      LOGGER.warn("Unable to move spooled notification {} to {}", file, deadLetterDirectory, ioe);
+      return false;
+    }
+  }
+
+  /**
+   * Resends spooled messages while the queue is idle, backing off if SQS is still unavailable. Messages which SQS
+   * rejects are moved to the end of the spool, and are not resent again until the next time the spool is resent.
+   */
+  private void resendSpooled() {
+    if (spoolDirectory == null || System.currentTimeMillis() < nextSpoolAttemptMillis) {
+      return;
+    }
+    String spooledBefore = String.format("%013d", System.currentTimeMillis());
+    while (running && queue.isEmpty()) {
+      List<Path> files;
+      try (Stream<Path> list = listSpoolFiles(spoolDirectory)) {
+        files = list.filter(file -> file.getFileName().toString().compareTo(spooledBefore) < 0)
+            .sorted()
+            .limit(MAX_BATCH_SIZE)
+            .collect(Collectors.toList());
+      } catch (IOException ioe) {
+        LOGGER.warn("Unable to list notification spool directory {}", spoolDirectory, ioe);
+        nextSpoolAttemptMillis = System.currentTimeMillis() + SPOOL_RETRY_MILLIS;
+        return;
+      }
+      if (files.isEmpty()) {
+        return;
+      }
+      List<Path> batchFiles = new ArrayList<>();
+      List<String> messages = new ArrayList<>();
+      int batchBytes = 0;
+      for (Path file : files) {
+        byte[] message;
+        try {
+          message = Files.readAllBytes(file);
+          JsonCodec.shared().readerFor(EmailNotification.class).readValue(message);
+        } catch (NoSuchFileException nsfe) {
+          continue;
+        } catch (IOException ioe) {
+          if (!moveToDeadLetter(file, "unable to read message: " + ioe.getMessage())) {
+            nextSpoolAttemptMillis = System.currentTimeMillis() + SPOOL_RETRY_MILLIS;
+            return;
+          }
+          continue;
+        }
+        if (message.length > MAX_BATCH_BYTES) {
+          if (!moveToDeadLetter(file, "message is too large to send")) {
+            nextSpoolAttemptMillis = System.currentTimeMillis() + SPOOL_RETRY_MILLIS;
+            return;
+          }
+          continue;
+        }
+        if (batchBytes + message.length > MAX_BATCH_BYTES) {
+          break;
+        }
+        batchFiles.add(file);
+        messages.add(new String(message, StandardCharsets.UTF_8));
+        batchBytes += message.length;
+      }
+      if (messages.isEmpty()) {
+        continue;
+      }
+      List<Integer> rejected = new ArrayList<>();
+      List<Integer> unsent = sendBatch(messages, rejected);
+      boolean moved = true;
+      for (int i = 0; i < batchFiles.size(); i++) {
+        if (rejected.contains(i)) {
+          moved &= retryLater(batchFiles.get(i));
+        } else if (!unsent.contains(i)) {
+          try {
+            Files.deleteIfExists(batchFiles.get(i));
+          } catch (IOException ioe) {
+            LOGGER.warn("Unable to delete spooled notification {}", batchFiles.get(i), ioe);
+          }
+        }
+      }
+      //Messages which were not sent as SQS is unavailable are left at the start of the spool until it recovers
+      if (unsent.size() > rejected.size() || !moved) {
+        nextSpoolAttemptMillis = System.currentTimeMillis() + SPOOL_RETRY_MILLIS;
+        return;
+      }
     }
   }
 
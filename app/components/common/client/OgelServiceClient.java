@@ -2,14 +2,15 @@ package components.common.client;
 
 import static components.common.client.RequestUtil.handleAsBoolean;
 import static components.common.client.RequestUtil.parse;
-import static components.common.client.RequestUtil.parseList;
 
 import com.google.common.net.UrlEscapers;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import components.common.logging.CorrelationId;
+import com.typesafe.config.Config;
 import components.common.logging.ServiceClientLogger;
 import org.apache.commons.lang3.StringUtils;
+import play.cache.SyncCacheApi;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.WSClient;
 import play.libs.ws.WSRequest;
@@ -17,10 +18,13 @@ import uk.gov.bis.lite.ogel.api.view.ApplicableOgelView;
 import uk.gov.bis.lite.ogel.api.view.OgelFullView;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+@Singleton
 public class OgelServiceClient {
 
   private static final String SERVICE_ADMIN_SERVLET_PING_PATH = "/admin/ping";
@@ -29,22 +33,61 @@ public class OgelServiceClient {
   private static final String GET_OGEL_PATH = "%s/ogels/%s";
   private static final String GET_APPLICABLE_OGELS_PATH = "%s/applicable-ogels";
 
+  public static final ResponseCachePolicy DEFAULT_OGEL_CACHE_POLICY =
+      new ResponseCachePolicy(TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(1), 500);
+  public static final ResponseCachePolicy DEFAULT_APPLICABLE_OGELS_CACHE_POLICY =
+      new ResponseCachePolicy(TimeUnit.MINUTES.toMillis(10), TimeUnit.HOURS.toMillis(1), 5000);
+
+  private static final String OGEL_CACHE_CONFIG_PATH = "ogelService.cache.ogels";
+  private static final String APPLICABLE_OGELS_CACHE_CONFIG_PATH = "ogelService.cache.applicableOgels";
+  private static final String POLICY_CONFIG_PATH = "ogelService.policy";
+
   private final String address;
   private final int timeout;
   private final String credentials;
   private final WSClient wsClient;
   private final HttpExecutionContext context;
+  private final ServiceClientCore core;
+  private final ResponseCache<OgelFullView> ogelCache;
+  private final ResponseCache<ApplicableOgelView[]> applicableOgelsCache;
 
+  /**
+   * Cache settings are read from {@code ogelService.cache.ogels} and {@code ogelService.cache.applicableOgels} (see
+   * {@link ResponseCachePolicy#fromConfig(Config, String, ResponseCachePolicy)}), and resilience settings from
+   * {@code ogelService.policy} (see {@link ClientPolicy#fromConfig(Config, String, ClientPolicy)}). Cached responses
+   * are shared between instances if a {@link SyncCacheApi} named {@code ogelServiceSharedCache} is bound.
+   */
   @Inject
   public OgelServiceClient(@Named("ogelServiceAddress") String address,
                            @Named("ogelServiceTimeout") int timeout,
                            @Named("ogelServiceCredentials") String credentials, WSClient wsClient,
-                           HttpExecutionContext httpExecutionContext) {
+                           HttpExecutionContext httpExecutionContext, Config config, SharedCache sharedCache) {
+    this(address, timeout, credentials, wsClient, httpExecutionContext,
+        ResponseCachePolicy.fromConfig(config, OGEL_CACHE_CONFIG_PATH, DEFAULT_OGEL_CACHE_POLICY),
+        ResponseCachePolicy.fromConfig(config, APPLICABLE_OGELS_CACHE_CONFIG_PATH, DEFAULT_APPLICABLE_OGELS_CACHE_POLICY),
+        sharedCache.cache, ClientPolicy.fromConfig(config, POLICY_CONFIG_PATH, ClientPolicy.DEFAULT));
+  }
+
+  /**
+   * @param ogelCachePolicy            Cache settings for {@link #getById(String)}.
+   * @param applicableOgelsCachePolicy Cache settings for {@link #get(String, String, List, List, boolean)}.
+   * @param sharedCache                Optional second tier cache shared between application instances, may be null.
+   * @param policy                     Resilience settings of requests to the service, see
+   *                                   {@link ServiceClientCore#shared}.
+   */
+  public OgelServiceClient(String address, int timeout, String credentials, WSClient wsClient,
+                           HttpExecutionContext httpExecutionContext, ResponseCachePolicy ogelCachePolicy,
+                           ResponseCachePolicy applicableOgelsCachePolicy, SyncCacheApi sharedCache,
+                           ClientPolicy policy) {
     this.address = address;
     this.timeout = timeout;
     this.credentials = credentials;
     this.wsClient = wsClient;
     this.context = httpExecutionContext;
+    this.core = ServiceClientCore.shared(OGEL_SERVICE, timeout, policy, wsClient);
+    this.ogelCache = new ResponseCache<>(OGEL_SERVICE + ":ogels", ogelCachePolicy, OgelFullView.class, sharedCache);
+    this.applicableOgelsCache = new ResponseCache<>(OGEL_SERVICE + ":applicable-ogels", applicableOgelsCachePolicy,
+        ApplicableOgelView[].class, sharedCache);
   }
 
   public CompletionStage<Boolean> serviceReachable() {
@@ -56,39 +99,56 @@ public class OgelServiceClient {
         }, context.current());
   }
 
+  /**
+   * @return The OGEL, which may be shared with other callers through the cache and must not be modified.
+   */
   public CompletionStage<OgelFullView> getById(String ogelId) {
     String escapedId = UrlEscapers.urlFragmentEscaper().escape(ogelId);
     String url = String.format(GET_OGEL_PATH, address, escapedId);
-    WSRequest request = wsClient.url(url)
+    WSRequest request = core.url(url)
         .setAuth(credentials)
-        .setRequestFilter(CorrelationId.requestFilter)
-        .setRequestFilter(ServiceClientLogger.requestFilter("OGEL", "GET", context))
-        .setRequestTimeout(Duration.ofMillis(timeout));
+        .setRequestFilter(ServiceClientLogger.requestFilter("OGEL", "GET", context));
 
-    return request.get().handleAsync((response, error) ->
-            parse(request, response, error, OGEL_SERVICE, "getById", OgelFullView.class),
-        context.current());
+    return ogelCache.get(request, core::get, (response, error) ->
+            parse(request, response, error, OGEL_SERVICE, "getById", OgelFullView.class), context.current());
   }
 
+  /**
+   * @return The applicable OGELs, which may be shared with other callers through the cache and must not be modified.
+   */
   public CompletionStage<List<ApplicableOgelView>> get(String controlCode, String sourceCountry,
                                                        List<String> destinationCountries,
                                                        List<String> activityTypes, boolean showHistoricOgel) {
     String url = String.format(GET_APPLICABLE_OGELS_PATH, address);
-    WSRequest request = wsClient.url(url)
+    WSRequest request = core.url(url)
         .setAuth(credentials)
-        .setRequestFilter(CorrelationId.requestFilter)
         .setRequestFilter(ServiceClientLogger.requestFilter("OGEL", "GET", context))
-        .setRequestTimeout(Duration.ofMillis(timeout))
         .addQueryParameter("controlCode", controlCode)
         .addQueryParameter("sourceCountry", sourceCountry);
     destinationCountries.forEach(country -> request.addQueryParameter("destinationCountry", country));
     activityTypes.forEach(activityType -> request.addQueryParameter("activityType", activityType));
 
-    return request.get().handleAsync((response, error) -> {
-      List<ApplicableOgelView> applicableOgelViews =
-          parseList(request, response, error, OGEL_SERVICE, "get", ApplicableOgelView[].class);
-      return filterHistoric(applicableOgelViews, showHistoricOgel);
-    }, context.current());
+    return applicableOgelsCache.get(request, core::get, (response, error) ->
+            parse(request, response, error, OGEL_SERVICE, "get", ApplicableOgelView[].class), context.current())
+        .thenApply(applicableOgelViews -> filterHistoric(Arrays.asList(applicableOgelViews), showHistoricOgel));
+  }
+
+  /**
+   * Discards all cached OGEL responses.
+   */
+  public void invalidateCache() {
+    ogelCache.invalidateAll();
+    applicableOgelsCache.invalidateAll();
+  }
+
+  /**
+   * Optional shared cache tier, injected if the application binds one.
+   */
+  public static class SharedCache {
+
+    @Inject(optional = true)
+    @Named("ogelServiceSharedCache")
+    private SyncCacheApi cache;
   }
 
   /**
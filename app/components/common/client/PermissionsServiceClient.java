@@ -4,14 +4,22 @@ import static components.common.client.RequestUtil.handleAsBoolean;
 import static components.common.client.RequestUtil.parse;
 import static components.common.client.RequestUtil.parseList;
 
+import akka.util.ByteString;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import components.common.logging.CorrelationId;
+import com.typesafe.config.Config;
+import components.common.json.JsonCodec;
 import components.common.logging.ServiceClientLogger;
 import filters.common.JwtRequestFilter;
+import filters.common.JwtUserRequestFilter;
 import org.slf4j.LoggerFactory;
-import play.libs.Json;
 import play.libs.concurrent.HttpExecutionContext;
+import play.libs.ws.InMemoryBodyWritable;
 import play.libs.ws.WSClient;
 import play.libs.ws.WSRequest;
 import play.libs.ws.WSResponse;
@@ -21,35 +29,71 @@ import uk.gov.bis.lite.permissions.api.view.LicenceView;
 import uk.gov.bis.lite.permissions.api.view.OgelRegistrationView;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Singleton
 public class PermissionsServiceClient {
 
   private static final String SERVICE_ADMIN_SERVLET_PING_PATH = "/admin/ping";
   private static final String PERMISSIONS_SERVICE = "permissions-service";
+  private static final String POLICY_CONFIG_PATH = "permissionsService.policy";
   private static final String REGISTER_OGEL_PATH = "%s/register-ogel";
   private static final String GET_OGEL_REGISTRATIONS_PATH = "%s/ogel-registrations/user/%s";
   private static final String GET_LICENCES_PATH = "%s/licences/user/%s";
+  private static final int USER_CACHE_MINUTES = 5;
+  private static final int MAX_CACHED_USERS = 10000;
 
   private final String address;
   private final int timeout;
   private final String credentials;
   private final WSClient wsClient;
   private final HttpExecutionContext context;
+  private final ServiceClientCore core;
   private final JwtRequestFilter jwtRequestFilter;
 
+  private final Cache<List<String>, CompletableFuture<List<LicenceView>>> licencesCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(USER_CACHE_MINUTES, TimeUnit.MINUTES)
+      .maximumSize(MAX_CACHED_USERS)
+      .build();
+
+  private final Cache<List<String>, CompletableFuture<List<OgelRegistrationView>>> ogelRegistrationsCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(USER_CACHE_MINUTES, TimeUnit.MINUTES)
+      .maximumSize(MAX_CACHED_USERS)
+      .build();
+
   @Inject
   public PermissionsServiceClient(@Named("permissionsServiceAddress") String address,
                                   @Named("permissionsServiceTimeout") int timeout,
                                   @Named("permissionsServiceCredentials") String credentials,
                                   WSClient wsClient, HttpExecutionContext httpExecutionContext,
-                                  JwtRequestFilter jwtRequestFilter) {
+                                  JwtRequestFilter jwtRequestFilter, Config config) {
+    this(address, timeout, credentials, wsClient, httpExecutionContext, jwtRequestFilter,
+        ClientPolicy.fromConfig(config, POLICY_CONFIG_PATH, ClientPolicy.DEFAULT));
+  }
+
+  /**
+   * @param policy Resilience settings of requests to the service, see {@link ServiceClientCore#shared}.
+   */
+  public PermissionsServiceClient(String address, int timeout, String credentials, WSClient wsClient,
+                                  HttpExecutionContext httpExecutionContext, JwtRequestFilter jwtRequestFilter,
+                                  ClientPolicy policy) {
     this.address = address;
     this.timeout = timeout;
     this.credentials = credentials;
     this.wsClient = wsClient;
     this.context = httpExecutionContext;
+    this.core = ServiceClientCore.shared(PERMISSIONS_SERVICE, timeout, policy, wsClient);
     this.jwtRequestFilter = jwtRequestFilter;
   }
 
@@ -64,42 +108,66 @@ public class PermissionsServiceClient {
 
   public CompletionStage<String> registerOgel(RegisterParam registerParam, String callbackUrl) {
     String url = String.format(REGISTER_OGEL_PATH, address);
+    invalidateUser(registerParam.getUserId());
 
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter(PERMISSIONS_SERVICE, "POST", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout))
+        .setRequestFilter(jwtRequestFilter.forCurrentUser())
         .addQueryParameter("callbackUrl", callbackUrl);
 
-    return request.post(Json.toJson(registerParam)).handleAsync((response, error) ->
-            parse(request, response, error, PERMISSIONS_SERVICE, "registerOgel", RegisterOgelResponse.class).getRequestId(),
-        context.current());
+    byte[] body;
+    try {
+      body = JsonCodec.shared().writeValueAsBytes(registerParam);
+    } catch (JsonProcessingException jpe) {
+      throw new ClientException("Unable to write register param as JSON", jpe);
+    }
+
+    return core.execute(request, r -> r.post(new InMemoryBodyWritable(ByteString.fromArray(body), "application/json")))
+        .handleAsync((response, error) -> {
+          // Registrations read while the request was in progress may not include the new registration
+          invalidateUser(registerParam.getUserId());
+          return parse(request, response, error, PERMISSIONS_SERVICE, "registerOgel", RegisterOgelResponse.class).getRequestId();
+        }, context.current());
+  }
+
+  /**
+   * Discards cached licences and OGEL registrations for the given user. Call this when notified of a change to a user's
+   * permissions, e.g. from the callback of {@link #registerOgel(RegisterParam, String)}.
+   *
+   * @param userId Id of the user whose permissions have changed.
+   */
+  public void invalidateUser(String userId) {
+    licencesCache.asMap().keySet().removeIf(key -> Objects.equals(key.get(1), userId));
+    ogelRegistrationsCache.asMap().keySet().removeIf(key -> Objects.equals(key.get(1), userId));
   }
 
   public CompletionStage<List<OgelRegistrationView>> getOgelRegistrations(String userId) {
     String url = String.format(GET_OGEL_REGISTRATIONS_PATH, address, userId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter(PERMISSIONS_SERVICE, "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
+        .setRequestFilter(jwtFilter);
 
-    return request.get().handleAsync((response, error) ->
+    return getCached(ogelRegistrationsCache, Arrays.asList(jwtFilter.getUserId(), userId), () ->
+        core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parseList(request, response, error, PERMISSIONS_SERVICE, "getOgelRegistrations", OgelRegistrationView[].class),
-        context.current());
+        context.current()));
   }
 
   public CompletionStage<OgelRegistrationView> getOgelRegistration(String userId, String registrationReference) {
     String url = String.format(GET_OGEL_REGISTRATIONS_PATH, address, userId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+    Optional<OgelRegistrationView> cached = findCached(ogelRegistrationsCache, Arrays.asList(jwtFilter.getUserId(), userId),
+        view -> Objects.equals(view.getRegistrationReference(), registrationReference));
+    if (cached.isPresent()) {
+      return CompletableFuture.completedFuture(cached.get());
+    }
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter(PERMISSIONS_SERVICE, "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout))
+        .setRequestFilter(jwtFilter)
         .addQueryParameter("registrationReference", registrationReference);
 
-    return request.get().handleAsync((response, error) ->
+    return core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parse(request, response, error, PERMISSIONS_SERVICE, "getOgelRegistration", OgelRegistrationView[].class),
         context.current())
         .thenApplyAsync(ogelRegistrationViews -> {
@@ -114,13 +182,17 @@ public class PermissionsServiceClient {
 
   public CompletionStage<LicenceView> getLicence(String userId, String reference) {
     String url = String.format(GET_LICENCES_PATH, address, userId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+    Optional<LicenceView> cached = findCached(licencesCache, Arrays.asList(jwtFilter.getUserId(), userId),
+        view -> Objects.equals(view.getLicenceRef(), reference));
+    if (cached.isPresent()) {
+      return CompletableFuture.completedFuture(cached.get());
+    }
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter(PERMISSIONS_SERVICE, "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout))
+        .setRequestFilter(jwtFilter)
         .addQueryParameter("licenceReference", reference);
-    return request.get().handleAsync((response, error) ->
+    return core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parse(request, response, error, PERMISSIONS_SERVICE, "getLicence", LicenceView[].class),
         context.current())
         .thenApplyAsync(licences -> {
@@ -135,14 +207,49 @@ public class PermissionsServiceClient {
 
   public CompletionStage<List<LicenceView>> getLicences(String userId) {
     String url = String.format(GET_LICENCES_PATH, address, userId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter(PERMISSIONS_SERVICE, "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
-    return request.get().handleAsync((response, error) ->
+        .setRequestFilter(jwtFilter);
+    return getCached(licencesCache, Arrays.asList(jwtFilter.getUserId(), userId), () ->
+        core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parseList(request, response, error, PERMISSIONS_SERVICE, "getLicences", LicenceView[].class),
-        context.current());
+        context.current()));
+  }
+
+  /**
+   * Returns the cached list for the key, or fetches it. Lists are cached per principal and user so a cached response is
+   * only served to the principal it was requested by. Failed requests are not cached.
+   */
+  private <T> CompletionStage<List<T>> getCached(Cache<List<String>, CompletableFuture<List<T>>> cache, List<String> key,
+                                                 Supplier<CompletionStage<List<T>>> fetch) {
+    CompletableFuture<List<T>> future;
+    try {
+      future = cache.get(key, () -> fetch.get().toCompletableFuture());
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new ClientException("Unable to read " + PERMISSIONS_SERVICE + " cache", e.getCause());
+    }
+    future.whenComplete((list, error) -> {
+      if (error != null) {
+        cache.asMap().remove(key, future);
+      }
+    });
+    return future.thenApplyAsync(Function.identity(), context.current());
+  }
+
+  /**
+   * Finds a single item in a completed cached list, if the list has been read for the key.
+   */
+  private <T> Optional<T> findCached(Cache<List<String>, CompletableFuture<List<T>>> cache, List<String> key,
+                                     Predicate<T> predicate) {
+    CompletableFuture<List<T>> future = cache.getIfPresent(key);
+    if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+      List<T> matches = future.join().stream().filter(predicate).collect(Collectors.toList());
+      if (matches.size() == 1) {
+        return Optional.of(matches.get(0));
+      }
+    }
+    return Optional.empty();
   }
 
 }
@@ -0,0 +1,92 @@
+package components.common.client;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import play.libs.ws.WSRequestFilter;
+import play.mvc.Http;
+
+import java.util.Optional;
+
+/**
+ * Utility class for propagating a request deadline from an inbound request to downstream service requests.
+ * <p>
+ * The deadline is stored on the current HTTP context. Service clients using {@link ServiceClientCore} cap their request
+ * timeouts at the time remaining, fail fast once the deadline has passed, and send the remaining time to downstream
+ * services in the {@link RequestDeadline#HTTP_HEADER_NAME} header.
+ */
+public class RequestDeadline {
+
+  /**
+   * HTTP Header containing the number of milliseconds remaining before the caller gives up on a request
+   */
+  public static final String HTTP_HEADER_NAME = "X-Request-Timeout";
+
+  /**
+   * Deadline value used when no deadline has been set up
+   */
+  public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  private static final String CTX_ARG_NAME = "request_deadline";
+
+  private RequestDeadline() {
+  }
+
+  /**
+   * Sets the deadline on the given context from the {@link RequestDeadline#HTTP_HEADER_NAME} header of its request,
+   * if present. This should be called at the start of the request.
+   *
+   * @param ctx Context of the inbound request.
+   */
+  public static void setUp(Http.Context ctx) {
+    remainingMillisFromHeader(ctx).ifPresent(remaining -> ctx.args.put(CTX_ARG_NAME, System.currentTimeMillis() + remaining));
+  }
+
+  /**
+   * Sets the deadline on the given context to the given budget from now, or the time remaining according to the
+   * {@link RequestDeadline#HTTP_HEADER_NAME} header of its request if that is sooner. This should be called at the start
+   * of the request.
+   *
+   * @param ctx          Context of the inbound request.
+   * @param budgetMillis Maximum time to allow for the request.
+   */
+  public static void setUp(Http.Context ctx, long budgetMillis) {
+    long remaining = Math.min(budgetMillis, remainingMillisFromHeader(ctx).orElse(budgetMillis));
+    ctx.args.put(CTX_ARG_NAME, System.currentTimeMillis() + remaining);
+  }
+
+  /**
+   * @return Deadline for the current request as epoch milliseconds, or {@link RequestDeadline#NO_DEADLINE} if there is
+   * no current request or no deadline has been set up.
+   */
+  public static long get() {
+    Http.Context ctx = Http.Context.current.get();
+    Object deadline = ctx != null ? ctx.args.get(CTX_ARG_NAME) : null;
+    return deadline != null ? (Long) deadline : NO_DEADLINE;
+  }
+
+  /**
+   * @param deadline Deadline as epoch milliseconds.
+   * @return Milliseconds until the deadline, which may be negative if it has passed.
+   */
+  public static long remainingMillis(long deadline) {
+    return deadline == NO_DEADLINE ? Long.MAX_VALUE : deadline - System.currentTimeMillis();
+  }
+
+  /**
+   * @param deadline Deadline to propagate, as returned by {@link #get()}.
+   * @return Request filter which sets the time remaining before the deadline on outgoing requests.
+   */
+  public static WSRequestFilter requestFilter(long deadline) {
+    return executor -> request -> {
+      if (deadline != NO_DEADLINE) {
+        request.addHeader(HTTP_HEADER_NAME, Long.toString(Math.max(0, remainingMillis(deadline))));
+      }
+      return executor.apply(request);
+    };
+  }
+
+  private static Optional<Long> remainingMillisFromHeader(Http.Context ctx) {
+    return ctx.request().header(HTTP_HEADER_NAME)
+        .filter(value -> NumberUtils.isDigits(value) && value.length() < 16)
+        .map(Long::parseLong);
+  }
+}
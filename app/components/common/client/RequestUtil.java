@@ -1,14 +1,22 @@
 package components.common.client;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import components.common.json.JsonCodec;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import play.libs.Json;
 import play.libs.ws.WSRequest;
 import play.libs.ws.WSResponse;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class RequestUtil {
 
@@ -33,6 +41,64 @@ public class RequestUtil {
 
   public static <T> T parse(WSRequest request, WSResponse response, Throwable throwable, String service, String method,
                             Class<T> clazz) {
+    checkResponse(request, response, throwable, service, method);
+    try {
+      return JsonCodec.shared().readerFor(clazz).readValue(response.asByteArray());
+    } catch (Exception exception) {
+      throw jsonException(request, response, service, method, exception);
+    }
+  }
+
+  /**
+   * Parses a response containing a JSON array, binding each element as it is read rather than binding the whole array
+   * up front. Useful for large lists which are filtered or mapped before use.
+   *
+   * @return Lazily parsed elements of the array. A {@link ClientException} is thrown when an invalid element is reached.
+   */
+  public static <T> Stream<T> parseStream(WSRequest request, WSResponse response, Throwable throwable, String service,
+                                          String method, Class<T> clazz) {
+    checkResponse(request, response, throwable, service, method);
+    MappingIterator<T> mappingIterator;
+    try {
+      mappingIterator = JsonCodec.shared().readerFor(clazz).readValues(response.asByteArray());
+    } catch (Exception exception) {
+      throw jsonException(request, response, service, method, exception);
+    }
+
+    Iterator<T> iterator = new Iterator<T>() {
+      @Override
+      public boolean hasNext() {
+        try {
+          return mappingIterator.hasNextValue();
+        } catch (Exception exception) {
+          throw jsonException(request, response, service, method, exception);
+        }
+      }
+
+      @Override
+      public T next() {
+        try {
+          return mappingIterator.nextValue();
+        } catch (NoSuchElementException exception) {
+          throw exception;
+        } catch (Exception exception) {
+          throw jsonException(request, response, service, method, exception);
+        }
+      }
+    };
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+        .onClose(() -> {
+          try {
+            mappingIterator.close();
+          } catch (IOException exception) {
+            LOGGER.warn("Unable to close response stream", exception);
+          }
+        });
+  }
+
+  private static void checkResponse(WSRequest request, WSResponse response, Throwable throwable, String service,
+                                    String method) {
     if (throwable != null) {
       String message = createMessage(request, service, method);
       LOGGER.error(message, throwable);
@@ -41,17 +107,16 @@ public class RequestUtil {
       String message = createMessage(request, response, service, method);
       LOGGER.error(message);
       throw new ClientException(message);
-    } else {
-      try {
-        return Json.fromJson(response.asJson(), clazz);
-      } catch (Exception exception) {
-        String message = createMessageJsonException(request, response, service, method);
-        LOGGER.error(message, exception);
-        throw new ClientException(message, exception);
-      }
     }
   }
 
+  private static ClientException jsonException(WSRequest request, WSResponse response, String service, String method,
+                                               Exception exception) {
+    String message = createMessageJsonException(request, response, service, method);
+    LOGGER.error(message, exception);
+    return new ClientException(message, exception);
+  }
+
   private static String createMessage(WSRequest request, String service, String method) {
     return String.format("Unable to execute request with path %s. %s %s failure.", request.getUrl(), service, method);
   }
@@ -0,0 +1,173 @@
+package components.common.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import components.common.json.JsonCodec;
+import org.slf4j.LoggerFactory;
+import play.cache.SyncCacheApi;
+import play.libs.ws.WSRequest;
+import play.libs.ws.WSResponse;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Caches parsed responses of a single GET endpoint in memory, with an optional shared second tier (e.g. a
+ * {@link components.common.redis.RedissonSyncCacheApi}) so instances of an application can share responses.
+ * <p>
+ * Responses younger than the TTL of the {@link ResponseCachePolicy} are served without contacting the service. Older
+ * responses within the stale-while-revalidate window are served immediately while being revalidated in the background.
+ * Responses are revalidated with {@code If-None-Match} when the service provided an {@code ETag}, so unchanged responses
+ * are not downloaded or parsed again.
+ * <p>
+ * Cached values are shared by every caller which reads them, so they must be treated as immutable and never modified.
+ *
+ * @param <T> Type the response body is parsed into.
+ */
+public class ResponseCache<T> {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ResponseCache.class);
+
+  private final String name;
+  private final ResponseCachePolicy policy;
+  private final Class<T> clazz;
+  private final SyncCacheApi sharedCache;
+  private final Cache<String, Entry<T>> cache;
+  private final SingleFlight<String, T> revalidations = new SingleFlight<>();
+
+  /**
+   * @param name        Name of the cache, used to prefix keys in the shared cache.
+   * @param policy      TTL and size settings.
+   * @param clazz       Type response bodies are parsed into.
+   * @param sharedCache Optional second tier cache, may be null.
+   */
+  public ResponseCache(String name, ResponseCachePolicy policy, Class<T> clazz, SyncCacheApi sharedCache) {
+    this.name = name;
+    this.policy = policy;
+    this.clazz = clazz;
+    this.sharedCache = sharedCache;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(policy.getMaxEntries())
+        .build();
+  }
+
+  /**
+   * @param request       Request for the response, which identifies the cache entry by its URL and query parameters.
+   * @param executor      Executes the request, e.g. {@link ServiceClientCore#get(WSRequest)}.
+   * @param parser        Parses a response, throwing a {@link ClientException} if the request failed.
+   * @param parseExecutor Executor to parse responses on, e.g. {@link play.libs.concurrent.HttpExecutionContext#current()},
+   *                      so responses aren't parsed on the I/O threads of the WS client.
+   * @return Cached or fetched response.
+   */
+  public CompletionStage<T> get(WSRequest request, Function<WSRequest, CompletionStage<WSResponse>> executor,
+                                BiFunction<WSResponse, Throwable, T> parser, Executor parseExecutor) {
+    String key = request.getUrl() + "?" + new TreeMap<>(request.getQueryParameters());
+    Entry<T> entry = getEntry(key);
+    if (entry != null) {
+      long age = System.currentTimeMillis() - entry.response.storedAtMillis;
+      if (age < policy.getTtlMillis()) {
+        return CompletableFuture.completedFuture(entry.value);
+      } else if (age < policy.getTtlMillis() + policy.getStaleWhileRevalidateMillis()) {
+        revalidate(key, entry, request, executor, parser, parseExecutor).exceptionally(error -> {
+          LOGGER.warn("Unable to revalidate cached response " + key, error);
+          return null;
+        });
+        return CompletableFuture.completedFuture(entry.value);
+      }
+    }
+    return revalidate(key, entry, request, executor, parser, parseExecutor);
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private CompletionStage<T> revalidate(String key, Entry<T> entry, WSRequest request,
+                                        Function<WSRequest, CompletionStage<WSResponse>> executor,
+                                        BiFunction<WSResponse, Throwable, T> parser, Executor parseExecutor) {
+    return revalidations.execute(key, () -> {
+      if (entry != null && entry.response.etag != null) {
+        request.addHeader("If-None-Match", entry.response.etag);
+      }
+      return executor.apply(request).handleAsync((response, error) -> {
+        if (error == null && entry != null && response.getStatus() == 304) {
+          putEntry(key, new Entry<>(entry.value, entry.response.refreshed()));
+          return entry.value;
+        } else {
+          T value = parser.apply(response, error);
+          String etag = response.getSingleHeader("ETag").orElse(null);
+          putEntry(key, new Entry<>(value, new CachedResponse(response.getBody(), etag, System.currentTimeMillis())));
+          return value;
+        }
+      }, parseExecutor);
+    });
+  }
+
+  private Entry<T> getEntry(String key) {
+    Entry<T> entry = cache.getIfPresent(key);
+    if (entry == null && sharedCache != null) {
+      try {
+        CachedResponse response = sharedCache.get(sharedKey(key));
+        if (response != null) {
+          entry = new Entry<>(JsonCodec.shared().readerFor(clazz).readValue(response.body), response);
+          cache.put(key, entry);
+        }
+      } catch (IOException | RuntimeException exception) {
+        LOGGER.warn("Unable to read cached response " + key + " from shared cache", exception);
+      }
+    }
+    return entry;
+  }
+
+  private void putEntry(String key, Entry<T> entry) {
+    cache.put(key, entry);
+    if (sharedCache != null) {
+      int expirySeconds = (int) ((policy.getTtlMillis() + policy.getStaleWhileRevalidateMillis()) / 1000);
+      try {
+        sharedCache.set(sharedKey(key), entry.response, Math.max(1, expirySeconds));
+      } catch (RuntimeException exception) {
+        LOGGER.warn("Unable to write cached response " + key + " to shared cache", exception);
+      }
+    }
+  }
+
+  private String sharedKey(String key) {
+    return name + ":" + key;
+  }
+
+  private static class Entry<T> {
+
+    private final T value;
+    private final CachedResponse response;
+
+    private Entry(T value, CachedResponse response) {
+      this.value = value;
+      this.response = response;
+    }
+  }
+
+  private static class CachedResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String body;
+    private final String etag;
+    private final long storedAtMillis;
+
+    private CachedResponse(String body, String etag, long storedAtMillis) {
+      this.body = body;
+      this.etag = etag;
+      this.storedAtMillis = storedAtMillis;
+    }
+
+    private CachedResponse refreshed() {
+      return new CachedResponse(body, etag, System.currentTimeMillis());
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package components.common.client;
+
+import com.typesafe.config.Config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache settings for a single endpoint cached by a {@link ResponseCache}.
+ */
+public class ResponseCachePolicy {
+
+  private final long ttlMillis;
+  private final long staleWhileRevalidateMillis;
+  private final int maxEntries;
+
+  /**
+   * @param ttlMillis                  Time a cached response is served without contacting the service.
+   * @param staleWhileRevalidateMillis Time after the TTL during which the cached response is still served, while it is
+   *                                   revalidated in the background.
+   * @param maxEntries                 Maximum number of responses held in memory.
+   */
+  public ResponseCachePolicy(long ttlMillis, long staleWhileRevalidateMillis, int maxEntries) {
+    this.ttlMillis = ttlMillis;
+    this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Reads the {@code ttl}, {@code staleWhileRevalidate} and {@code maxEntries} settings at the given path, e.g.
+   * <pre>ogelService.cache.ogels { ttl = 30m, staleWhileRevalidate = 2h, maxEntries = 5000 }</pre>
+   * Missing settings are taken from the defaults.
+   *
+   * @param config   Application config.
+   * @param path     Path of the settings.
+   * @param defaults Settings to use where the config has none.
+   * @return Cache settings.
+   */
+  public static ResponseCachePolicy fromConfig(Config config, String path, ResponseCachePolicy defaults) {
+    if (!config.hasPath(path)) {
+      return defaults;
+    }
+    Config policyConfig = config.getConfig(path);
+    long ttlMillis = policyConfig.hasPath("ttl") ?
+        policyConfig.getDuration("ttl", TimeUnit.MILLISECONDS) : defaults.getTtlMillis();
+    long staleWhileRevalidateMillis = policyConfig.hasPath("staleWhileRevalidate") ?
+        policyConfig.getDuration("staleWhileRevalidate", TimeUnit.MILLISECONDS) : defaults.getStaleWhileRevalidateMillis();
+    int maxEntries = policyConfig.hasPath("maxEntries") ? policyConfig.getInt("maxEntries") : defaults.getMaxEntries();
+    return new ResponseCachePolicy(ttlMillis, staleWhileRevalidateMillis, maxEntries);
+  }
+
+  public long getTtlMillis() {
+    return ttlMillis;
+  }
+
+  public long getStaleWhileRevalidateMillis() {
+    return staleWhileRevalidateMillis;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+}
@@ -0,0 +1,302 @@
+package components.common.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import components.common.logging.CorrelationId;
+import components.common.logging.MdcUtil;
+import components.common.logging.Tracing;
+import org.slf4j.LoggerFactory;
+import play.libs.ws.WSClient;
+import play.libs.ws.WSRequest;
+import play.libs.ws.WSResponse;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Shared request handling for service clients. Each core protects a single backend service with:
+ * <ul>
+ * <li>a circuit breaker, which rejects requests while the service is failing</li>
+ * <li>a bulkhead, which limits the number of concurrent requests to the service</li>
+ * <li>retries with jittered exponential backoff for idempotent GET requests</li>
+ * <li>a deadline propagated from the inbound request (see {@link RequestDeadline}), which caps request timeouts</li>
+ * <li>coalescing of concurrent identical GET requests, which share a single response</li>
+ * </ul>
+ * Rejected requests fail with a {@link ClientException}, so are handled by the existing error handling in
+ * {@link RequestUtil}.
+ * <p>
+ * Clients should get their core from {@link #shared(String, int, ClientPolicy, WSClient)}, so all clients of the same
+ * service share one circuit breaker and bulkhead.
+ */
+public class ServiceClientCore {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ServiceClientCore.class);
+
+  private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "service-client-retry");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Shared cores by service name, per WSClient. Weak keys let the cores of a closed WSClient be collected.
+   */
+  private static final Cache<WSClient, ConcurrentMap<String, ServiceClientCore>> SHARED_CORES = CacheBuilder.newBuilder()
+      .weakKeys()
+      .build();
+
+  private final String serviceName;
+  private final int timeout;
+  private final ClientPolicy policy;
+  private final WSClient wsClient;
+  private final CircuitBreaker circuitBreaker;
+  private final Semaphore bulkhead;
+  private final SingleFlight<String, WSResponse> inFlightRequests = new SingleFlight<>();
+
+  public ServiceClientCore(String serviceName, int timeout, ClientPolicy policy, WSClient wsClient) {
+    this.serviceName = serviceName;
+    this.timeout = timeout;
+    this.policy = policy;
+    this.wsClient = wsClient;
+    this.circuitBreaker = new CircuitBreaker(serviceName, policy.getMaxFailures(), policy.getResetTimeoutMillis());
+    this.bulkhead = new Semaphore(policy.getMaxConcurrentRequests());
+  }
+
+  /**
+   * Gets the core shared by all clients of the given service which use the same WSClient, creating it if this is the
+   * first client of the service. The core is created with the timeout and policy of the first client, so all clients of
+   * a service should be configured with the same settings.
+   *
+   * @param serviceName Name of the service.
+   * @param timeout     Default timeout of requests in milliseconds.
+   * @param policy      Resilience settings, see {@link ClientPolicy#fromConfig}.
+   * @param wsClient    Client used to make requests.
+   * @return Core for the service.
+   */
+  public static ServiceClientCore shared(String serviceName, int timeout, ClientPolicy policy, WSClient wsClient) {
+    try {
+      return SHARED_CORES.get(wsClient, ConcurrentHashMap::new)
+          .computeIfAbsent(serviceName, name -> new ServiceClientCore(name, timeout, policy, wsClient));
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Unable to create shared core for " + serviceName, e);
+    }
+  }
+
+  /**
+   * Creates a request with the Correlation ID, tracing and deadline request filters, and a timeout of the configured timeout or
+   * the time remaining before the current deadline, whichever is shorter. The Correlation ID, trace and deadline are read
+   * from the current thread now, so the request must be built on the thread of the request it is made for.
+   *
+   * @param url URL to request.
+   * @return Request which should be executed with {@link #get(WSRequest, String)} or {@link #execute(WSRequest, Function)}.
+   */
+  public WSRequest url(String url) {
+    return url(url, timeout);
+  }
+
+  /**
+   * As {@link #url(String)}, with the given timeout instead of the configured timeout, e.g. for requests which stream a
+   * large body.
+   *
+   * @param url     URL to request.
+   * @param timeout Timeout of the request in milliseconds.
+   */
+  public WSRequest url(String url, int timeout) {
+    long deadline = RequestDeadline.get();
+    long requestTimeout = Math.max(1, Math.min(timeout, RequestDeadline.remainingMillis(deadline)));
+    return wsClient.url(url)
+        .setRequestFilter(CorrelationId.requestFilter(CorrelationId.getOrNew()))
+        .setRequestFilter(Tracing.requestFilter(serviceName))
+        .setRequestFilter(RequestDeadline.requestFilter(deadline))
+        .setRequestTimeout(Duration.ofMillis(requestTimeout));
+  }
+
+  /**
+   * Executes an idempotent GET request, retrying on connection errors, timeouts and 502/503/504 responses. Requests
+   * with the same URL, query parameters and basic auth user as a request which is already in progress share its
+   * response.
+   * <p>
+   * Only for requests which are not authenticated per user by a request filter, as such requests would share one user's
+   * response with another user - use {@link #get(WSRequest, String)} for those.
+   *
+   * @param request Request created by {@link #url(String)}.
+   * @return Response of the last attempt.
+   */
+  CompletionStage<WSResponse> get(WSRequest request) {
+    return coalesce(request, null);
+  }
+
+  /**
+   * Executes an idempotent GET request as {@link #get(WSRequest)}, for requests authenticated by a request filter.
+   * <p>
+   * A request which shares the response of a request already in progress is not sent, so it is made with the deadline,
+   * timeout and retries of the first request.
+   *
+   * @param request   Request created by {@link #url(String)}.
+   * @param principal Identifies the user the request is made for, so only their identical requests are coalesced. Must
+   *                  not be null.
+   * @return Response of the last attempt.
+   */
+  public CompletionStage<WSResponse> get(WSRequest request, String principal) {
+    if (principal == null) {
+      throw new IllegalArgumentException(String.format("%s request to %s requires a principal", serviceName,
+          request.getUrl()));
+    }
+    return coalesce(request, principal);
+  }
+
+  /**
+   * Executes a non-idempotent request, such as a POST, without retries.
+   *
+   * @param request Request created by {@link #url(String)}.
+   * @param method  Function which executes the request, e.g. {@code r -> r.post(body)}.
+   * @return Response.
+   */
+  public CompletionStage<WSResponse> execute(WSRequest request, Function<WSRequest, CompletionStage<WSResponse>> method) {
+    return execute(request, method, error -> false, 0);
+  }
+
+  /**
+   * As {@link #execute(WSRequest, Function)}, for requests which can fail through no fault of the service, such as
+   * requests streaming a body which is still being received from a user. Errors which are client failures are not
+   * counted by the circuit breaker.
+   *
+   * @param request       Request created by {@link #url(String)}.
+   * @param method        Function which executes the request, e.g. {@code r -> r.post(body)}.
+   * @param clientFailure Tests whether an error of the request was caused by the client rather than the service.
+   * @return Response.
+   */
+  public CompletionStage<WSResponse> execute(WSRequest request, Function<WSRequest, CompletionStage<WSResponse>> method,
+                                             Predicate<Throwable> clientFailure) {
+    return execute(request, method, clientFailure, 0);
+  }
+
+  public CircuitBreaker.State getCircuitBreakerState() {
+    return circuitBreaker.getState();
+  }
+
+  public int getAvailableConcurrentRequests() {
+    return bulkhead.availablePermits();
+  }
+
+  public int getInFlightRequestCount() {
+    return inFlightRequests.size();
+  }
+
+  private CompletionStage<WSResponse> coalesce(WSRequest request, String principal) {
+    return inFlightRequests.execute(coalescingKey(request, principal),
+        () -> execute(request, WSRequest::get, error -> false, policy.getMaxRetries()));
+  }
+
+  private CompletionStage<WSResponse> execute(WSRequest request, Function<WSRequest, CompletionStage<WSResponse>> method,
+                                              Predicate<Throwable> clientFailure, int maxRetries) {
+    CompletableFuture<WSResponse> result = new CompletableFuture<>();
+    //Request filters add headers to the request, so restore the original headers before each retry
+    Map<String, List<String>> headers = new HashMap<>(request.getHeaders());
+    attempt(request, method, clientFailure, headers, RequestDeadline.get(), MdcUtil.copy(), 0, maxRetries, result);
+    return result;
+  }
+
+  private void attempt(WSRequest request, Function<WSRequest, CompletionStage<WSResponse>> method,
+                       Predicate<Throwable> clientFailure, Map<String, List<String>> headers, long deadline,
+                       Map<String, String> mdc, int attempt, int maxRetries, CompletableFuture<WSResponse> result) {
+    if (RequestDeadline.remainingMillis(deadline) <= 0) {
+      result.completeExceptionally(new ClientException(String.format("%s request deadline exceeded before request to %s",
+          serviceName, request.getUrl())));
+      return;
+    }
+
+    if (!bulkhead.tryAcquire()) {
+      result.completeExceptionally(new ClientException(String.format("%s has too many concurrent requests, rejected request to %s",
+          serviceName, request.getUrl())));
+      return;
+    }
+
+    if (!circuitBreaker.tryAcquirePermission()) {
+      bulkhead.release();
+      result.completeExceptionally(new ClientException(String.format("%s circuit breaker is open, rejected request to %s",
+          serviceName, request.getUrl())));
+      return;
+    }
+
+    if (attempt > 0) {
+      request.setHeaders(new HashMap<>(headers));
+    }
+
+    CompletionStage<WSResponse> stage;
+    try {
+      stage = method.apply(request);
+    } catch (RuntimeException exception) {
+      CompletableFuture<WSResponse> failed = new CompletableFuture<>();
+      failed.completeExceptionally(exception);
+      stage = failed;
+    }
+
+    stage.whenComplete((response, error) -> {
+      bulkhead.release();
+
+      if (error != null && clientFailure.test(error)) {
+        circuitBreaker.releasePermission();
+      } else if (error != null || response.getStatus() >= 500) {
+        circuitBreaker.recordFailure();
+      } else {
+        circuitBreaker.recordSuccess();
+      }
+
+      if (attempt < maxRetries && isRetryable(response, error)) {
+        long delay = backoffDelay(attempt);
+        if (RequestDeadline.remainingMillis(deadline) > delay) {
+          LOGGER.warn("{} request to {} failed, retry {} of {} in {}ms", serviceName, request.getUrl(), attempt + 1,
+              maxRetries, delay);
+          //Retries run on the scheduler thread with the caller's MDC, which is removed again afterwards
+          RETRY_SCHEDULER.schedule(() -> MdcUtil.runWith(mdc,
+              () -> attempt(request, method, clientFailure, headers, deadline, mdc, attempt + 1, maxRetries, result)),
+              delay, TimeUnit.MILLISECONDS);
+          return;
+        }
+      }
+
+      if (error != null) {
+        result.completeExceptionally(error);
+      } else {
+        result.complete(response);
+      }
+    });
+  }
+
+  private static String coalescingKey(WSRequest request, String principal) {
+    return request.getUrl() + "?" + new TreeMap<>(request.getQueryParameters()) + "|" + request.getUsername() + "|" + principal;
+  }
+
+  private static boolean isRetryable(WSResponse response, Throwable error) {
+    if (error != null) {
+      return true;
+    } else {
+      int status = response.getStatus();
+      return status == 502 || status == 503 || status == 504;
+    }
+  }
+
+  /**
+   * Full jitter backoff: a random delay between zero and the exponential backoff for the given attempt.
+   */
+  private long backoffDelay(int attempt) {
+    long backoff = policy.getRetryBaseDelayMillis() << Math.min(attempt, 16);
+    return ThreadLocalRandom.current().nextLong(backoff + 1);
+  }
+}
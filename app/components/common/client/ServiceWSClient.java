@@ -0,0 +1,44 @@
+package components.common.client;
+
+import play.libs.ws.WSClient;
+import play.libs.ws.WSRequest;
+
+import java.io.IOException;
+
+/**
+ * {@link WSClient} created by {@link ServiceWSClientFactory}, which records request stats for a single service.
+ */
+class ServiceWSClient implements WSClient {
+
+  private final WSClient client;
+  private final ServiceWSClientStats stats;
+
+  ServiceWSClient(WSClient client, ServiceWSClientStats stats) {
+    this.client = client;
+    this.stats = stats;
+  }
+
+  ServiceWSClientStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public Object getUnderlying() {
+    return client.getUnderlying();
+  }
+
+  @Override
+  public play.api.libs.ws.WSClient asScala() {
+    return client.asScala();
+  }
+
+  @Override
+  public WSRequest url(String url) {
+    return client.url(url).setRequestFilter(stats.requestFilter());
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+}
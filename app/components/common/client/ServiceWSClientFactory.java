@@ -0,0 +1,97 @@
+package components.common.client;
+
+import akka.stream.Materializer;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+import org.slf4j.LoggerFactory;
+import play.inject.ApplicationLifecycle;
+import play.libs.ws.WSClient;
+import play.libs.ws.ahc.AhcWSClient;
+import play.libs.ws.ahc.AhcWSClientConfigFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates a dedicated {@link WSClient}, with its own connection pool, for each backend service. Each client is
+ * configured from {@code play.ws}, overridden by any settings in {@code serviceClients.<serviceName>.ws}, e.g.
+ * <pre>
+ * serviceClients."customer-service".ws {
+ *   compressionEnabled = true
+ *   ahc.maxConnectionsPerHost = 20
+ *   ahc.keepAlive = true
+ *   ahc.idleConnectionInPoolTimeout = 60s
+ *   ahc.maxConnectionLifetime = 10m
+ * }
+ * </pre>
+ * Requests made through each client are counted, see {@link #getStats()}.
+ */
+@Singleton
+public class ServiceWSClientFactory {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ServiceWSClientFactory.class);
+
+  private static final String SERVICE_CLIENTS_PATH = "serviceClients";
+
+  private final Config config;
+  private final Materializer materializer;
+  private final Map<String, ServiceWSClient> clients = new ConcurrentHashMap<>();
+
+  @Inject
+  public ServiceWSClientFactory(Config config, Materializer materializer, ApplicationLifecycle applicationLifecycle) {
+    this.config = config;
+    this.materializer = materializer;
+    applicationLifecycle.addStopHook(() -> {
+      close();
+      return CompletableFuture.completedFuture(null);
+    });
+  }
+
+  /**
+   * @param serviceName Name of the service, e.g. {@code customer-service}.
+   * @return Client for the service, created on first use.
+   */
+  public WSClient getClient(String serviceName) {
+    return clients.computeIfAbsent(serviceName, this::createClient);
+  }
+
+  /**
+   * @return Request stats for each client created by this factory, keyed by service name.
+   */
+  public Map<String, ServiceWSClientStats> getStats() {
+    Map<String, ServiceWSClientStats> stats = new TreeMap<>();
+    clients.forEach((serviceName, client) -> stats.put(serviceName, client.getStats()));
+    return stats;
+  }
+
+  private ServiceWSClient createClient(String serviceName) {
+    Config clientConfig = config;
+    String servicePath = ConfigUtil.joinPath(SERVICE_CLIENTS_PATH, serviceName, "ws");
+    if (config.hasPath(servicePath)) {
+      clientConfig = config.getConfig(servicePath).atPath("play.ws").withFallback(config);
+    }
+
+    int maxConnectionsPerHost = clientConfig.getInt("play.ws.ahc.maxConnectionsPerHost");
+    LOGGER.info("Creating WS client for {} with maxConnectionsPerHost {}", serviceName, maxConnectionsPerHost);
+
+    AhcWSClient client = AhcWSClient.create(AhcWSClientConfigFactory.forConfig(clientConfig, getClass().getClassLoader()),
+        null, materializer);
+    return new ServiceWSClient(client, new ServiceWSClientStats(serviceName, maxConnectionsPerHost));
+  }
+
+  private void close() {
+    clients.forEach((serviceName, client) -> {
+      try {
+        client.close();
+      } catch (IOException e) {
+        LOGGER.warn("Unable to close WS client for " + serviceName, e);
+      }
+    });
+    clients.clear();
+  }
+}
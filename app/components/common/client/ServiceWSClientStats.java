@@ -0,0 +1,75 @@
+package components.common.client;
+
+import play.libs.ws.WSRequestFilter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request counts for a {@link play.libs.ws.WSClient} created by {@link ServiceWSClientFactory}. Each active request holds a pooled
+ * connection, so comparing the peak number of active requests with the connection limit shows whether the pool is
+ * sized correctly for the service.
+ */
+public class ServiceWSClientStats {
+
+  private final String serviceName;
+  private final int maxConnectionsPerHost;
+  private final AtomicInteger activeRequests = new AtomicInteger();
+  private final AtomicInteger peakActiveRequests = new AtomicInteger();
+  private final AtomicLong totalRequests = new AtomicLong();
+  private final AtomicLong failedRequests = new AtomicLong();
+
+  ServiceWSClientStats(String serviceName, int maxConnectionsPerHost) {
+    this.serviceName = serviceName;
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+  }
+
+  WSRequestFilter requestFilter() {
+    return executor -> request -> {
+      totalRequests.incrementAndGet();
+      peakActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+      return executor.apply(request).whenComplete((response, error) -> {
+        activeRequests.decrementAndGet();
+        if (error != null) {
+          failedRequests.incrementAndGet();
+        }
+      });
+    };
+  }
+
+  public String getServiceName() {
+    return serviceName;
+  }
+
+  /**
+   * @return Configured connection limit per host, or -1 if unlimited.
+   */
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  public int getActiveRequests() {
+    return activeRequests.get();
+  }
+
+  public int getPeakActiveRequests() {
+    return peakActiveRequests.get();
+  }
+
+  public long getTotalRequests() {
+    return totalRequests.get();
+  }
+
+  /**
+   * @return Number of requests which failed to complete, e.g. due to connection errors or timeouts.
+   */
+  public long getFailedRequests() {
+    return failedRequests.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: active=%d peak=%d total=%d failed=%d maxConnectionsPerHost=%d", serviceName,
+        getActiveRequests(), getPeakActiveRequests(), getTotalRequests(), getFailedRequests(), maxConnectionsPerHost);
+  }
+}
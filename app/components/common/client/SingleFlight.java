@@ -0,0 +1,57 @@
+package components.common.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent asynchronous calls with the same key. While a call for a key is in progress, further calls for
+ * that key share its result instead of starting a new call. Results are not retained once the call completes.
+ *
+ * @param <K> Key type.
+ * @param <V> Result type.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * @param key  Key identifying the call.
+   * @param call Starts the call, if no call with the same key is in progress.
+   * @return Result of the in progress call for the key.
+   */
+  public CompletionStage<V> execute(K key, Supplier<? extends CompletionStage<V>> call) {
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      return existing.thenApply(value -> value);
+    }
+
+    CompletionStage<V> stage;
+    try {
+      stage = call.get();
+    } catch (RuntimeException exception) {
+      inFlight.remove(key, future);
+      future.completeExceptionally(exception);
+      return future;
+    }
+
+    stage.whenComplete((value, error) -> {
+      inFlight.remove(key, future);
+      if (error != null) {
+        future.completeExceptionally(error);
+      } else {
+        future.complete(value);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * @return Number of calls currently in progress.
+   */
+  public int size() {
+    return inFlight.size();
+  }
+}
@@ -4,8 +4,9 @@ import static components.common.client.RequestUtil.handleAsBoolean;
 import static components.common.client.RequestUtil.parse;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import components.common.logging.CorrelationId;
+import com.typesafe.config.Config;
 import components.common.logging.ServiceClientLogger;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.WSClient;
@@ -15,10 +16,12 @@ import uk.gov.bis.lite.user.api.view.UserAccountTypeView;
 import java.time.Duration;
 import java.util.concurrent.CompletionStage;
 
+@Singleton
 public class UserServiceClientBasicAuth {
 
   private static final String SERVICE_ADMIN_SERVLET_PING_PATH = "/admin/ping";
   private static final String USER_SERVICE = "user-service";
+  private static final String POLICY_CONFIG_PATH = "userService.policy";
 
   private static final String USER_ACCOUNT_TYPE_PATH = "%s/user-account-type/%s";
 
@@ -27,17 +30,29 @@ public class UserServiceClientBasicAuth {
   private final String credentials;
   private final WSClient wsClient;
   private final HttpExecutionContext context;
+  private final ServiceClientCore core;
 
   @Inject
   public UserServiceClientBasicAuth(@Named("userServiceAddress") String address,
                                     @Named("userServiceTimeout") int timeout,
                                     @Named("userServiceCredentials") String credentials,
-                                    WSClient wsClient, HttpExecutionContext httpExecutionContext) {
+                                    WSClient wsClient, HttpExecutionContext httpExecutionContext, Config config) {
+    this(address, timeout, credentials, wsClient, httpExecutionContext,
+        ClientPolicy.fromConfig(config, POLICY_CONFIG_PATH, ClientPolicy.DEFAULT));
+  }
+
+  /**
+   * @param policy Resilience settings of requests to the service, shared with {@link UserServiceClientJwt}. See
+   *               {@link ServiceClientCore#shared}.
+   */
+  public UserServiceClientBasicAuth(String address, int timeout, String credentials, WSClient wsClient,
+                                    HttpExecutionContext httpExecutionContext, ClientPolicy policy) {
     this.address = address;
     this.timeout = timeout;
     this.credentials = credentials;
     this.wsClient = wsClient;
     this.context = httpExecutionContext;
+    this.core = ServiceClientCore.shared(USER_SERVICE, timeout, policy, wsClient);
   }
 
   public CompletionStage<Boolean> serviceReachable() {
@@ -51,12 +66,10 @@ public class UserServiceClientBasicAuth {
 
   public CompletionStage<UserAccountTypeView> getUserAccountTypeView(String userId) {
     String url = String.format(USER_ACCOUNT_TYPE_PATH, address, userId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter("User basic", "GET", context))
-        .setRequestTimeout(Duration.ofMillis(timeout))
         .setAuth(credentials);
-    return request.get().handleAsync((response, error) ->
+    return core.get(request).handleAsync((response, error) ->
             parse(request, response, error, USER_SERVICE, "getUserAccountTypeView", UserAccountTypeView.class),
         context.current());
   }
@@ -3,22 +3,25 @@ package components.common.client;
 import static components.common.client.RequestUtil.parse;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import components.common.logging.CorrelationId;
+import com.typesafe.config.Config;
 import components.common.logging.ServiceClientLogger;
 import filters.common.JwtRequestFilter;
+import filters.common.JwtUserRequestFilter;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.WSClient;
 import play.libs.ws.WSRequest;
 import uk.gov.bis.lite.user.api.view.UserDetailsView;
 import uk.gov.bis.lite.user.api.view.UserPrivilegesView;
 
-import java.time.Duration;
 import java.util.concurrent.CompletionStage;
 
+@Singleton
 public class UserServiceClientJwt {
 
   private static final String USER_SERVICE = "user-service";
+  private static final String POLICY_CONFIG_PATH = "userService.policy";
 
   private static final String USER_PRIVILEGES_PATH = "%s/user-privileges/%s";
   private static final String USER_DETAILS_PATH = "%s/user-details/%s";
@@ -28,39 +31,49 @@ public class UserServiceClientJwt {
   private final JwtRequestFilter jwtRequestFilter;
   private final WSClient wsClient;
   private final HttpExecutionContext context;
+  private final ServiceClientCore core;
 
   @Inject
   public UserServiceClientJwt(@Named("userServiceAddress") String address,
                               @Named("userServiceTimeout") int timeout,
                               JwtRequestFilter jwtRequestFilter, WSClient wsClient,
-                              HttpExecutionContext httpExecutionContext) {
+                              HttpExecutionContext httpExecutionContext, Config config) {
+    this(address, timeout, jwtRequestFilter, wsClient, httpExecutionContext,
+        ClientPolicy.fromConfig(config, POLICY_CONFIG_PATH, ClientPolicy.DEFAULT));
+  }
+
+  /**
+   * @param policy Resilience settings of requests to the service, shared with {@link UserServiceClientBasicAuth}. See
+   *               {@link ServiceClientCore#shared}.
+   */
+  public UserServiceClientJwt(String address, int timeout, JwtRequestFilter jwtRequestFilter, WSClient wsClient,
+                              HttpExecutionContext httpExecutionContext, ClientPolicy policy) {
     this.address = address;
     this.timeout = timeout;
     this.jwtRequestFilter = jwtRequestFilter;
     this.wsClient = wsClient;
     this.context = httpExecutionContext;
+    this.core = ServiceClientCore.shared(USER_SERVICE, timeout, policy, wsClient);
   }
 
   public CompletionStage<UserPrivilegesView> getUserPrivilegeView(String userId) {
     String url = String.format(USER_PRIVILEGES_PATH, address, userId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter("User JWT", "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
-    return request.get().handleAsync((response, error) ->
+        .setRequestFilter(jwtFilter);
+    return core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parse(request, response, error, USER_SERVICE, "getUserPrivilegeView", UserPrivilegesView.class),
         context.current());
   }
 
   public CompletionStage<UserDetailsView> getUserDetailsView(String userId) {
     String url = String.format(USER_DETAILS_PATH, address, userId);
-    WSRequest request = wsClient.url(url)
-        .setRequestFilter(CorrelationId.requestFilter)
+    JwtUserRequestFilter jwtFilter = jwtRequestFilter.forCurrentUser();
+    WSRequest request = core.url(url)
         .setRequestFilter(ServiceClientLogger.requestFilter("User JWT", "GET", context))
-        .setRequestFilter(jwtRequestFilter)
-        .setRequestTimeout(Duration.ofMillis(timeout));
-    return request.get().handleAsync((response, error) ->
+        .setRequestFilter(jwtFilter);
+    return core.get(request, jwtFilter.getUserId()).handleAsync((response, error) ->
             parse(request, response, error, USER_SERVICE, "getUserDetailsView", UserDetailsView.class),
         context.current());
   }
@@ -4,55 +4,131 @@ import akka.stream.javadsl.FileIO;
 import akka.stream.javadsl.Source;
 import akka.util.ByteString;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
-import components.common.logging.CorrelationId;
+import com.typesafe.config.Config;
 import components.common.logging.ServiceClientLogger;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.WSClient;
 import play.libs.ws.WSRequest;
+import play.libs.ws.WSResponse;
 import play.mvc.Http.MultipartFormData.DataPart;
 import play.mvc.Http.MultipartFormData.FilePart;
 
 import java.nio.file.Path;
-import java.time.Duration;
 import java.util.Arrays;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+@Singleton
 public class VirusCheckerClient {
 
   private static final String VIRUS_CHECKER_SERVICE = "virus-checker-service";
+  private static final String VIRUS_CHECKER_SERVICE_STREAMING = "virus-checker-service-streaming";
+  private static final String POLICY_CONFIG_PATH = "virusService.policy";
+  private static final String STREAMING_POLICY_CONFIG_PATH = "virusService.streamingPolicy";
+
+  /**
+   * Policy of checks of streamed files if {@code virusService.streamingPolicy} is not configured. Each check is in
+   * flight for as long as the upload, so many more are allowed at once, and the checks are not retried as the file
+   * can only be read once.
+   */
+  public static final ClientPolicy DEFAULT_STREAMING_POLICY = new ClientPolicy(500, 5, 30000, 0, 100);
+
+  /**
+   * Timeout of checks of streamed files if {@code virusService.streamingTimeout} is not configured.
+   */
+  public static final int DEFAULT_STREAMING_TIMEOUT = 600000;
 
   private final HttpExecutionContext context;
+  private final ServiceClientCore core;
+  private final ServiceClientCore streamingCore;
   private final WSClient wsClient;
   private final String credentials;
   private final String address;
   private final int timeout;
+  private final int streamingTimeout;
 
+  /**
+   * @param timeout          Timeout of checks of files which have already been received.
+   * @param streamingTimeout Timeout of checks of files streamed while they are received, which take as long as the
+   *                         upload by the user.
+   * @param config           Config to read resilience settings from {@code virusService.policy}, and for checks of
+   *                         streamed files from {@code virusService.streamingPolicy}, see
+   *                         {@link ClientPolicy#fromConfig}.
+   */
   @Inject
   public VirusCheckerClient(@Named("virusServiceAddress") String address,
                             @Named("virusServiceTimeout") int timeout,
+                            @Named("virusServiceStreamingTimeout") int streamingTimeout,
                             @Named("virusServiceCredentials") String credentials,
-                            WSClient wsClient, HttpExecutionContext httpExecutionContext) {
+                            WSClient wsClient, HttpExecutionContext httpExecutionContext, Config config) {
     this.address = address;
     this.timeout = timeout;
+    this.streamingTimeout = streamingTimeout;
     this.credentials = credentials;
     this.wsClient = wsClient;
     this.context = httpExecutionContext;
+    this.core = ServiceClientCore.shared(VIRUS_CHECKER_SERVICE, timeout,
+        ClientPolicy.fromConfig(config, POLICY_CONFIG_PATH, ClientPolicy.DEFAULT), wsClient);
+    this.streamingCore = ServiceClientCore.shared(VIRUS_CHECKER_SERVICE_STREAMING, streamingTimeout,
+        ClientPolicy.fromConfig(config, STREAMING_POLICY_CONFIG_PATH, DEFAULT_STREAMING_POLICY), wsClient);
   }
 
   public CompletionStage<Boolean> isOk(Path path) {
-    WSRequest request = wsClient.url(address)
-        .setRequestFilter(CorrelationId.requestFilter)
+    WSRequest request = request(core, timeout);
+    return isOk(request, core.execute(request, r -> post(r, FileIO.fromFile(path.toFile()))));
+  }
+
+  /**
+   * Checks a file as it is streamed to the virus checker, without buffering it. The check uses the streaming timeout
+   * and policy, as the file may still be being received. Checks which fail because the file failed, or was not
+   * received before the timeout, are not counted as failures of the virus checker.
+   *
+   * @param file Contents of the file, which is run once.
+   */
+  public CompletionStage<Boolean> isOk(Source<ByteString, ?> file) {
+    AtomicBoolean fileFailed = new AtomicBoolean();
+    AtomicBoolean fileReceived = new AtomicBoolean();
+    Source<ByteString, ?> watchedFile = file.watchTermination((mat, done) -> {
+      done.whenComplete((result, error) -> {
+        fileFailed.set(error != null);
+        fileReceived.set(error == null);
+      });
+      return mat;
+    });
+    WSRequest request = request(streamingCore, streamingTimeout);
+    return isOk(request, streamingCore.execute(request, r -> post(r, watchedFile),
+        error -> fileFailed.get() || (isTimeout(error) && !fileReceived.get())));
+  }
+
+  private WSRequest request(ServiceClientCore serviceClientCore, int requestTimeout) {
+    return serviceClientCore.url(address, requestTimeout)
         .setRequestFilter(ServiceClientLogger.requestFilter("VirusCheck", "POST", context))
-        .setAuth(credentials)
-        .setRequestTimeout(Duration.ofMillis(timeout));
+        .setAuth(credentials);
+  }
+
+  private static CompletionStage<WSResponse> post(WSRequest request, Source<ByteString, ?> file) {
     // https://www.playframework.com/documentation/2.5.x/JavaWS#Submitting-multipart/form-data
-    Source<ByteString, ?> file = FileIO.fromFile(path.toFile());
     FilePart<Source<ByteString, ?>> fp = new FilePart<>("file", "file.txt", "text/plain", file);
     DataPart dp = new DataPart("key", "value");
-    return request.post(Source.from(Arrays.asList(fp, dp))).handleAsync((response, error) ->
+    return request.post(Source.from(Arrays.asList(fp, dp)));
+  }
+
+  private CompletionStage<Boolean> isOk(WSRequest request, CompletionStage<WSResponse> responseStage) {
+    return responseStage.handleAsync((response, error) ->
             "OK".equals(RequestUtil.parse(request, response, error, VIRUS_CHECKER_SERVICE, "isOk", String.class)),
         context.current());
   }
 
+  private static boolean isTimeout(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof TimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
 }
@@ -0,0 +1,74 @@
+package components.common.json;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import play.libs.Json;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads and writes JSON with readers and writers cached per type. Readers and writers are immutable and thread safe, and
+ * reuse the (de)serializers they have resolved, so repeated use avoids the lookups made by each
+ * {@link ObjectMapper#readValue} or {@link ObjectMapper#writeValueAsString} call.
+ * <p>
+ * Inject an instance to use the application's {@link ObjectMapper}, or use {@link #shared()} from static code.
+ */
+@Singleton
+public class JsonCodec {
+
+  private static volatile JsonCodec shared;
+
+  private final ObjectMapper mapper;
+  private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  @Inject
+  public JsonCodec(ObjectMapper mapper) {
+    this.mapper = mapper;
+  }
+
+  /**
+   * @return Codec using Play's {@link Json#mapper()}, which is replaced if the application replaces the mapper.
+   */
+  public static JsonCodec shared() {
+    JsonCodec current = shared;
+    JsonCodec codec = forMapper(current, Json.mapper());
+    if (codec != current) {
+      shared = codec;
+    }
+    return codec;
+  }
+
+  /**
+   * @return The given codec if it uses the given mapper, otherwise a new codec using the mapper.
+   */
+  static JsonCodec forMapper(JsonCodec codec, ObjectMapper mapper) {
+    return codec != null && codec.mapper == mapper ? codec : new JsonCodec(mapper);
+  }
+
+  public ObjectReader readerFor(Class<?> clazz) {
+    return readers.computeIfAbsent(clazz, mapper::readerFor);
+  }
+
+  public ObjectWriter writerFor(Class<?> clazz) {
+    return writers.computeIfAbsent(clazz, mapper::writerFor);
+  }
+
+  /**
+   * Writes a value as UTF-8 encoded JSON, without creating an intermediate String. Prefer this where the JSON is
+   * written to a stream or request body.
+   */
+  public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+    return value == null ? mapper.writeValueAsBytes(null) : writerFor(value.getClass()).writeValueAsBytes(value);
+  }
+
+  public String writeValueAsString(Object value) throws JsonProcessingException {
+    return value == null ? mapper.writeValueAsString(null) : writerFor(value.getClass()).writeValueAsString(value);
+  }
+
+}
@@ -59,6 +59,17 @@ public class CorrelationId {
     return correlationId;
   }
 
+  /**
+   * Get the Correlation ID for this request, or a new Correlation ID if one couldn't be found. Unlike {@link #get()}, a
+   * new ID is not stored on the thread, so this is safe to call from pooled threads which may later run other requests.
+   *
+   * @return Correlation ID
+   */
+  public static String getOrNew() {
+    String correlationId = MDC.get(MDC_KEY);
+    return correlationId == null || correlationId.isEmpty() ? UUID.randomUUID().toString() : correlationId;
+  }
+
   /**
    * Create a new Correlation ID
    */
@@ -93,4 +104,18 @@ public class CorrelationId {
     request.addHeader(HTTP_HEADER_NAME, CorrelationId.get());
     return executor.apply(request);
   };
+
+  /**
+   * Request filter which applies the given Correlation ID to outgoing requests. Unlike {@link #requestFilter}, the ID is
+   * fixed when the filter is created, so the filter can be applied on any thread, e.g. when a request is retried.
+   *
+   * @param correlationId Correlation ID to apply, usually {@link #getOrNew()} read on the request thread.
+   * @return Filter which adds the Correlation ID header.
+   */
+  public static WSRequestFilter requestFilter(String correlationId) {
+    return executor -> request -> {
+      request.addHeader(HTTP_HEADER_NAME, correlationId);
+      return executor.apply(request);
+    };
+  }
 }
@@ -0,0 +1,54 @@
+package components.common.logging;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the most recently completed spans in memory, so the downstream requests made while handling a request can be
+ * inspected, e.g. from a diagnostics page.
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+  private final int capacity;
+  private final Deque<Span> spans;
+
+  /**
+   * @param capacity Maximum number of spans to keep. The oldest spans are discarded first.
+   */
+  public InMemorySpanExporter(int capacity) {
+    this.capacity = capacity;
+    this.spans = new ArrayDeque<>(capacity);
+  }
+
+  @Override
+  public synchronized void export(Span span) {
+    if (spans.size() == capacity) {
+      spans.removeFirst();
+    }
+    spans.addLast(span);
+  }
+
+  /**
+   * @return Spans held, oldest first.
+   */
+  public synchronized List<Span> getSpans() {
+    return new ArrayList<>(spans);
+  }
+
+  /**
+   * @param traceId Trace to get spans for.
+   * @return Spans held for the trace, oldest first.
+   */
+  public synchronized List<Span> getSpans(String traceId) {
+    return spans.stream()
+        .filter(span -> span.getTraceId().equals(traceId))
+        .collect(Collectors.toList());
+  }
+
+  public synchronized void clear() {
+    spans.clear();
+  }
+}
@@ -0,0 +1,89 @@
+package components.common.logging;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of request latencies, using fixed buckets so recording a latency does not allocate.
+ */
+public class LatencyHistogram {
+
+  private static final long[] BUCKET_UPPER_BOUNDS_MILLIS =
+      {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, Long.MAX_VALUE};
+
+  private final LongAdder[] buckets = new LongAdder[BUCKET_UPPER_BOUNDS_MILLIS.length];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalMillis = new LongAdder();
+  private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Records a single latency.
+   *
+   * @param millis Latency in milliseconds.
+   * @return Number of latencies recorded, including this one.
+   */
+  public long record(long millis) {
+    long value = Math.max(0, millis);
+    int bucket = 0;
+    while (value > BUCKET_UPPER_BOUNDS_MILLIS[bucket]) {
+      bucket++;
+    }
+    buckets[bucket].increment();
+    totalMillis.add(value);
+    maxMillis.accumulate(value);
+    count.increment();
+    return count.sum();
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMaxMillis() {
+    return maxMillis.get();
+  }
+
+  public double getMeanMillis() {
+    long total = count.sum();
+    return total == 0 ? 0 : (double) totalMillis.sum() / total;
+  }
+
+  /**
+   * Estimates a percentile as the upper bound of the bucket it falls in, capped at the maximum recorded latency.
+   *
+   * @param percentile Percentile between 0 and 100.
+   * @return Estimated latency in milliseconds, or 0 if no latencies have been recorded.
+   */
+  public long getPercentileMillis(double percentile) {
+    long[] counts = new long[buckets.length];
+    long total = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(BUCKET_UPPER_BOUNDS_MILLIS[i], getMaxMillis());
+      }
+    }
+    return getMaxMillis();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d, mean=%.1fms, p50=%dms, p95=%dms, p99=%dms, max=%dms", getCount(), getMeanMillis(),
+        getPercentileMillis(50), getPercentileMillis(95), getPercentileMillis(99), getMaxMillis());
+  }
+}
@@ -0,0 +1,60 @@
+package components.common.logging;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Carries the MDC of a request, which holds its Correlation ID and trace, to code which runs on another thread. MDC is
+ * backed by a ThreadLocal, so it is not available on pooled threads such as scheduler, dispatcher or AHC threads unless
+ * it is copied there.
+ */
+public class MdcUtil {
+
+  private MdcUtil() {
+  }
+
+  /**
+   * @return Copy of the MDC of the current thread, or null if it is empty.
+   */
+  public static Map<String, String> copy() {
+    return MDC.getCopyOfContextMap();
+  }
+
+  /**
+   * Runs the given action with the given MDC, restoring the previous MDC of the thread afterwards so nothing is left on
+   * pooled threads.
+   *
+   * @param mdc    MDC to run with, as returned by {@link #copy()}.
+   * @param action Action to run.
+   */
+  public static void runWith(Map<String, String> mdc, Runnable action) {
+    callWith(mdc, () -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * As {@link #runWith(Map, Runnable)}, returning the result of the action.
+   */
+  public static <T> T callWith(Map<String, String> mdc, Supplier<T> action) {
+    Map<String, String> previous = MDC.getCopyOfContextMap();
+    if (mdc == null) {
+      MDC.clear();
+    } else {
+      MDC.setContextMap(mdc);
+    }
+    try {
+      return action.get();
+    } finally {
+      if (previous == null) {
+        MDC.clear();
+      } else {
+        MDC.setContextMap(previous);
+      }
+    }
+  }
+
+}
@@ -1,8 +1,8 @@
 package components.common.logging;
 
-import com.google.common.base.Stopwatch;
 import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.StandaloneWSRequest;
 import play.libs.ws.WSRequestFilter;
@@ -12,7 +12,11 @@ import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Utility class providing logging of HTTP/HTTPS request and responses for use in service clients
@@ -21,11 +25,15 @@ public class ServiceClientLogger {
 
   private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ServiceClientLogger.class);
 
+  private static final int DEFAULT_SAMPLE_RATE = 100;
+  private static final ConcurrentMap<String, ServiceMetrics> METRICS = new ConcurrentHashMap<>();
+  private static volatile int sampleRate = DEFAULT_SAMPLE_RATE;
+
   private ServiceClientLogger() {
   }
 
   /**
-   * Builds a URL from a {@link play.libs.ws.WSRequest} object
+   * Builds a URL from a {@link play.libs.ws.WSRequest} object, only called when the request is logged
    *
    * @param request
    * @return the URL with parameters, defaults to the requests {@link play.libs.ws.WSRequest#getUrl()} if the build is unsuccessful
@@ -57,6 +65,11 @@ public class ServiceClientLogger {
   /**
    * <p>Request filter for use with WSClient which logs outgoing http requests for use in service clients.</p>
    * <p>
+   * <p>The latency of every request is recorded in a per-service {@link LatencyHistogram}. Only one in every
+   * {@link #setSampleRate(int) sample rate} requests is logged at INFO, along with a summary of the service's latencies.
+   * All other requests are logged at DEBUG. Log messages are only built if they will be written, and the response is
+   * logged as soon as it completes, without switching threads.</p>
+   * <p>
    * <p>Example usage:</p>
    * <pre>{@code
    * ws.url("http://www.example.com/api")
@@ -76,21 +89,99 @@ public class ServiceClientLogger {
    *
    * @param serviceName          name of the service which the request is sent too (used for logging purposes only)
    * @param method               HTTP method used in this request (used for logging purposes only)
-   * @param httpExecutionContext The HTTP context in which the logs will be written
+   * @param httpExecutionContext Unused, the MDC of the thread the request is made on is used for logging instead
    * @return a request filter which logs the request
    */
   public static WSRequestFilter requestFilter(String serviceName, String method,
                                               HttpExecutionContext httpExecutionContext) {
+    ServiceMetrics metrics = METRICS.computeIfAbsent(serviceName, name -> new ServiceMetrics());
     return executor -> request -> {
-      String url = requestToURL(request);
-      LOGGER.info(String.format("%s service request - URL: %s, method: %s", serviceName, url, method));
-      Stopwatch stopwatch = Stopwatch.createStarted();
-      return executor.apply(request)
-          .thenApplyAsync(response -> {
-            LOGGER.info(String.format("%s service response - status code: %s, status text: %s, completed in %dms",
-                serviceName, response.getStatus(), response.getStatusText(), stopwatch.elapsed(TimeUnit.MILLISECONDS)));
-            return response;
-          }, httpExecutionContext.current());
+      boolean sampled = isSampled(metrics);
+      boolean logged = sampled ? LOGGER.isInfoEnabled() : LOGGER.isDebugEnabled();
+      Map<String, String> mdc = logged ? MDC.getCopyOfContextMap() : null;
+      if (logged) {
+        log(sampled, "{} service request - URL: {}, method: {}", serviceName, requestToURL(request), method);
+      }
+      long startNanos = System.nanoTime();
+      return executor.apply(request).whenComplete((response, error) -> {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        metrics.histogram.record(elapsedMillis);
+        if (logged) {
+          withMdc(mdc, () -> {
+            if (error != null) {
+              log(sampled, "{} service request failed after {}ms - {}", serviceName, elapsedMillis, metrics.histogram);
+            } else {
+              log(sampled, "{} service response - status code: {}, status text: {}, completed in {}ms - {}",
+                  serviceName, response.getStatus(), response.getStatusText(), elapsedMillis, metrics.histogram);
+            }
+          });
+        }
+      });
     };
   }
+
+  /**
+   * Sets how often requests are logged at INFO, e.g. a rate of 100 logs one in every 100 requests to each service. A rate
+   * of 1 logs every request and a rate of 0 or less disables INFO logging of requests.
+   *
+   * @param rate Number of requests per logged request.
+   */
+  public static void setSampleRate(int rate) {
+    sampleRate = rate;
+  }
+
+  /**
+   * @param serviceName Name of the service, as passed to {@link #requestFilter(String, String, HttpExecutionContext)}.
+   * @return Latencies of requests to the service, or null if no requests have been made to it.
+   */
+  public static LatencyHistogram getHistogram(String serviceName) {
+    ServiceMetrics metrics = METRICS.get(serviceName);
+    return metrics == null ? null : metrics.histogram;
+  }
+
+  /**
+   * @return Latencies of requests to all services, keyed by service name.
+   */
+  public static Map<String, LatencyHistogram> getHistograms() {
+    Map<String, LatencyHistogram> histograms = new TreeMap<>();
+    METRICS.forEach((serviceName, metrics) -> histograms.put(serviceName, metrics.histogram));
+    return histograms;
+  }
+
+  private static boolean isSampled(ServiceMetrics metrics) {
+    int rate = sampleRate;
+    return rate > 0 && metrics.requestCount.getAndIncrement() % rate == 0;
+  }
+
+  private static void log(boolean info, String format, Object... arguments) {
+    if (info) {
+      LOGGER.info(format, arguments);
+    } else {
+      LOGGER.debug(format, arguments);
+    }
+  }
+
+  /**
+   * Runs the given action with the MDC of the thread the request was made on, so the correlation ID is logged.
+   */
+  private static void withMdc(Map<String, String> mdc, Runnable action) {
+    Map<String, String> previous = MDC.getCopyOfContextMap();
+    if (mdc != null) {
+      MDC.setContextMap(mdc);
+    }
+    try {
+      action.run();
+    } finally {
+      if (previous == null) {
+        MDC.clear();
+      } else {
+        MDC.setContextMap(previous);
+      }
+    }
+  }
+
+  private static class ServiceMetrics {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicLong requestCount = new AtomicLong();
+  }
 }
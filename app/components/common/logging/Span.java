@@ -0,0 +1,81 @@
+package components.common.logging;
+
+/**
+ * Timing of a single outbound request made by a service client, recorded by {@link Tracing#requestFilter(String)}.
+ */
+public class Span {
+
+  private final String traceId;
+  private final String spanId;
+  private final String parentSpanId;
+  private final String serviceName;
+  private final String url;
+  private final long startTimeMillis;
+  private final long durationMillis;
+  private final int status;
+  private final String error;
+
+  public Span(String traceId, String spanId, String parentSpanId, String serviceName, String url,
+              long startTimeMillis, long durationMillis, int status, String error) {
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.serviceName = serviceName;
+    this.url = url;
+    this.startTimeMillis = startTimeMillis;
+    this.durationMillis = durationMillis;
+    this.status = status;
+    this.error = error;
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  /**
+   * @return Span id of the inbound request which made this request, or null if it is not known.
+   */
+  public String getParentSpanId() {
+    return parentSpanId;
+  }
+
+  public String getServiceName() {
+    return serviceName;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public long getStartTimeMillis() {
+    return startTimeMillis;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  /**
+   * @return HTTP status of the response, or -1 if no response was received.
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * @return Error message if no response was received, otherwise null.
+   */
+  public String getError() {
+    return error;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s %s %s status %d in %dms (trace %s, span %s)", serviceName, url,
+        error != null ? "failed: " + error : "completed", status, durationMillis, traceId, spanId);
+  }
+}
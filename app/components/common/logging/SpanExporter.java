@@ -0,0 +1,11 @@
+package components.common.logging;
+
+/**
+ * Receives completed spans from {@link Tracing}. Implementations must be thread safe and should not block, as spans are
+ * exported on the thread which completes the request.
+ */
+public interface SpanExporter {
+
+  void export(Span span);
+
+}
@@ -0,0 +1,148 @@
+package components.common.logging;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import play.libs.ws.WSRequestFilter;
+import play.mvc.Http;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Utility class providing W3C Trace Context propagation and timing of outbound requests.
+ * <p>
+ * Call {@link #setUp(Http.RequestHeader)} at the start of a request, alongside {@link CorrelationId#setUp}, to continue
+ * the trace of an upstream caller or start a new one. {@link #requestFilter(String)} then adds a {@code traceparent}
+ * header to each outgoing request, and exports a {@link Span} with the request's timing once it completes.
+ */
+public class Tracing {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(Tracing.class);
+
+  /**
+   * HTTP Header containing the W3C trace context, in the format {@code 00-<trace id>-<parent span id>-<flags>}
+   */
+  public static final String TRACEPARENT_HEADER_NAME = "traceparent";
+
+  /**
+   * Keys to store the trace and span ID against in MDC, use <code>{@code %mdc{traceId} }</code> in a log pattern to log
+   * the trace ID on all messages
+   */
+  private static final String TRACE_ID_MDC_KEY = "traceId";
+  private static final String SPAN_ID_MDC_KEY = "spanId";
+
+  private static final Pattern TRACEPARENT_PATTERN = Pattern.compile("00-[0-9a-f]{32}-[0-9a-f]{16}-[0-9a-f]{2}");
+  private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+  private static final String INVALID_SPAN_ID = "0000000000000000";
+
+  private static final InMemorySpanExporter IN_MEMORY_EXPORTER = new InMemorySpanExporter(1000);
+  private static volatile SpanExporter exporter = IN_MEMORY_EXPORTER;
+
+  private Tracing() {
+  }
+
+  /**
+   * Continues the trace from the {@code traceparent} header of the given request if it is valid, otherwise starts a new
+   * trace. The trace is set on the current thread using MDC.
+   *
+   * @param requestHeader HTTP Request headers which may contain a {@code traceparent} header.
+   */
+  public static void setUp(Http.RequestHeader requestHeader) {
+    Optional<String> header = requestHeader.header(TRACEPARENT_HEADER_NAME);
+    if (header.isPresent() && isValidTraceparent(header.get())) {
+      String[] parts = header.get().split("-");
+      MDC.put(TRACE_ID_MDC_KEY, parts[1]);
+      MDC.put(SPAN_ID_MDC_KEY, parts[2]);
+    } else {
+      MDC.put(TRACE_ID_MDC_KEY, newTraceId());
+      MDC.remove(SPAN_ID_MDC_KEY);
+    }
+  }
+
+  /**
+   * @return Trace ID of the current request, or a new trace ID if a trace has not been set up. A new ID is not stored in
+   * MDC, as this may be called on a pooled thread which is later reused for other requests.
+   */
+  public static String getTraceId() {
+    String traceId = MDC.get(TRACE_ID_MDC_KEY);
+    return StringUtils.isEmpty(traceId) ? newTraceId() : traceId;
+  }
+
+  /**
+   * Sets the exporter which completed spans are sent to. By default spans are held by an
+   * {@link InMemorySpanExporter}, see {@link #getInMemoryExporter()}.
+   */
+  public static void setExporter(SpanExporter spanExporter) {
+    exporter = spanExporter;
+  }
+
+  /**
+   * @return The default exporter, which holds the 1000 most recent spans.
+   */
+  public static InMemorySpanExporter getInMemoryExporter() {
+    return IN_MEMORY_EXPORTER;
+  }
+
+  /**
+   * Request filter which adds a {@code traceparent} header to outgoing requests and exports a {@link Span} for each
+   * request. The current trace is read when the filter is created, so the filter should be created on the request
+   * thread.
+   *
+   * @param serviceName Name of the service the request is sent to.
+   * @return Filter which traces requests.
+   */
+  public static WSRequestFilter requestFilter(String serviceName) {
+    String traceId = getTraceId();
+    String parentSpanId = MDC.get(SPAN_ID_MDC_KEY);
+    return executor -> request -> {
+      String spanId = newSpanId();
+      request.addHeader(TRACEPARENT_HEADER_NAME, "00-" + traceId + "-" + spanId + "-01");
+      long startTimeMillis = System.currentTimeMillis();
+      long startNanos = System.nanoTime();
+      return executor.apply(request).whenComplete((response, error) -> {
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        int status = error == null ? response.getStatus() : -1;
+        String errorMessage = error == null ? null : String.valueOf(error.getMessage());
+        export(new Span(traceId, spanId, parentSpanId, serviceName, request.getUrl(),
+            startTimeMillis, durationMillis, status, errorMessage));
+      });
+    };
+  }
+
+  private static void export(Span span) {
+    try {
+      exporter.export(span);
+    } catch (RuntimeException exception) {
+      LOGGER.warn("Unable to export span " + span, exception);
+    }
+  }
+
+  private static boolean isValidTraceparent(String traceparent) {
+    if (!TRACEPARENT_PATTERN.matcher(traceparent).matches()) {
+      return false;
+    }
+    String[] parts = traceparent.split("-");
+    return !INVALID_TRACE_ID.equals(parts[1]) && !INVALID_SPAN_ID.equals(parts[2]);
+  }
+
+  private static String newTraceId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    String traceId;
+    do {
+      traceId = String.format("%016x%016x", random.nextLong(), random.nextLong());
+    } while (INVALID_TRACE_ID.equals(traceId));
+    return traceId;
+  }
+
+  private static String newSpanId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    String spanId;
+    do {
+      spanId = String.format("%016x", random.nextLong());
+    } while (INVALID_SPAN_ID.equals(spanId));
+    return spanId;
+  }
+}
@@ -0,0 +1,279 @@
+package components.common.state;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Packs all context params into a single signed token, so a {@link ContextParamManager} only needs to add one parameter
+ * to each URL or form. The token is HMAC-SHA256 signed, so values read from it are known to have been issued by this
+ * application. Payloads are optionally deflated when this makes them smaller.
+ * <p>
+ * Tokens expire a fixed time after they are issued, and may be bound to the current user or session, in which case they
+ * are only accepted for the same user or session. The binding is included in the signature but not in the token.
+ * <p>
+ * Once envelope mode is enabled, individually sent params are not accepted unless
+ * {@link #ContextParamEnvelope(String, boolean, Duration, Supplier, boolean)} is used to accept them from requests
+ * without an envelope while links created before envelope mode was enabled are still in use. Requests with an envelope
+ * which is invalid never fall back to individually sent params.
+ * <p>
+ * Token format: {@code <flag>.<issued at>.<payload>.<signature>}, where issued at is the issue time in epoch seconds
+ * in base 36, payload and signature are unpadded URL-safe base64 and flag indicates whether the payload is deflated. All
+ * characters in the token are safe to use in a URL without encoding.
+ */
+public class ContextParamEnvelope {
+
+  private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ContextParamEnvelope.class);
+
+  public static final String ENVELOPE_PARAM_NAME = "ctx_envelope";
+
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final String PLAIN_FLAG = "p";
+  private static final String DEFLATED_FLAG = "z";
+  private static final int MIN_DEFLATE_LENGTH = 64;
+  private static final Duration DEFAULT_MAX_AGE = Duration.ofHours(12);
+
+  private final SecretKeySpec signingKey;
+  private final boolean deflate;
+  private final Duration maxAge;
+  private final Supplier<String> binding;
+  private final boolean unsignedParamsAccepted;
+  private final Clock clock;
+
+  /**
+   * Creates an envelope whose tokens expire after 12 hours and are not bound to a user or session.
+   *
+   * @param key Secret used to sign tokens. Must be at least 32 bytes in length.
+   * @param deflate Whether to deflate token payloads where this reduces their size.
+   */
+  public ContextParamEnvelope(String key, boolean deflate) {
+    this(key, deflate, DEFAULT_MAX_AGE, () -> "");
+  }
+
+  /**
+   * @param key Secret used to sign tokens. Must be at least 32 bytes in length.
+   * @param deflate Whether to deflate token payloads where this reduces their size.
+   * @param maxAge Time after which tokens are no longer accepted.
+   * @param binding Supplies the id of the current user or session when a token is encoded or decoded, e.g. the user id
+   *                from the current request's auth info. Tokens are only accepted when the binding is the same as when
+   *                they were issued.
+   */
+  public ContextParamEnvelope(String key, boolean deflate, Duration maxAge, Supplier<String> binding) {
+    this(key, deflate, maxAge, binding, false);
+  }
+
+  /**
+   * @param key Secret used to sign tokens. Must be at least 32 bytes in length.
+   * @param deflate Whether to deflate token payloads where this reduces their size.
+   * @param maxAge Time after which tokens are no longer accepted.
+   * @param binding Supplies the id of the current user or session when a token is encoded or decoded.
+   * @param unsignedParamsAccepted Migration flag. If true, individually sent params are read from requests which have
+   *                               no envelope, e.g. from links created before envelope mode was enabled. These values
+   *                               are not signed, so this should only be enabled until such links have expired.
+   */
+  public ContextParamEnvelope(String key, boolean deflate, Duration maxAge, Supplier<String> binding,
+                              boolean unsignedParamsAccepted) {
+    this(key, deflate, maxAge, binding, unsignedParamsAccepted, Clock.systemUTC());
+  }
+
+  ContextParamEnvelope(String key, boolean deflate, Duration maxAge, Supplier<String> binding, Clock clock) {
+    this(key, deflate, maxAge, binding, false, clock);
+  }
+
+  ContextParamEnvelope(String key, boolean deflate, Duration maxAge, Supplier<String> binding,
+                       boolean unsignedParamsAccepted, Clock clock) {
+    if (key == null || key.getBytes(StandardCharsets.UTF_8).length < 32) {
+      throw new RuntimeException("key must be >= 32 bytes in length");
+    }
+    this.signingKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    this.deflate = deflate;
+    this.maxAge = maxAge;
+    this.binding = binding;
+    this.unsignedParamsAccepted = unsignedParamsAccepted;
+    this.clock = clock;
+  }
+
+  /**
+   * @return True if individually sent params may be read from requests without an envelope.
+   */
+  public boolean isUnsignedParamsAccepted() {
+    return unsignedParamsAccepted;
+  }
+
+  /**
+   * @param params Param name/value pairs to pack. Blank values are omitted.
+   * @return Signed token containing the params, or empty string if there are no non-blank params.
+   */
+  public String encode(Map<String, String> params) {
+    StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, String> entry : params.entrySet()) {
+      if (StringUtils.isNoneBlank(entry.getValue())) {
+        if (builder.length() > 0) {
+          builder.append('&');
+        }
+        builder.append(urlEncode(entry.getKey())).append('=').append(urlEncode(entry.getValue()));
+      }
+    }
+
+    if (builder.length() == 0) {
+      return "";
+    }
+
+    byte[] payload = builder.toString().getBytes(StandardCharsets.UTF_8);
+    String flag = PLAIN_FLAG;
+    if (deflate && payload.length >= MIN_DEFLATE_LENGTH) {
+      byte[] deflated = deflate(payload);
+      if (deflated.length < payload.length) {
+        payload = deflated;
+        flag = DEFLATED_FLAG;
+      }
+    }
+
+    String issuedAt = Long.toString(clock.millis() / 1000, 36);
+    String signedContent = flag + "." + issuedAt + "." + base64Encode(payload);
+    return signedContent + "." + base64Encode(sign(signedContent));
+  }
+
+  /**
+   * @param token Token created by {@link #encode(Map)}.
+   * @return Param name/value pairs read from the token. Empty if the token is blank, malformed, has an invalid
+   * signature, has expired or was issued for a different binding.
+   */
+  public Map<String, String> decode(String token) {
+    if (StringUtils.isBlank(token)) {
+      return Collections.emptyMap();
+    }
+
+    //Token contents are not logged, as they may be replayed
+    String[] parts = token.split("\\.", -1);
+    if (parts.length != 4) {
+      LOGGER.warn("Ignoring malformed context param envelope of length {}", token.length());
+      return Collections.emptyMap();
+    }
+
+    try {
+      String signedContent = parts[0] + "." + parts[1] + "." + parts[2];
+      byte[] signature = Base64.getUrlDecoder().decode(parts[3]);
+      if (!MessageDigest.isEqual(signature, sign(signedContent))) {
+        LOGGER.warn("Ignoring context param envelope with invalid signature");
+        return Collections.emptyMap();
+      }
+
+      long issuedAtMillis = Long.parseLong(parts[1], 36) * 1000;
+      if (clock.millis() - issuedAtMillis > maxAge.toMillis()) {
+        LOGGER.warn("Ignoring expired context param envelope");
+        return Collections.emptyMap();
+      }
+
+      byte[] payload = Base64.getUrlDecoder().decode(parts[2]);
+      if (DEFLATED_FLAG.equals(parts[0])) {
+        payload = inflate(payload);
+      }
+
+      return parsePayload(new String(payload, StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException | DataFormatException e) {
+      LOGGER.warn("Ignoring unreadable context param envelope: {}", e.getMessage());
+      return Collections.emptyMap();
+    }
+  }
+
+  private Map<String, String> parsePayload(String payload) {
+    Map<String, String> params = new LinkedHashMap<>();
+    for (String pair : payload.split("&")) {
+      int separatorIndex = pair.indexOf('=');
+      if (separatorIndex != -1) {
+        params.put(urlDecode(pair.substring(0, separatorIndex)), urlDecode(pair.substring(separatorIndex + 1)));
+      }
+    }
+    return params;
+  }
+
+  /**
+   * Signs the content together with the current binding, so tokens are only valid for the binding they were issued for.
+   */
+  private byte[] sign(String content) {
+    try {
+      Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+      mac.init(signingKey);
+      mac.update(content.getBytes(StandardCharsets.UTF_8));
+      mac.update((byte) 0);
+      return mac.doFinal(StringUtils.defaultString(binding.get()).getBytes(StandardCharsets.UTF_8));
+    } catch (GeneralSecurityException e) {
+      throw new RuntimeException("Unable to sign context param envelope", e);
+    }
+  }
+
+  private static byte[] deflate(byte[] input) {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(input.length);
+      byte[] buffer = new byte[512];
+      while (!deflater.finished()) {
+        outputStream.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return outputStream.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] input) throws DataFormatException {
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(input);
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(input.length * 4);
+      byte[] buffer = new byte[512];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new DataFormatException("Truncated context param envelope payload");
+        }
+        outputStream.write(buffer, 0, length);
+      }
+      return outputStream.toByteArray();
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static String base64Encode(byte[] bytes) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  private static String urlEncode(String value) {
+    try {
+      return URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException("Problem encoding context param", e);
+    }
+  }
+
+  private static String urlDecode(String value) {
+    try {
+      return URLDecoder.decode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException("Problem decoding context param", e);
+    }
+  }
+}
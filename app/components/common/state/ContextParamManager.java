@@ -1,17 +1,23 @@
 package components.common.state;
 
+import static play.mvc.Controller.ctx;
 import static play.mvc.Results.redirect;
 
-import io.mikael.urlbuilder.UrlBuilder;
 import org.apache.commons.lang3.StringUtils;
 import play.mvc.Call;
+import play.mvc.Http;
 import play.mvc.Result;
+import play.twirl.api.Html;
+import play.twirl.api.HtmlFormat;
 
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
@@ -21,38 +27,63 @@ import java.util.stream.Collectors;
  * on an incoming request, and are set on the current HTTP context. Values may be modified as the response is processed,
  * in which case they are updated on the HTTP context. This object should then be used to provide the final values for
  * appending to a URI, or adding to an HTML form as hidden fields.
+ * <p>
+ * If constructed with a {@link ContextParamEnvelope}, all params are packed into a single signed envelope param
+ * rather than being added individually. Values are then only read from the envelope of incoming requests; individually
+ * sent params are ignored, so they cannot override or replace signed values. See {@link ContextParamEnvelope} for the
+ * migration flag which accepts them from requests without an envelope.
  */
 public class ContextParamManager {
 
   public static final String CTX_PARAM_NAME = "uri_param_decorator";
 
+  /**
+   * Name of the context arg holding the encoded query string for the current param values. This is built on first use
+   * in a request and discarded whenever a param value is updated.
+   */
+  static final String CTX_QUERY_SUFFIX_NAME = "uri_param_decorator_query";
+
+  /**
+   * Name of the context arg holding the rendered hidden form fields for the current param values. This is built on
+   * first use in a request and discarded whenever a param value is updated.
+   */
+  static final String CTX_FORM_PARAMS_HTML_NAME = "uri_param_decorator_form_html";
+
   private final List<ContextParamProvider> contextParamProviderList;
+  private final ContextParamEnvelope contextParamEnvelope;
 
   public ContextParamManager(ContextParamProvider... contextParamProviderList) {
+    this((ContextParamEnvelope) null, contextParamProviderList);
+  }
+
+  /**
+   * @param contextParamEnvelope Envelope to pack params into, or null to add each param individually.
+   * @param contextParamProviderList Providers of all params known to this manager.
+   */
+  public ContextParamManager(ContextParamEnvelope contextParamEnvelope,
+                             ContextParamProvider... contextParamProviderList) {
     this.contextParamProviderList = Arrays.asList(contextParamProviderList);
+    this.contextParamEnvelope = contextParamEnvelope;
   }
 
   /**
-   * Adds all context parameters known to this manager as query string parameters to the given Call.
+   * Adds all context parameters known to this manager as query string parameters to the given Call. The encoded
+   * parameters are cached on the current context until a param value is next updated.
    * @param call Call to append parameters to.
    * @return New URI for call, with parameters added.
    */
   public String addParamsToCall(Call call) {
+    String url = call.url();
+    String querySuffix = getQuerySuffix();
 
-    try {
-      UrlBuilder urlBuilder = UrlBuilder.fromUri(new URI(call.url()));
-
-      for (ContextParamProvider provider : contextParamProviderList) {
-        String paramValue = provider.getParamValueFromContext();
-        if (StringUtils.isNoneBlank(paramValue)) {
-          urlBuilder = urlBuilder.addParameter(provider.getParamName(), paramValue);
-        }
-      }
-
-      return urlBuilder.toUri().toString();
-
-    } catch (URISyntaxException e) {
-      throw new RuntimeException("Problem parsing URI", e);
+    if (querySuffix.isEmpty()) {
+      return url;
+    } else if (url.endsWith("?") || url.endsWith("&")) {
+      return url + querySuffix;
+    } else if (url.indexOf('?') == -1) {
+      return url + "?" + querySuffix;
+    } else {
+      return url + "&" + querySuffix;
     }
   }
 
@@ -68,20 +99,121 @@ public class ContextParamManager {
 
   /**
    * Updates the current Http Context so it has the latest context parameter values from the current request. This should
-   * be called at the start of request processing.
+   * be called at the start of request processing. All parameters are read from the request in a single pass and the
+   * resulting snapshot is kept on the context for subsequent calls to
+   * {@link ContextParamProvider#getParamValueFromRequest()}.
    */
   public void setAllContextArgsFromRequest() {
-    contextParamProviderList.forEach(e -> e.updateParamValueOnContext(e.getParamValueFromRequest()));
+    List<String> paramNames = contextParamProviderList.stream()
+        .map(ContextParamProvider::getParamName)
+        .collect(Collectors.toList());
+
+    ContextParamSnapshot snapshot = ContextParamSnapshot.fromRequest(ctx().request(), paramNames,
+        contextParamEnvelope);
+    ctx().args.put(ContextParamSnapshot.CTX_SNAPSHOT_NAME, snapshot);
+
+    contextParamProviderList.forEach(e -> e.updateParamValueOnContext(snapshot.get(e.getParamName())));
   }
 
   /**
    * @return All context param name/value tuples known to this manager, for adding to an HTML form or URL.
    */
   public Collection<ContextParam> getAllContextParams() {
+    if (contextParamEnvelope != null) {
+      String envelopeToken = contextParamEnvelope.encode(getParamValuesFromContext());
+      if (envelopeToken.isEmpty()) {
+        return Collections.emptyList();
+      } else {
+        return Collections.singletonList(new ContextParam(ContextParamEnvelope.ENVELOPE_PARAM_NAME, envelopeToken));
+      }
+    }
+
     return contextParamProviderList
         .stream()
         .map(e -> new ContextParam(e.getParamName(), e.getParamValueFromContext()))
         .filter(e -> StringUtils.isNoneBlank(e.getValue()))
         .collect(Collectors.toList());
   }
+
+  /**
+   * Renders all context params known to this manager as hidden HTML form fields. The rendered fields are cached on the
+   * current context until a param value is next updated, so forms on the same page share the same fragment.
+   * @return Hidden input fields with escaped names and values.
+   */
+  public Html getContextFormParamsHtml() {
+    Html formParamsHtml = (Html) ctx().args.get(CTX_FORM_PARAMS_HTML_NAME);
+    if (formParamsHtml == null) {
+      StringBuilder builder = new StringBuilder();
+      for (ContextParam contextParam : getAllContextParams()) {
+        builder.append("<input type=\"hidden\" name=\"")
+            .append(HtmlFormat.escape(contextParam.getName()).body())
+            .append("\" value=\"")
+            .append(HtmlFormat.escape(contextParam.getValue()).body())
+            .append("\" />\n");
+      }
+      formParamsHtml = HtmlFormat.raw(builder.toString());
+      ctx().args.put(CTX_FORM_PARAMS_HTML_NAME, formParamsHtml);
+    }
+    return formParamsHtml;
+  }
+
+  /**
+   * Discards any cached representations of the context params on the given context, so they are rebuilt from the
+   * latest values on next use.
+   * @param ctx Context to clear.
+   */
+  static void invalidateCachedParams(Http.Context ctx) {
+    ctx.args.remove(CTX_QUERY_SUFFIX_NAME);
+    ctx.args.remove(CTX_FORM_PARAMS_HTML_NAME);
+  }
+
+  /**
+   * @return Encoded query string (without a leading separator) for all non-blank context params on the current
+   * context, or empty string if there are none.
+   */
+  private String getQuerySuffix() {
+    String querySuffix = (String) ctx().args.get(CTX_QUERY_SUFFIX_NAME);
+    if (querySuffix == null) {
+      querySuffix = buildQuerySuffix();
+      ctx().args.put(CTX_QUERY_SUFFIX_NAME, querySuffix);
+    }
+    return querySuffix;
+  }
+
+  private String buildQuerySuffix() {
+    if (contextParamEnvelope != null) {
+      String envelopeToken = contextParamEnvelope.encode(getParamValuesFromContext());
+      //Envelope tokens only contain URL safe characters
+      return envelopeToken.isEmpty() ? "" : ContextParamEnvelope.ENVELOPE_PARAM_NAME + "=" + envelopeToken;
+    }
+
+    StringBuilder builder = new StringBuilder();
+    for (ContextParamProvider provider : contextParamProviderList) {
+      String paramValue = provider.getParamValueFromContext();
+      if (StringUtils.isNoneBlank(paramValue)) {
+        if (builder.length() > 0) {
+          builder.append('&');
+        }
+        builder.append(encodeQueryComponent(provider.getParamName()))
+            .append('=')
+            .append(encodeQueryComponent(paramValue));
+      }
+    }
+    return builder.toString();
+  }
+
+  private Map<String, String> getParamValuesFromContext() {
+    Map<String, String> paramValues = new LinkedHashMap<>();
+    contextParamProviderList.forEach(e -> paramValues.put(e.getParamName(), e.getParamValueFromContext()));
+    return paramValues;
+  }
+
+  private static String encodeQueryComponent(String value) {
+    try {
+      //URLEncoder produces form encoding - spaces must be percent encoded to be safe anywhere in a URI
+      return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException("Problem encoding URI parameter", e);
+    }
+  }
 }
@@ -4,7 +4,6 @@ package components.common.state;
 import static play.mvc.Controller.ctx;
 
 import org.apache.commons.lang3.StringUtils;
-import utils.common.UploadUtil;
 
 import java.util.Map;
 import java.util.Objects;
@@ -33,12 +32,7 @@ public abstract class ContextParamProvider {
     }
     else {
       //Check POST params
-      Map<String, String[]> postParamMap;
-      if (UploadUtil.isMultipartRequest(ctx().request())) {
-        postParamMap = ctx().request().body().asMultipartFormData().asFormUrlEncoded();
-      } else {
-        postParamMap = ctx().request().body().asFormUrlEncoded();
-      }
+      Map<String, String[]> postParamMap = ContextParamSnapshot.readPostParams(ctx().request());
 
       if (postParamMap == null) {
         if (strict) {
@@ -74,11 +68,18 @@ public abstract class ContextParamProvider {
    * Gets the value of the parameter as it was sent in the request. Note this may not be the latest value; the value
    * on the current context may have been modified. Therefore you should only use this method to retrieve a parameter
    * before it could have been modified - otherwise, use {@link #getParamValueFromContext()}.  If the parameter is not
-   * set on the context, returns empty string.
+   * set on the context, returns empty string. If {@link ContextParamManager#setAllContextArgsFromRequest()} has been
+   * called for the current request, the value is read from the snapshot it created rather than the request itself. If
+   * the snapshot is in envelope mode, the value is only read from the request's envelope.
    * @return Param value or empty string.
    */
   public String getParamValueFromRequest() {
-    return getParamValueFromRequest(getParamName(), false);
+    ContextParamSnapshot snapshot = (ContextParamSnapshot) ctx().args.get(ContextParamSnapshot.CTX_SNAPSHOT_NAME);
+    if (snapshot != null && (snapshot.contains(getParamName()) || !snapshot.acceptsUnsignedParams())) {
+      return snapshot.get(getParamName());
+    } else {
+      return getParamValueFromRequest(getParamName(), false);
+    }
   }
 
   /**
@@ -98,5 +99,6 @@ public abstract class ContextParamProvider {
    */
   public void updateParamValueOnContext(String paramValue) {
     ctx().args.put(getParamName(), paramValue);
+    ContextParamManager.invalidateCachedParams(ctx());
   }
 }
@@ -0,0 +1,133 @@
+package components.common.state;
+
+import org.apache.commons.lang3.StringUtils;
+import play.mvc.Http;
+import utils.common.UploadUtil;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the context param values sent on a request. The query string and POST body are each read at most
+ * once when the snapshot is created, so providers reading their value from the snapshot do not repeatedly parse the
+ * request. If a {@link ContextParamEnvelope} is in use, the envelope is decoded the first time a param is read.
+ */
+class ContextParamSnapshot {
+
+  static final String CTX_SNAPSHOT_NAME = "context_param_snapshot";
+
+  private final Map<String, String> paramValues;
+  private final ContextParamEnvelope envelope;
+  private final String envelopeToken;
+  private Map<String, String> envelopeValues;
+
+  private ContextParamSnapshot(Map<String, String> paramValues, ContextParamEnvelope envelope, String envelopeToken) {
+    this.paramValues = Collections.unmodifiableMap(paramValues);
+    this.envelope = envelope;
+    this.envelopeToken = envelopeToken;
+  }
+
+  /**
+   * Reads the given parameters from the request. GET params take precedence over POST params. If an envelope is in use,
+   * values are only read from the request's envelope and individually sent params are ignored, so they cannot override
+   * or replace signed values. See {@link #get(String)}.
+   * @param request Request to read.
+   * @param paramNames Names of all parameters to read.
+   * @param envelope Envelope used to decode the {@link ContextParamEnvelope#ENVELOPE_PARAM_NAME} param, or null if
+   *                 envelope mode is not in use.
+   * @return Snapshot of parameter values.
+   */
+  static ContextParamSnapshot fromRequest(Http.Request request, Collection<String> paramNames,
+                                          ContextParamEnvelope envelope) {
+    Map<String, String[]> queryParamMap = request.queryString();
+    Map<String, String[]> postParamMap = null;
+    boolean postParamsRead = false;
+
+    Map<String, String> paramValues = new HashMap<>();
+    String envelopeToken = "";
+    for (String paramName : paramNames) {
+      String value = firstValue(queryParamMap, paramName);
+      if (StringUtils.isBlank(value)) {
+        if (!postParamsRead) {
+          postParamMap = readPostParams(request);
+          postParamsRead = true;
+        }
+        value = StringUtils.defaultString(firstValue(postParamMap, paramName));
+      }
+      paramValues.put(paramName, value);
+    }
+
+    if (envelope != null) {
+      envelopeToken = firstValue(queryParamMap, ContextParamEnvelope.ENVELOPE_PARAM_NAME);
+      if (StringUtils.isBlank(envelopeToken)) {
+        if (!postParamsRead) {
+          postParamMap = readPostParams(request);
+        }
+        envelopeToken = StringUtils.defaultString(firstValue(postParamMap, ContextParamEnvelope.ENVELOPE_PARAM_NAME));
+      }
+    }
+
+    return new ContextParamSnapshot(paramValues, envelope, envelopeToken);
+  }
+
+  /**
+   * @param request Request to read.
+   * @return The form encoded POST params of the request, or null if it has none.
+   */
+  static Map<String, String[]> readPostParams(Http.Request request) {
+    if (UploadUtil.isMultipartRequest(request)) {
+      return request.body().asMultipartFormData().asFormUrlEncoded();
+    } else {
+      return request.body().asFormUrlEncoded();
+    }
+  }
+
+  private static String firstValue(Map<String, String[]> paramMap, String paramName) {
+    if (paramMap == null) {
+      return null;
+    }
+    String[] paramArray = paramMap.get(paramName);
+    if (paramArray == null || paramArray.length == 0) {
+      return null;
+    } else {
+      return paramArray[0];
+    }
+  }
+
+  /**
+   * @param paramName Name of parameter.
+   * @return True if the parameter was read when this snapshot was created.
+   */
+  boolean contains(String paramName) {
+    return paramValues.containsKey(paramName);
+  }
+
+  /**
+   * @return True if individually sent params may be read for this request. This is the case if envelope mode is not in
+   * use, or if the request has no envelope and the envelope accepts unsigned params for migration.
+   */
+  boolean acceptsUnsignedParams() {
+    return envelope == null || (envelopeToken.isEmpty() && envelope.isUnsignedParamsAccepted());
+  }
+
+  /**
+   * Gets the value of a parameter. If envelope mode is in use, the value is read from the envelope. An envelope which
+   * is missing, tampered with, expired or bound to another user has no values, and individually sent params are not
+   * used in its place unless {@link #acceptsUnsignedParams()}.
+   * @param paramName Name of parameter.
+   * @return Value of the parameter or empty string.
+   */
+  String get(String paramName) {
+    String value = acceptsUnsignedParams() ? paramValues.get(paramName) : getEnvelopeValues().get(paramName);
+    return StringUtils.defaultString(value);
+  }
+
+  private Map<String, String> getEnvelopeValues() {
+    if (envelopeValues == null) {
+      envelopeValues = envelopeToken.isEmpty() ? Collections.emptyMap() : envelope.decode(envelopeToken);
+    }
+    return envelopeValues;
+  }
+}
@@ -81,13 +81,40 @@ public class FileServiceImpl implements FileService {
   }
 
   private CompletionStage<UploadResult> processUpload(String folder, MultipartResult multipartResult) {
-    if (multipartResult.isValid()) {
+    if (multipartResult.getUploadResult() != null) {
+      return CompletableFuture.supplyAsync(() -> promote(folder, multipartResult.getUploadResult()), context.current());
+    } else if (multipartResult.isValid()) {
       return checkForVirus(multipartResult).thenApplyAsync(result -> uploadToS3AndDeleteMultipartResult(folder, result), context.current());
     } else {
       return completedFuture(UploadResult.failedUpload(multipartResult.getFilename(), multipartResult.getError()));
     }
   }
 
+  /**
+   * Moves a file uploaded to the staging folder by {@link StreamingUploadMultipartParser} to the given folder, now the
+   * action has accepted the upload.
+   */
+  private UploadResult promote(String folder, UploadResult staged) {
+    if (!staged.isValid()) {
+      return staged;
+    }
+    String stagedKey = staged.getFolder() + "/" + staged.getId();
+    try {
+      amazonS3.copyObject(staged.getBucket(), stagedKey, staged.getBucket(), folder + "/" + staged.getId());
+    } catch (Exception exception) {
+      LOGGER.error("Unable to move file with filename {} from {} to folder {}", staged.getFilename(), stagedKey, folder,
+          exception);
+      return UploadResult.failedUpload(staged.getFilename(), "An unexpected error occurred.");
+    }
+    try {
+      amazonS3.deleteObject(staged.getBucket(), stagedKey);
+    } catch (Exception exception) {
+      LOGGER.warn("Unable to delete staged file with filename {} and key {}", staged.getFilename(), stagedKey, exception);
+    }
+    return UploadResult.successfulUpload(staged.getId(), staged.getFilename(), staged.getBucket(), folder,
+        staged.getSize(), null);
+  }
+
   private UploadResult uploadToS3AndDeleteMultipartResult(String folder, MultipartResult multipartResult) {
     try {
       if (multipartResult.isValid()) {
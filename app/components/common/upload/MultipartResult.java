@@ -7,11 +7,23 @@ public class MultipartResult {
   private final String filename;
   private final Path path;
   private final String error;
+  private final UploadResult uploadResult;
 
   public MultipartResult(String filename, Path path, String error) {
     this.filename = filename;
     this.path = path;
     this.error = error;
+    this.uploadResult = null;
+  }
+
+  /**
+   * @param uploadResult Result of a file which was virus checked and uploaded to S3 as it was received.
+   */
+  public MultipartResult(UploadResult uploadResult) {
+    this.filename = uploadResult.getFilename();
+    this.path = null;
+    this.error = uploadResult.getError();
+    this.uploadResult = uploadResult;
   }
 
   public boolean isValid() {
@@ -30,4 +42,11 @@ public class MultipartResult {
     return error;
   }
 
+  /**
+   * @return The result of the upload if the file was uploaded as it was received, otherwise null.
+   */
+  public UploadResult getUploadResult() {
+    return uploadResult;
+  }
+
 }
@@ -0,0 +1,49 @@
+package components.common.upload;
+
+import akka.stream.Materializer;
+import akka.util.ByteString;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import play.api.http.HttpConfiguration;
+import play.api.http.HttpErrorHandler;
+import play.libs.streams.Accumulator;
+import play.mvc.Http;
+
+/**
+ * Multipart parser which virus checks and uploads files to S3 as they are received, using {@link StreamingUploader},
+ * instead of writing them to temp files.
+ * <p>
+ * Body parsers run before the action, so before any authentication or authorisation. Files are therefore uploaded to
+ * the staging folder configured by {@code upload.streaming.stagingFolder}, and only moved to the folder passed to
+ * {@link FileService#processUpload} when the action calls it. Files left in the staging folder should be expired by an
+ * S3 lifecycle rule. Expiry does not apply to incomplete multipart uploads, which are left behind if aborting an upload
+ * fails, so the rule should also set {@code AbortIncompleteMultipartUpload}.
+ */
+public class StreamingUploadMultipartParser extends UploadMultipartParser {
+
+  private final StreamingUploader streamingUploader;
+  private final String stagingFolder;
+
+  @Inject
+  public StreamingUploadMultipartParser(Materializer materializer,
+                                        HttpConfiguration httpConfig,
+                                        HttpErrorHandler errorHandler,
+                                        UploadValidationConfig uploadValidationConfig,
+                                        StreamingUploader streamingUploader,
+                                        @Named("uploadStreamingStagingFolder") String stagingFolder) {
+    super(materializer, httpConfig, errorHandler, uploadValidationConfig);
+    this.streamingUploader = streamingUploader;
+    this.stagingFolder = stagingFolder;
+  }
+
+  @Override
+  protected Accumulator<ByteString, Http.MultipartFormData.FilePart<MultipartResult>> createFileAccumulator(
+      String partName, String filename, String contentType) {
+    return Accumulator.fromSink(streamingUploader.sink(stagingFolder, filename)
+        .mapMaterializedValue(completionStage ->
+            completionStage.thenApply(uploadResult ->
+                new Http.MultipartFormData.FilePart<>(partName, filename, contentType, new MultipartResult(uploadResult)))
+        ));
+  }
+
+}
@@ -0,0 +1,243 @@
+package components.common.upload;
+
+import akka.stream.Materializer;
+import akka.stream.javadsl.AsPublisher;
+import akka.stream.javadsl.Flow;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import components.common.client.VirusCheckerClient;
+import components.common.logging.MdcUtil;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Virus checks a file and uploads it to S3 in a single pass as it is received, instead of writing it to a temp file
+ * which is then read again by the virus check and the upload.
+ * <p>
+ * The file is streamed to the virus checker and, in parts, to an S3 multipart upload at the same time. The upload is only
+ * completed if the file passes the virus check, and is aborted otherwise, so S3 never holds an unchecked file. Files
+ * smaller than one part are held in memory until the check completes and then put in a single request. The stream is
+ * back pressured while a part is uploaded, so each file holds at most the part being uploaded and the rest of the last
+ * chunk received in memory, a little over one part.
+ * <p>
+ * S3 requests block, so they are made on a dedicated pool of {@value #S3_THREADS} threads rather than the request's
+ * execution context.
+ */
+@Singleton
+public class StreamingUploader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamingUploader.class);
+
+  /**
+   * Minimum size of all but the last part of an S3 multipart upload.
+   */
+  private static final int DEFAULT_PART_SIZE = 5 * 1024 * 1024;
+  private static final int S3_THREADS = 16;
+  private static final AtomicInteger S3_THREAD_COUNT = new AtomicInteger();
+  private static final ExecutorService S3_EXECUTOR = Executors.newFixedThreadPool(S3_THREADS, runnable -> {
+    Thread thread = new Thread(runnable, "streaming-uploader-s3-" + S3_THREAD_COUNT.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+  private static final String INVALID_FILE = "Not a valid file";
+  private static final String UNEXPECTED_ERROR = "An unexpected error occurred.";
+
+  private final String awsBucketName;
+  private final AmazonS3 amazonS3;
+  private final VirusCheckerClient virusCheckerClient;
+  private final Materializer materializer;
+  private final Executor s3Executor;
+  private final int partSize;
+
+  @Inject
+  public StreamingUploader(@Named("awsBucketName") String awsBucketName,
+                           AmazonS3 amazonS3,
+                           VirusCheckerClient virusCheckerClient,
+                           Materializer materializer) {
+    this(awsBucketName, amazonS3, virusCheckerClient, materializer, S3_EXECUTOR, DEFAULT_PART_SIZE);
+  }
+
+  @VisibleForTesting
+  StreamingUploader(String awsBucketName, AmazonS3 amazonS3, VirusCheckerClient virusCheckerClient,
+                    Materializer materializer, Executor s3Executor, int partSize) {
+    this.awsBucketName = awsBucketName;
+    this.amazonS3 = amazonS3;
+    this.virusCheckerClient = virusCheckerClient;
+    this.materializer = materializer;
+    this.s3Executor = s3Executor;
+    this.partSize = partSize;
+  }
+
+  /**
+   * Creates a sink which virus checks and uploads a file. The sink must only be run once.
+   *
+   * @param folder   Folder to upload the file to.
+   * @param filename Name of the file.
+   * @return Sink which completes with the result of the upload once the file has been checked and the upload has been
+   * completed or aborted. The result is a failed upload, rather than an exception, if either fails.
+   */
+  public Sink<ByteString, CompletionStage<UploadResult>> sink(String folder, String filename) {
+    //S3 requests are logged with the MDC of the thread the sink is created on
+    Map<String, String> mdc = MdcUtil.copy();
+    Executor executor = runnable -> s3Executor.execute(() -> MdcUtil.runWith(mdc, runnable));
+    S3Upload upload = new S3Upload(folder, filename, executor);
+    Sink<ByteString, Publisher<ByteString>> scanSink = Sink.asPublisher(AsPublisher.WITHOUT_FANOUT);
+    Sink<ByteString, CompletionStage<S3Upload>> s3Sink = Sink.foldAsync(upload, S3Upload::append);
+    return Flow.of(ByteString.class)
+        .alsoToMat(scanSink, Keep.right())
+        .toMat(s3Sink, (publisher, uploaded) -> {
+          CompletionStage<String> scanned = scan(filename, publisher);
+          return uploaded.handle((result, error) -> error)
+              .thenCombine(scanned, (streamError, scanError) -> {
+                if (streamError != null) {
+                  LOGGER.error("Unable to upload file with filename {} to amazon s3", filename, streamError);
+                  return UNEXPECTED_ERROR;
+                } else {
+                  return scanError;
+                }
+              })
+              .thenComposeAsync(error -> error == null ? upload.complete() : upload.abort(error), executor);
+        });
+  }
+
+  /**
+   * @return Stage which completes with null if the file passed the virus check, otherwise with the error to report.
+   */
+  private CompletionStage<String> scan(String filename, Publisher<ByteString> publisher) {
+    CompletionStage<Boolean> isOk;
+    try {
+      isOk = virusCheckerClient.isOk(Source.fromPublisher(publisher));
+    } catch (Exception exception) {
+      CompletableFuture<Boolean> failed = new CompletableFuture<>();
+      failed.completeExceptionally(exception);
+      isOk = failed;
+    }
+    return isOk.handle((ok, error) -> {
+      if (error != null) {
+        LOGGER.error("A network exception occurred while virus checking file with filename {}", filename, error);
+        // Drain the file if the virus checker never read it, so the upload to S3 isn't blocked
+        Source.fromPublisher(publisher).runWith(Sink.ignore(), materializer);
+        return UNEXPECTED_ERROR;
+      } else if (!ok) {
+        LOGGER.error("File with filename {} did not pass virus check", filename);
+        return INVALID_FILE;
+      } else {
+        return null;
+      }
+    });
+  }
+
+  private String generateFileId() {
+    return "fil_" + UUID.randomUUID().toString().replace("-", "");
+  }
+
+  /**
+   * State of the upload of a single file. Parts are appended one at a time by the stream, and the upload is completed
+   * or aborted after the stream has finished, so the state is never accessed concurrently.
+   */
+  private class S3Upload {
+
+    private final String id = generateFileId();
+    private final String folder;
+    private final String filename;
+    private final String key;
+    private final Executor executor;
+    private final List<PartETag> partETags = new ArrayList<>();
+    private ByteString buffer = ByteString.empty();
+    private long size;
+    private String uploadId;
+
+    private S3Upload(String folder, String filename, Executor executor) {
+      this.folder = folder;
+      this.filename = filename;
+      this.key = folder + "/" + id;
+      this.executor = executor;
+    }
+
+    private CompletionStage<S3Upload> append(ByteString bytes) {
+      buffer = buffer.concat(bytes);
+      size += bytes.size();
+      if (buffer.size() < partSize) {
+        return CompletableFuture.completedFuture(this);
+      } else {
+        ByteString part = buffer.take(partSize);
+        buffer = buffer.drop(partSize);
+        return CompletableFuture.supplyAsync(() -> {
+          uploadPart(part);
+          return this;
+        }, executor).thenCompose(upload -> upload.append(ByteString.empty()));
+      }
+    }
+
+    private CompletionStage<UploadResult> complete() {
+      try {
+        if (uploadId == null) {
+          ObjectMetadata metadata = new ObjectMetadata();
+          metadata.setContentLength(buffer.size());
+          amazonS3.putObject(awsBucketName, key, buffer.iterator().asInputStream(), metadata);
+        } else {
+          if (!buffer.isEmpty()) {
+            uploadPart(buffer);
+          }
+          amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(awsBucketName, key, uploadId, partETags));
+        }
+      } catch (Exception exception) {
+        LOGGER.error("Unable to upload file with filename {} to amazon s3", filename, exception);
+        return abort(UNEXPECTED_ERROR);
+      }
+      return CompletableFuture.completedFuture(UploadResult.successfulUpload(id, filename, awsBucketName, folder, size, null));
+    }
+
+    private CompletionStage<UploadResult> abort(String error) {
+      buffer = ByteString.empty();
+      if (uploadId != null) {
+        try {
+          amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(awsBucketName, key, uploadId));
+        } catch (Exception exception) {
+          LOGGER.error("Unable to abort upload of file with filename {} and key {}", filename, key, exception);
+        }
+      }
+      return CompletableFuture.completedFuture(UploadResult.failedUpload(filename, error));
+    }
+
+    private void uploadPart(ByteString part) {
+      if (uploadId == null) {
+        uploadId = amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(awsBucketName, key)).getUploadId();
+      }
+      UploadPartRequest request = new UploadPartRequest()
+          .withBucketName(awsBucketName)
+          .withKey(key)
+          .withUploadId(uploadId)
+          .withPartNumber(partETags.size() + 1)
+          .withPartSize(part.size())
+          .withInputStream(part.iterator().asInputStream());
+      partETags.add(amazonS3.uploadPart(request).getPartETag());
+    }
+  }
+
+}
@@ -11,6 +11,7 @@ import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.name.Names;
 import com.typesafe.config.Config;
+import components.common.client.VirusCheckerClient;
 import org.apache.commons.lang3.StringUtils;
 
 public class UploadGuiceModule extends AbstractModule {
@@ -36,7 +37,15 @@ public class UploadGuiceModule extends AbstractModule {
     // VirusCheckerClient
     bindConstant().annotatedWith(Names.named("virusServiceAddress")).to(config.getString("virusService.address"));
     bindConstant().annotatedWith(Names.named("virusServiceTimeout")).to(config.getString("virusService.timeout"));
+    bindConstant().annotatedWith(Names.named("virusServiceStreamingTimeout")).to(
+        config.hasPath("virusService.streamingTimeout") ? config.getString("virusService.streamingTimeout")
+            : String.valueOf(VirusCheckerClient.DEFAULT_STREAMING_TIMEOUT));
     bindConstant().annotatedWith(Names.named("virusServiceCredentials")).to(config.getString("virusService.credentials"));
+    // StreamingUploadMultipartParser
+    if (config.hasPath("upload.streaming.stagingFolder")) {
+      bindConstant().annotatedWith(Names.named("uploadStreamingStagingFolder"))
+          .to(config.getString("upload.streaming.stagingFolder"));
+    }
   }
 
   @Singleton
@@ -139,25 +139,34 @@ public class UploadMultipartParser extends BodyParser.DelegatingMultipartFormDat
             MultipartResult multipartResult = new MultipartResult(filename, null, errorMessage);
             return Accumulator.done(new Http.MultipartFormData.FilePart<>(partName, filename, contentType, multipartResult));
           } else {
-            Path path;
-            try {
-              path = Files.createTempFile("lite", null);
-            } catch (IOException ioe) {
-              throw new RuntimeException("Unable to create temp file", ioe);
-            }
-            MultipartResult multipartResult = new MultipartResult(normalizedFilename.get(), path, null);
-            Sink<ByteString, CompletionStage<IOResult>> sink = StreamConverters.fromOutputStream(() -> new FileOutputStream(path.toFile()));
-            return Accumulator.fromSink(
-                sink.mapMaterializedValue(completionStage ->
-                    completionStage.thenApplyAsync(results ->
-                        new Http.MultipartFormData.FilePart<>(partName, normalizedFilename.get(), contentType, multipartResult))
-                ));
+            return createFileAccumulator(partName, normalizedFilename.get(), contentType);
           }
         }
       }
     };
   }
 
+  /**
+   * Creates the accumulator for a file which has passed validation. Writes the file to a temp file, which is virus
+   * checked and uploaded by {@link FileService#processUpload}.
+   */
+  protected Accumulator<ByteString, Http.MultipartFormData.FilePart<MultipartResult>> createFileAccumulator(
+      String partName, String filename, String contentType) {
+    Path path;
+    try {
+      path = Files.createTempFile("lite", null);
+    } catch (IOException ioe) {
+      throw new RuntimeException("Unable to create temp file", ioe);
+    }
+    MultipartResult multipartResult = new MultipartResult(filename, path, null);
+    Sink<ByteString, CompletionStage<IOResult>> sink = StreamConverters.fromOutputStream(() -> new FileOutputStream(path.toFile()));
+    return Accumulator.fromSink(
+        sink.mapMaterializedValue(completionStage ->
+            completionStage.thenApplyAsync(results ->
+                new Http.MultipartFormData.FilePart<>(partName, filename, contentType, multipartResult))
+        ));
+  }
+
   @VisibleForTesting
   protected Optional<String> normalizeFilename(String filename) {
     int lastDot = filename.lastIndexOf(".");
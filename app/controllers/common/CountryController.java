@@ -0,0 +1,93 @@
+package controllers.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.typesafe.config.Config;
+import components.common.cache.CountryCacheScheduler;
+import components.common.cache.CountryProvider;
+import components.common.cache.CountrySearchIndex;
+import components.common.json.JsonCodec;
+import org.apache.commons.lang3.StringUtils;
+import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.Result;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the countries of the {@link CountryProvider} as JSON, for country autocomplete. Responses carry an ETag which
+ * only changes when the countries change, so pages can load the full list once and revalidate it cheaply.
+ * <p>
+ * Routed by {@code countries.routes}, which applications include to opt in. The application must bind the provider to
+ * serve as {@code @Named("countryProvider")}. Responses may be cached for the country cache's refresh interval.
+ */
+public class CountryController extends Controller {
+
+  private static final int MAX_LIMIT = 50;
+
+  private final CountryProvider countryProvider;
+  private final JsonCodec jsonCodec;
+  private final String cacheControl;
+  private volatile CountriesJson countriesJson;
+
+  @Inject
+  public CountryController(@Named("countryProvider") CountryProvider countryProvider, JsonCodec jsonCodec,
+                           Config config) {
+    this.countryProvider = countryProvider;
+    this.jsonCodec = jsonCodec;
+    long maxAgeSeconds = TimeUnit.MILLISECONDS.toSeconds(CountryCacheScheduler.getRefreshIntervalMillis(config));
+    this.cacheControl = "public, max-age=" + maxAgeSeconds;
+  }
+
+  /**
+   * @param q     Text to search country names and synonyms for, or empty for all countries.
+   * @param limit Maximum number of countries to return when searching.
+   */
+  public Result countries(String q, int limit) throws JsonProcessingException {
+    CountrySearchIndex index = countryProvider.getSearchIndex();
+    String etag = "\"" + index.getEtag() + "\"";
+    if (matches(request().getHeader(IF_NONE_MATCH), etag)) {
+      return status(NOT_MODIFIED).withHeader(ETAG, etag).withHeader(CACHE_CONTROL, cacheControl);
+    }
+    byte[] json;
+    if (StringUtils.isBlank(q)) {
+      json = getCountriesJson(index);
+    } else {
+      json = jsonCodec.writeValueAsBytes(index.search(q, Math.max(1, Math.min(limit, MAX_LIMIT))));
+    }
+    return ok(json).as(Http.MimeTypes.JSON).withHeader(ETAG, etag).withHeader(CACHE_CONTROL, cacheControl);
+  }
+
+  /**
+   * The full list is requested far more often than any search, so it is serialised once per index.
+   */
+  private byte[] getCountriesJson(CountrySearchIndex index) throws JsonProcessingException {
+    CountriesJson current = countriesJson;
+    if (current == null || current.index != index) {
+      current = new CountriesJson(index, jsonCodec.writeValueAsBytes(index.getCountries()));
+      countriesJson = current;
+    }
+    return current.json;
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    return ifNoneMatch != null && Arrays.stream(ifNoneMatch.split(","))
+        .map(String::trim)
+        .map(value -> StringUtils.removeStart(value, "W/"))
+        .anyMatch(value -> value.equals(etag) || value.equals("*"));
+  }
+
+  private static class CountriesJson {
+
+    private final CountrySearchIndex index;
+    private final byte[] json;
+
+    private CountriesJson(CountrySearchIndex index, byte[] json) {
+      this.index = index;
+      this.json = json;
+    }
+  }
+
+}
@@ -1,9 +1,14 @@
 package filters.common;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import components.common.auth.AuthInfo;
 import components.common.auth.SpireAuthManager;
 import components.common.client.UserServiceClientBasicAuth;
+import components.common.logging.MdcUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.jose4j.jws.AlgorithmIdentifiers;
 import org.jose4j.jws.JsonWebSignature;
@@ -15,14 +20,42 @@ import play.libs.ws.WSRequestExecutor;
 import play.libs.ws.WSRequestFilter;
 import uk.gov.bis.lite.user.api.view.UserAccountTypeView;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Adds a signed JWT for the current user to outbound requests. Account types read from the user service and signed
+ * tokens are both cached, so a user making several requests in quick succession only incurs a single user service call
+ * and a single signing operation. Cached tokens are reused until shortly before they expire. This is a singleton, so
+ * the caches are shared by all service clients which use it.
+ */
+@Singleton
 public class JwtRequestFilter implements WSRequestFilter {
 
+  private static final int TOKEN_EXPIRY_MINUTES = 10;
+  private static final int TOKEN_CACHE_MINUTES = TOKEN_EXPIRY_MINUTES - 1;
+  private static final int ACCOUNT_TYPE_CACHE_MINUTES = 5;
+  private static final int MAX_CACHED_USERS = 10000;
+
   private final SpireAuthManager authManager;
   private final JwtRequestFilterConfig config;
   private final UserServiceClientBasicAuth userServiceClientBasicAuth;
 
+  private final Cache<String, CompletableFuture<UserAccountTypeView>> accountTypeCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(ACCOUNT_TYPE_CACHE_MINUTES, TimeUnit.MINUTES)
+      .maximumSize(MAX_CACHED_USERS)
+      .build();
+
+  private final Cache<List<String>, String> tokenCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(TOKEN_CACHE_MINUTES, TimeUnit.MINUTES)
+      .maximumSize(MAX_CACHED_USERS)
+      .build();
+
   @Inject
   public JwtRequestFilter(SpireAuthManager authManager, JwtRequestFilterConfig config, UserServiceClientBasicAuth userServiceClientBasicAuth) {
     this.authManager = authManager;
@@ -30,50 +63,115 @@ public class JwtRequestFilter implements WSRequestFilter {
     this.userServiceClientBasicAuth = userServiceClientBasicAuth;
   }
 
+  /**
+   * Reads the current user's {@link AuthInfo} from the request context when the request is executed. Prefer
+   * {@link #forCurrentUser()} when building requests which may be executed away from the request thread.
+   */
   @Override
   public WSRequestExecutor apply(WSRequestExecutor executor) {
-    return request -> {
+    return forCurrentUser().apply(executor);
+  }
 
-      AuthInfo authInfo = authManager.getAuthInfoFromContext();
+  /**
+   * Creates a filter for the user of the current request. The user's {@link AuthInfo} is read from the request context
+   * immediately, so the returned filter can be applied on any thread, including when a request is retried.
+   *
+   * @return Filter which adds a JWT for the current user to requests.
+   */
+  public JwtUserRequestFilter forCurrentUser() {
+    return forAuthInfo(authManager.getAuthInfoFromContext());
+  }
 
-      if (StringUtils.isBlank(authInfo.getId())) {
-        throw new JwtRequestFilterException(String.format("id provided by auth info is invalid '%s'", authInfo.getId()));
-      }
+  /**
+   * Creates a filter which adds a JWT for the given user to requests. The request is sent once the token is available,
+   * without blocking the calling thread.
+   * <p>
+   * If the token is not cached, the rest of the filter chain runs on the thread which completes the user service
+   * lookup. The chain is run with the MDC of the thread which created this filter, so filters applied after this one
+   * read the Correlation ID and trace of the request rather than those of the pooled thread.
+   *
+   * @param authInfo Auth info of the user the token is for.
+   * @return Filter which adds a JWT for the given user to requests.
+   */
+  public JwtUserRequestFilter forAuthInfo(AuthInfo authInfo) {
+    if (StringUtils.isBlank(authInfo.getId())) {
+      throw new JwtRequestFilterException(String.format("id provided by auth info is invalid '%s'", authInfo.getId()));
+    }
+    Map<String, String> mdc = MdcUtil.copy();
+    return new JwtUserRequestFilter(authInfo.getId(), executor -> request -> getToken(authInfo).thenCompose(token ->
+        MdcUtil.callWith(mdc, () -> {
+          request.addHeader("Authorization", "Bearer " + token);
+          return executor.apply(request);
+        })));
+  }
+
+  /**
+   * Gets a signed JWT for the given user, reusing a previously signed token for the same claims if it is not close to
+   * expiry. Completes exceptionally with a {@link JwtRequestFilterException} if a token cannot be created.
+   *
+   * @param authInfo Auth info of the user the token is for.
+   * @return Stage completing with the compact serialization of the token.
+   */
+  public CompletionStage<String> getToken(AuthInfo authInfo) {
+    String id = authInfo.getId();
+    if (StringUtils.isBlank(id)) {
+      return failedFuture(new JwtRequestFilterException(String.format("id provided by auth info is invalid '%s'", id)));
+    }
 
-      UserAccountTypeView userAccountTypeView;
+    return getUserAccountType(id).thenApply(userAccountTypeView -> {
+      String accountType = userAccountTypeView.getAccountType().toString();
+      List<String> cacheKey = Arrays.asList(id, authInfo.getEmail(), authInfo.getFullName(), accountType);
       try {
-        userAccountTypeView = userServiceClientBasicAuth.getUserAccountTypeView(authInfo.getId()).toCompletableFuture().get();
-      } catch (InterruptedException | ExecutionException e) {
-        throw new JwtRequestFilterException(String.format("Error requesting user account type for id '%s'", authInfo.getId()), e);
+        return tokenCache.get(cacheKey, () -> createToken(authInfo, accountType));
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        throw new JwtRequestFilterException("Error during jwt serialization", e.getCause());
       }
+    });
+  }
 
-      JwtClaims claims = new JwtClaims();
-      claims.setIssuer(config.getIssuer());
-      claims.setExpirationTimeMinutesInTheFuture(10);
-      claims.setGeneratedJwtId();
-      claims.setIssuedAtToNow();
-      claims.setNotBeforeMinutesInThePast(2);
-      claims.setSubject(authInfo.getId());
-      claims.setClaim("email", authInfo.getEmail());
-      claims.setClaim("fullName", authInfo.getFullName());
-      claims.setClaim("accountType", userAccountTypeView.getAccountType().toString());
-
-      JsonWebSignature jws = new JsonWebSignature();
-      jws.setHeader(HeaderParameterNames.TYPE, "JWT");
-      jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.HMAC_SHA256);
-      jws.setKey(new HmacKey(config.getKey().getBytes()));
-      jws.setPayload(claims.toJson());
-
-      String token;
-      try {
-        token = jws.getCompactSerialization();
-      } catch (JoseException e) {
-        throw new JwtRequestFilterException("Error during jwt serialization", e);
+  private CompletableFuture<UserAccountTypeView> getUserAccountType(String id) {
+    CompletableFuture<UserAccountTypeView> future;
+    try {
+      future = accountTypeCache.get(id, () -> userServiceClientBasicAuth.getUserAccountTypeView(id).toCompletableFuture());
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      return failedFuture(new JwtRequestFilterException(String.format("Error requesting user account type for id '%s'", id), e.getCause()));
+    }
+
+    // Failed lookups are not cached, and requests for a user whose lookup is in progress share its result
+    return future.handle((userAccountTypeView, error) -> {
+      if (error != null) {
+        accountTypeCache.asMap().remove(id, future);
+        throw new JwtRequestFilterException(String.format("Error requesting user account type for id '%s'", id), error);
+      } else {
+        return userAccountTypeView;
       }
+    });
+  }
 
-      request.addHeader("Authorization", "Bearer " + token);
+  private String createToken(AuthInfo authInfo, String accountType) throws JoseException {
+    JwtClaims claims = new JwtClaims();
+    claims.setIssuer(config.getIssuer());
+    claims.setExpirationTimeMinutesInTheFuture(TOKEN_EXPIRY_MINUTES);
+    claims.setGeneratedJwtId();
+    claims.setIssuedAtToNow();
+    claims.setNotBeforeMinutesInThePast(2);
+    claims.setSubject(authInfo.getId());
+    claims.setClaim("email", authInfo.getEmail());
+    claims.setClaim("fullName", authInfo.getFullName());
+    claims.setClaim("accountType", accountType);
+
+    JsonWebSignature jws = new JsonWebSignature();
+    jws.setHeader(HeaderParameterNames.TYPE, "JWT");
+    jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.HMAC_SHA256);
+    jws.setKey(new HmacKey(config.getKey().getBytes()));
+    jws.setPayload(claims.toJson());
+
+    return jws.getCompactSerialization();
+  }
 
-      return executor.apply(request);
-    };
+  private static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(throwable);
+    return future;
   }
 }
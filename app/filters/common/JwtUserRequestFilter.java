@@ -0,0 +1,29 @@
+package filters.common;
+
+import play.libs.ws.WSRequestExecutor;
+import play.libs.ws.WSRequestFilter;
+
+/**
+ * A {@link JwtRequestFilter} bound to a single user, created by {@link JwtRequestFilter#forCurrentUser()} or
+ * {@link JwtRequestFilter#forAuthInfo}. Exposes the id of the user so requests made on their behalf can be told apart,
+ * e.g. when coalescing identical requests.
+ */
+public class JwtUserRequestFilter implements WSRequestFilter {
+
+  private final String userId;
+  private final WSRequestFilter filter;
+
+  public JwtUserRequestFilter(String userId, WSRequestFilter filter) {
+    this.userId = userId;
+    this.filter = filter;
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+
+  @Override
+  public WSRequestExecutor apply(WSRequestExecutor executor) {
+    return filter.apply(executor);
+  }
+}
@@ -0,0 +1,108 @@
+package utils.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import components.common.cache.CountrySnapshot;
+import play.twirl.api.Html;
+import play.twirl.api.HtmlFormat;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Renders the {@code <option>} elements of a country select. The options for a list of countries are rendered and escaped
+ * once, and each render only inserts the {@code selected} attribute, so pages with several country selects don't
+ * re-render every country for each of them.
+ * <p>
+ * Options are only cached for the countries of a {@link CountrySnapshot}, e.g. {@code CountryProvider.getCountries()},
+ * keyed by the snapshot. Other lists, such as filtered copies, are rendered on each call and never evict the options of a
+ * snapshot. The cache is bounded, and snapshots which are no longer referenced are removed from it.
+ */
+public class CountryOptions {
+
+  private static final String SELECTED = " selected=\"selected\"";
+
+  private static final Cache<CountrySnapshot, CountryOptions> OPTIONS = CacheBuilder.newBuilder()
+      .weakKeys()
+      .maximumSize(16)
+      .build();
+
+  // Each option is split where the selected attribute goes: prefixes[i] + [SELECTED] + suffixes[i]
+  private final String[] prefixes;
+  private final String[] suffixes;
+  private final Map<String, Integer> indexes = new HashMap<>();
+  private final int length;
+  private volatile Html unselected;
+  private final Cache<String, Html> selected = CacheBuilder.newBuilder()
+      .maximumSize(64)
+      .build();
+
+  private CountryOptions(List<CountryView> countries) {
+    prefixes = new String[countries.size()];
+    suffixes = new String[countries.size()];
+    int total = 0;
+    for (int i = 0; i < countries.size(); i++) {
+      CountryView country = countries.get(i);
+      prefixes[i] = "<option value=\"" + escape(country.getCountryRef()) + "\" data-alternative-spellings=\"" +
+          escape(ViewUtil.getSynonymsAsString(country)) + "\" data-relevancy-booster=\"1\"";
+      suffixes[i] = ">" + escape(country.getCountryName()) + "</option>\n";
+      indexes.putIfAbsent(country.getCountryRef(), i);
+      total += prefixes[i].length() + suffixes[i].length();
+    }
+    length = total;
+  }
+
+  /**
+   * @param countries     Countries in the order to render them.
+   * @param selectedValue Country ref of the selected country, or null if none is selected.
+   * @return The options, with the option for the selected country marked as selected.
+   */
+  public static Html render(List<CountryView> countries, String selectedValue) {
+    if (!(countries instanceof CountrySnapshot.Countries)) {
+      CountryOptions options = new CountryOptions(countries);
+      Integer index = selectedValue == null ? null : options.indexes.get(selectedValue);
+      return options.render(index == null ? -1 : index);
+    }
+    CountrySnapshot snapshot = ((CountrySnapshot.Countries) countries).getSnapshot();
+    try {
+      return OPTIONS.get(snapshot, () -> new CountryOptions(countries)).render(selectedValue);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Unable to render country options", e);
+    }
+  }
+
+  private Html render(String selectedValue) {
+    Integer index = selectedValue == null ? null : indexes.get(selectedValue);
+    if (index == null) {
+      if (unselected == null) {
+        unselected = render(-1);
+      }
+      return unselected;
+    }
+    try {
+      return selected.get(selectedValue, () -> render(index));
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Unable to render country options", e);
+    }
+  }
+
+  private Html render(int selectedIndex) {
+    StringBuilder builder = new StringBuilder(length + SELECTED.length());
+    for (int i = 0; i < prefixes.length; i++) {
+      builder.append(prefixes[i]);
+      if (i == selectedIndex) {
+        builder.append(SELECTED);
+      }
+      builder.append(suffixes[i]);
+    }
+    return HtmlFormat.raw(builder.toString());
+  }
+
+  private static String escape(String text) {
+    return text == null ? "" : HtmlFormat.escape(text).body();
+  }
+
+}
@@ -3,9 +3,9 @@ package utils.common;
 import static play.mvc.Controller.ctx;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import components.common.CommonContextActionSetup;
 import components.common.journey.BackLink;
+import components.common.json.JsonCodec;
 import components.common.state.ContextParamManager;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.util.CollectionUtils;
@@ -30,7 +30,6 @@ import java.util.regex.Pattern;
 public class ViewUtil {
 
   private static final String BACK_LINK_CONTEXT_PARAM_NAME = "back_link";
-  private static final ObjectMapper MAPPER = new ObjectMapper();
   private static final Pattern HEADING_CSS_CLASS_PATTERN = Pattern.compile("(^| )heading-(xlarge|large|medium|small)");
 
   public static ContextParamManager currentParamManager() {
@@ -193,7 +192,7 @@ public class ViewUtil {
    */
   public static String convertMapToJson(Map map) {
     try {
-      return MAPPER.writeValueAsString(map);
+      return JsonCodec.shared().writeValueAsString(map);
     } catch (JsonProcessingException e) {
       throw new RuntimeException("Unable to process map to JSON String", e);
     }
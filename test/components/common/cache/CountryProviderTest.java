@@ -1,18 +1,22 @@
 package components.common.cache;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableMap;
+import components.common.client.CountriesResult;
+import components.common.client.CountryServiceClient;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import uk.gov.bis.lite.countryservice.api.CountryView;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CountryProviderTest {
@@ -20,11 +24,14 @@ public class CountryProviderTest {
   private static final String COUNTRY_REF = "CTRY0";
   private static final String COUNTRY_NAME = "United Kingdom";
 
-  @InjectMocks
+  @Mock
+  private CountryServiceClient countryServiceClient;
+
   private CountryProvider countryProvider;
 
   @Before
   public void setUp() {
+    countryProvider = new CountryProvider(countryServiceClient);
     CountryView countryView = new CountryView(COUNTRY_REF, COUNTRY_NAME, new ArrayList<>());
     countryProvider.setCache(ImmutableMap.of(COUNTRY_REF, countryView));
   }
@@ -55,4 +62,26 @@ public class CountryProviderTest {
     assertThat(countries).isNotEmpty();
   }
 
+  @Test
+  public void shouldReplaceSnapshotWhenCacheIsSet() {
+    CountrySnapshot snapshot = countryProvider.getSnapshot();
+
+    countryProvider.setCache(ImmutableMap.of());
+
+    assertThat(countryProvider.getSnapshot().getVersion()).isGreaterThan(snapshot.getVersion());
+    assertThat(countryProvider.getCountries()).isEmpty();
+    assertThat(snapshot.getCountry(COUNTRY_REF)).isNotNull();
+  }
+
+  @Test
+  public void shouldKeepSnapshotWhenCountriesAreNotModified() throws Exception {
+    CountrySnapshot snapshot = countryProvider.getSnapshot();
+    when(countryServiceClient.getCountriesIfModified(null))
+        .thenReturn(CompletableFuture.completedFuture(CountriesResult.notModified(null)));
+
+    countryProvider.loadCountries().toCompletableFuture().get();
+
+    assertThat(countryProvider.getSnapshot()).isSameAs(snapshot);
+  }
+
 }
@@ -0,0 +1,171 @@
+package components.common.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import components.common.client.CountriesResult;
+import components.common.client.CountryServiceClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RBucket;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.codec.Codec;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@SuppressWarnings("unchecked")
+public class CountryRefreshCoordinatorTest {
+
+  private static final CountryView FRANCE = new CountryView("CTRY1", "France", null);
+  private static final CountryView SPAIN = new CountryView("CTRY2", "Spain", null);
+  private static final String SPAIN_JSON = "[{\"countryRef\": \"CTRY2\", \"countryName\": \"Spain\"}]";
+
+  private final RBucket<String> countriesBucket = mock(RBucket.class);
+  private final RBucket<String> leaseBucket = mock(RBucket.class);
+  private final RBucket<String> lastPublishedBucket = mock(RBucket.class);
+  private final RTopic<String> topic = mock(RTopic.class);
+  private final CountryServiceClient countryServiceClient = mock(CountryServiceClient.class);
+  private CountryProvider countryProvider;
+  private CountryRefreshCoordinator coordinator;
+
+  @Before
+  public void setUp() {
+    RedissonClient redissonClient = mock(RedissonClient.class);
+    when(redissonClient.<String>getBucket(eq("test:countries"), any(Codec.class))).thenReturn(countriesBucket);
+    when(redissonClient.<String>getBucket(eq("test:countries-lease"), any(Codec.class))).thenReturn(leaseBucket);
+    when(redissonClient.<String>getBucket(eq("test:countries-last-published"), any(Codec.class)))
+        .thenReturn(lastPublishedBucket);
+    when(redissonClient.<String>getTopic(eq("test:countries-published"), any(Codec.class))).thenReturn(topic);
+    when(countryServiceClient.getCountriesIfModified(null)).thenReturn(CompletableFuture.completedFuture(
+        CountriesResult.modified(Collections.singletonList(new CountryView("CTRY1", "France", null)), "etag")));
+
+    countryProvider = new CountryProvider(countryServiceClient);
+    coordinator = new CountryRefreshCoordinator(countryProvider, redissonClient, "test", 0, 200);
+  }
+
+  @Test
+  public void leaderShouldRefreshAndPublishCountries() throws Exception {
+    when(leaseBucket.trySet(anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+    coordinator.refresh().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(countryProvider.getCountry("CTRY1")).isNotNull();
+    verify(countriesBucket).set(anyString());
+    verify(lastPublishedBucket).set(anyString(), eq(200L), eq(TimeUnit.MILLISECONDS));
+    verify(topic).publish(anyString());
+    verify(leaseBucket).compareAndSet(anyString(), (String) isNull());
+  }
+
+  @Test
+  public void followerShouldLoadCountriesPublishedBeforeItStarted() throws Exception {
+    when(leaseBucket.trySet(anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+    when(lastPublishedBucket.get()).thenReturn("other-instance");
+    when(countriesBucket.get()).thenReturn("[{\"countryRef\": \"CTRY2\", \"countryName\": \"Spain\"}]");
+
+    coordinator.refresh().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(countryProvider.getCountry("CTRY2")).isNotNull();
+    verify(countryServiceClient, never()).getCountriesIfModified(any());
+  }
+
+  @Test
+  public void instanceTakingReleasedLeaseShouldLoadCountriesPublishedInSameRound() throws Exception {
+    when(leaseBucket.trySet(anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+    when(lastPublishedBucket.get()).thenReturn("other-instance");
+    when(countriesBucket.get()).thenReturn("[{\"countryRef\": \"CTRY2\", \"countryName\": \"Spain\"}]");
+
+    coordinator.refresh().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(countryProvider.getCountry("CTRY2")).isNotNull();
+    verify(countryServiceClient, never()).getCountriesIfModified(any());
+    verify(topic, never()).publish(anyString());
+    verify(leaseBucket).compareAndSet(anyString(), (String) isNull());
+  }
+
+  @Test
+  public void followerShouldLoadPublishedCountries() throws Exception {
+    ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+    verify(topic).addListener(listener.capture());
+    when(leaseBucket.trySet(anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+    when(countriesBucket.get()).thenReturn("[{\"countryRef\": \"CTRY2\", \"countryName\": \"Spain\"}]");
+
+    CompletableFuture<Void> refresh = coordinator.refresh().toCompletableFuture();
+    listener.getValue().onMessage("test:countries-published", "other-instance");
+    refresh.get(5, TimeUnit.SECONDS);
+
+    assertThat(countryProvider.getCountry("CTRY2")).isNotNull();
+    verify(countryServiceClient, never()).getCountriesIfModified(any());
+  }
+
+  @Test
+  public void followerWithStaleCountriesShouldLoadCountriesPublishedAsUnchanged() throws Exception {
+    when(leaseBucket.trySet(anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+    countryProvider.updateCountries(Collections.singletonList(FRANCE));
+    when(lastPublishedBucket.get()).thenReturn("other-instance:" + contentHash(SPAIN));
+    when(countriesBucket.get()).thenReturn(SPAIN_JSON);
+
+    coordinator.refresh().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(countryProvider.getCountry("CTRY2")).isNotNull();
+    assertThat(countryProvider.getCountry("CTRY1")).isNull();
+    verify(countryServiceClient, never()).getCountriesIfModified(any());
+  }
+
+  @Test
+  public void followerWithPublishedCountriesShouldNotLoadThemAgain() throws Exception {
+    ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+    verify(topic).addListener(listener.capture());
+    when(leaseBucket.trySet(anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+    countryProvider.updateCountries(Collections.singletonList(SPAIN));
+    long version = countryProvider.getSnapshot().getVersion();
+
+    CompletableFuture<Void> refresh = coordinator.refresh().toCompletableFuture();
+    listener.getValue().onMessage("test:countries-published", "other-instance:" + contentHash(SPAIN));
+    refresh.get(5, TimeUnit.SECONDS);
+
+    assertThat(countryProvider.getSnapshot().getVersion()).isEqualTo(version);
+    verify(countriesBucket, never()).get();
+    verify(countryServiceClient, never()).getCountriesIfModified(any());
+  }
+
+  @Test
+  public void followerShouldRefreshItselfIfRedisDoesNotHavePublishedCountries() throws Exception {
+    when(leaseBucket.trySet(anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+    when(lastPublishedBucket.get()).thenReturn("other-instance:" + contentHash(SPAIN));
+    when(countriesBucket.get()).thenReturn("[{\"countryRef\": \"CTRY3\", \"countryName\": \"Italy\"}]");
+
+    coordinator.refresh().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(countryProvider.getCountry("CTRY1")).isNotNull();
+    assertThat(countryProvider.getCountry("CTRY3")).isNull();
+  }
+
+  @Test
+  public void followerShouldRefreshItselfIfNothingIsPublished() throws Exception {
+    when(leaseBucket.trySet(anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+
+    coordinator.refresh().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(countryProvider.getCountry("CTRY1")).isNotNull();
+    verify(topic, never()).publish(anyString());
+  }
+
+  private static String contentHash(CountryView country) {
+    return new CountrySnapshot(1, Collections.singletonList(country)).getContentHash();
+  }
+
+}
@@ -0,0 +1,70 @@
+package components.common.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CountrySearchIndexTest {
+
+  private static final CountrySnapshot SNAPSHOT = new CountrySnapshot(1, Arrays.asList(
+      new CountryView("CTRY0", "United Kingdom", Arrays.asList("UK", "Great Britain")),
+      new CountryView("CTRY1", "United States", Arrays.asList("USA", "America")),
+      new CountryView("CTRY2", "Ukraine", Collections.emptyList()),
+      new CountryView("CTRY3", "Papua New Guinea", null),
+      new CountryView("CTRY4", "Guinea", Collections.emptyList())));
+
+  private final CountrySearchIndex index = new CountrySearchIndex(SNAPSHOT);
+
+  @Test
+  public void shouldRankNamePrefixesBeforeSynonymPrefixes() {
+    assertThat(index.search("u", 10)).extracting(CountryView::getCountryRef)
+        .containsExactly("CTRY2", "CTRY0", "CTRY1");
+    assertThat(index.search(" UK ", 10)).extracting(CountryView::getCountryRef)
+        .containsExactly("CTRY2", "CTRY0");
+  }
+
+  @Test
+  public void shouldMatchWithinNamesAndSynonyms() {
+    assertThat(index.search("guinea", 10)).extracting(CountryView::getCountryRef)
+        .containsExactly("CTRY4", "CTRY3");
+    assertThat(index.search("britain", 10)).extracting(CountryView::getCountryRef).containsExactly("CTRY0");
+    assertThat(index.search("kingdom", 10)).extracting(CountryView::getCountryRef).containsExactly("CTRY0");
+  }
+
+  @Test
+  public void shouldOnlyMatchPrefixesOfShortQueries() {
+    assertThat(index.search("in", 10)).isEmpty();
+  }
+
+  @Test
+  public void shouldLimitResults() {
+    assertThat(index.search("united", 1)).extracting(CountryView::getCountryRef).containsExactly("CTRY0");
+    assertThat(index.search("", 10)).isEmpty();
+    assertThat(index.search("xyz", 10)).isEmpty();
+  }
+
+  @Test
+  public void etagShouldOnlyChangeWhenCountriesChange() {
+    CountrySnapshot sameCountries = new CountrySnapshot(2, SNAPSHOT.getCountries());
+    CountrySnapshot renamed = new CountrySnapshot(3, Collections.singletonList(
+        new CountryView("CTRY0", "UK", Collections.emptyList())));
+
+    assertThat(new CountrySearchIndex(sameCountries).getEtag()).isEqualTo(index.getEtag());
+    assertThat(new CountrySearchIndex(renamed).getEtag()).isNotEqualTo(index.getEtag());
+  }
+
+  @Test
+  public void providerShouldRebuildIndexAfterRefresh() {
+    CountryProvider countryProvider = new CountryProvider(null);
+    CountrySearchIndex empty = countryProvider.getSearchIndex();
+    assertThat(countryProvider.getSearchIndex()).isSameAs(empty);
+
+    countryProvider.updateCountries(SNAPSHOT.getCountries());
+    assertThat(countryProvider.getSearchIndex().search("uk", 10)).hasSize(2);
+  }
+
+}
@@ -0,0 +1,49 @@
+package components.common.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CountrySnapshotTest {
+
+  private static final CountryView UNITED_KINGDOM = new CountryView("CTRY0", "United Kingdom", Arrays.asList("UK", "Great Britain"));
+  private static final CountryView FRANCE = new CountryView("CTRY1", "France", Collections.emptyList());
+  private static final CountryView ALAND = new CountryView("CTRY2", "aland Islands", null);
+
+  private final CountrySnapshot snapshot = new CountrySnapshot(3, Arrays.asList(UNITED_KINGDOM, FRANCE, ALAND));
+
+  @Test
+  public void shouldSortCountriesByName() {
+    assertThat(snapshot.getCountries()).containsExactly(ALAND, FRANCE, UNITED_KINGDOM);
+    assertThat(snapshot.getCountriesMap().keySet()).containsExactly("CTRY2", "CTRY1", "CTRY0");
+    assertThat(snapshot.getVersion()).isEqualTo(3);
+    assertThat(snapshot.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldGetCountryByRef() {
+    assertThat(snapshot.getCountry("CTRY1")).isSameAs(FRANCE);
+    assertThat(snapshot.getCountry("CTRY9")).isNull();
+    assertThat(snapshot.getCountry(null)).isNull();
+  }
+
+  @Test
+  public void shouldFindCountryByNameOrSynonymIgnoringCase() {
+    assertThat(snapshot.findByName("france")).isSameAs(FRANCE);
+    assertThat(snapshot.findByName(" great britain ")).isSameAs(UNITED_KINGDOM);
+    assertThat(snapshot.findByName("uk")).isSameAs(UNITED_KINGDOM);
+    assertThat(snapshot.findByName("Spain")).isNull();
+    assertThat(snapshot.findByName("")).isNull();
+  }
+
+  @Test
+  public void emptySnapshot() {
+    assertThat(CountrySnapshot.EMPTY.isEmpty()).isTrue();
+    assertThat(CountrySnapshot.EMPTY.getCountries()).isEmpty();
+  }
+
+}
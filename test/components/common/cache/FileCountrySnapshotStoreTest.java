@@ -0,0 +1,65 @@
+package components.common.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import components.common.client.CountriesResult;
+import components.common.client.CountryServiceClient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class FileCountrySnapshotStoreTest {
+
+  private static final List<CountryView> COUNTRIES = Arrays.asList(
+      new CountryView("CTRY0", "United Kingdom", Collections.singletonList("UK")),
+      new CountryView("CTRY1", "France", Collections.emptyList()));
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldSaveAndLoadCountries() throws Exception {
+    FileCountrySnapshotStore store = new FileCountrySnapshotStore(new File(temporaryFolder.getRoot(), "cache/countries.json"));
+
+    assertThat(store.load()).isEmpty();
+    store.save(COUNTRIES);
+
+    List<CountryView> countries = store.load().get();
+    assertThat(countries).extracting(CountryView::getCountryRef).containsExactly("CTRY0", "CTRY1");
+    assertThat(countries.get(0).getSynonyms()).containsExactly("UK");
+  }
+
+  @Test
+  public void shouldIgnoreUnreadableFile() throws Exception {
+    File file = temporaryFolder.newFile("countries.json");
+    Files.write(file.toPath(), "[{\"countryRef\":".getBytes());
+
+    assertThat(new FileCountrySnapshotStore(file).load()).isEmpty();
+  }
+
+  @Test
+  public void providerShouldStartWithSavedCountriesAndSaveLoadedCountries() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "countries.json");
+    new FileCountrySnapshotStore(file).save(COUNTRIES.subList(0, 1));
+    CountryServiceClient countryServiceClient = mock(CountryServiceClient.class);
+    when(countryServiceClient.getCountriesIfModified(null))
+        .thenReturn(CompletableFuture.completedFuture(CountriesResult.modified(COUNTRIES, "etag")));
+
+    CountryProvider countryProvider = new CountryProvider(countryServiceClient, new FileCountrySnapshotStore(file));
+    assertThat(countryProvider.getCountries()).extracting(CountryView::getCountryRef).containsExactly("CTRY0");
+
+    countryProvider.loadCountries().toCompletableFuture().get();
+    assertThat(new FileCountrySnapshotStore(file).load().get()).hasSize(2);
+  }
+
+}
@@ -0,0 +1,135 @@
+package components.common.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReferenceDataCacheTest {
+
+  private static final ReferenceDataCache.SnapshotFactory<String, String> SNAPSHOT_FACTORY =
+      (version, values) -> new ReferenceDataSnapshot<>(version, values, value -> value.substring(0, 1),
+          Comparator.naturalOrder());
+
+  @Test
+  public void shouldRefreshAndKeepSnapshotWhenNotModified() throws Exception {
+    List<String> etags = new ArrayList<>();
+    ReferenceDataCache<String, String> cache = new ReferenceDataCache<>("test", SNAPSHOT_FACTORY, etag -> {
+      etags.add(etag);
+      return CompletableFuture.completedFuture(etags.size() == 1
+          ? ReferenceDataLoadResult.modified(Arrays.asList("beta", "alpha"), "etag")
+          : ReferenceDataLoadResult.notModified());
+    }, Collections.emptyList());
+
+    assertThat(cache.getSnapshot().isEmpty()).isTrue();
+
+    cache.refresh().toCompletableFuture().get();
+    ReferenceDataSnapshot<String, String> snapshot = cache.getSnapshot();
+    assertThat(cache.getValues()).containsExactly("alpha", "beta");
+    assertThat(cache.get("b")).isEqualTo("beta");
+
+    cache.refresh().toCompletableFuture().get();
+    assertThat(cache.getSnapshot()).isSameAs(snapshot);
+    assertThat(etags).containsExactly(null, "etag");
+
+    ReferenceDataCacheStatus status = cache.getStatus();
+    assertThat(status.isHealthy()).isTrue();
+    assertThat(status.getSize()).isEqualTo(2);
+    assertThat(status.getRefreshCount()).isEqualTo(2);
+    assertThat(status.getNotModifiedCount()).isEqualTo(1);
+    assertThat(status.getFailureCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldFailRefreshWithNoValues() throws Exception {
+    ReferenceDataCache<String, String> cache = new ReferenceDataCache<>("test", SNAPSHOT_FACTORY,
+        etag -> CompletableFuture.completedFuture(ReferenceDataLoadResult.modified(Collections.emptyList(), null)),
+        Collections.emptyList());
+
+    try {
+      cache.refresh().toCompletableFuture().get();
+      fail("Expected refresh to fail");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).hasMessageContaining("Failed to refresh test cache");
+    }
+
+    ReferenceDataCacheStatus status = cache.getStatus();
+    assertThat(status.isHealthy()).isFalse();
+    assertThat(status.getConsecutiveFailures()).isEqualTo(1);
+    assertThat(status.getFailureCount()).isEqualTo(1);
+    assertThat(status.getLastFailureMillis()).isGreaterThan(0);
+  }
+
+  @Test
+  public void shouldWarmStartFromFirstStoreWithValuesAndSaveLoadedValues() throws Exception {
+    InMemoryStore empty = new InMemoryStore(null);
+    InMemoryStore saved = new InMemoryStore(Collections.singletonList("gamma"));
+    ReferenceDataCache<String, String> cache = new ReferenceDataCache<>("test", SNAPSHOT_FACTORY,
+        etag -> CompletableFuture.completedFuture(ReferenceDataLoadResult.modified(Arrays.asList("alpha", "beta"), null)),
+        Arrays.asList(empty, saved));
+
+    assertThat(cache.getValues()).containsExactly("gamma");
+    assertThat(cache.getSnapshot().getVersion()).isEqualTo(1);
+
+    cache.refresh().toCompletableFuture().get();
+    assertThat(empty.values).containsExactly("alpha", "beta");
+    assertThat(saved.values).containsExactly("alpha", "beta");
+    assertThat(cache.getSnapshot().getVersion()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldRetryFailedScheduledRefresh() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    ReferenceDataCache<String, String> cache = new ReferenceDataCache<>("test", SNAPSHOT_FACTORY, etag -> {
+      CompletableFuture<ReferenceDataLoadResult<String>> result = new CompletableFuture<>();
+      if (loads.incrementAndGet() < 3) {
+        result.completeExceptionally(new RuntimeException("Service unavailable"));
+      } else {
+        result.complete(ReferenceDataLoadResult.modified(Collections.singletonList("alpha"), null));
+      }
+      return result;
+    }, Collections.emptyList());
+
+    cache.schedule(TimeUnit.HOURS.toMillis(1), 10);
+    long deadline = System.currentTimeMillis() + 5000;
+    while (cache.getStatus().getLastSuccessMillis() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    cache.cancel();
+
+    assertThat(loads.get()).isEqualTo(3);
+    assertThat(cache.getValues()).containsExactly("alpha");
+    assertThat(cache.getStatus().getFailureCount()).isEqualTo(2);
+  }
+
+  private static class InMemoryStore implements ReferenceDataStore<String> {
+
+    private List<String> values;
+
+    private InMemoryStore(List<String> values) {
+      this.values = values;
+    }
+
+    @Override
+    public Optional<List<String>> load() {
+      return Optional.ofNullable(values);
+    }
+
+    @Override
+    public void save(List<String> values) {
+      this.values = values;
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+package components.common.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class BatchLoaderTest {
+
+  @Test
+  public void shouldCombineConcurrentLoadsIntoOneBatch() throws Exception {
+    List<Set<String>> batches = new CopyOnWriteArrayList<>();
+    BatchLoader<String, String> loader = new BatchLoader<>(50, 100, keys -> {
+      batches.add(keys);
+      return CompletableFuture.completedFuture(keys.stream().collect(Collectors.toMap(Function.identity(), String::toUpperCase)));
+    });
+
+    CompletionStage<Map<String, String>> first = loader.loadAll(Arrays.asList("a", "b"));
+    CompletionStage<Map<String, String>> second = loader.loadAll(Arrays.asList("b", "c"));
+
+    assertThat(first.toCompletableFuture().get()).isEqualTo(ImmutableMap.of("a", "A", "b", "B"));
+    assertThat(second.toCompletableFuture().get()).isEqualTo(ImmutableMap.of("b", "B", "c", "C"));
+    assertThat(batches).hasSize(1);
+    assertThat(batches.get(0)).containsExactly("a", "b", "c");
+  }
+
+  @Test
+  public void shouldLoadFullBatchWithoutWaiting() throws Exception {
+    List<Set<String>> batches = new CopyOnWriteArrayList<>();
+    BatchLoader<String, String> loader = new BatchLoader<>(60000, 2, keys -> {
+      batches.add(keys);
+      return CompletableFuture.completedFuture(keys.stream().collect(Collectors.toMap(Function.identity(), Function.identity())));
+    });
+
+    assertThat(loader.loadAll(Arrays.asList("a", "b")).toCompletableFuture().get()).containsOnlyKeys("a", "b");
+    assertThat(batches).hasSize(1);
+  }
+
+  @Test
+  public void shouldFailKeysMissingFromBatch() {
+    BatchLoader<String, String> loader = new BatchLoader<>(1, 100,
+        keys -> CompletableFuture.completedFuture(Collections.emptyMap()));
+
+    assertThatThrownBy(() -> loader.loadAll(Collections.singletonList("a")).toCompletableFuture().get())
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(ClientException.class);
+  }
+
+  @Test
+  public void shouldLoadBatchWithMdcOfCaller() throws Exception {
+    List<String> correlationIds = new CopyOnWriteArrayList<>();
+    BatchLoader<String, String> loader = new BatchLoader<>(10, 100, keys -> {
+      correlationIds.add(MDC.get("corrID"));
+      return CompletableFuture.completedFuture(keys.stream().collect(Collectors.toMap(Function.identity(), Function.identity())));
+    });
+
+    MDC.put("corrID", "caller-correlation-id");
+    CompletionStage<Map<String, String>> result;
+    try {
+      result = loader.loadAll(Collections.singletonList("a"));
+    } finally {
+      MDC.clear();
+    }
+
+    assertThat(result.toCompletableFuture().get()).containsOnlyKeys("a");
+    assertThat(correlationIds).containsExactly("caller-correlation-id");
+  }
+
+  @Test
+  public void shouldLoadLaterKeysOfFanOutWithMdcOfCaller() throws Exception {
+    List<String> correlationIds = new CopyOnWriteArrayList<>();
+    List<CompletableFuture<String>> loads = new CopyOnWriteArrayList<>();
+    MDC.put("corrID", "caller-correlation-id");
+    CompletionStage<Map<String, String>> result;
+    try {
+      result = BatchLoader.fanOut(Arrays.asList("a", "b"), 1, key -> {
+        correlationIds.add(MDC.get("corrID"));
+        CompletableFuture<String> future = new CompletableFuture<>();
+        loads.add(future);
+        return future;
+      });
+    } finally {
+      MDC.clear();
+    }
+
+    loads.get(0).complete("A");
+    loads.get(1).complete("B");
+
+    assertThat(result.toCompletableFuture().get()).hasSize(2);
+    assertThat(correlationIds).containsExactly("caller-correlation-id", "caller-correlation-id");
+    assertThat(MDC.get("corrID")).isNull();
+  }
+
+  @Test
+  public void shouldLimitParallelismOfFanOut() throws Exception {
+    List<CompletableFuture<String>> loads = new ArrayList<>();
+    AtomicInteger started = new AtomicInteger();
+    CompletionStage<Map<String, String>> result = BatchLoader.fanOut(Arrays.asList("a", "b", "c"), 2, key -> {
+      started.incrementAndGet();
+      CompletableFuture<String> future = new CompletableFuture<>();
+      loads.add(future);
+      return future;
+    });
+
+    assertThat(started.get()).isEqualTo(2);
+    loads.get(0).complete("A");
+    assertThat(started.get()).isEqualTo(3);
+    loads.get(1).complete("B");
+    loads.get(2).complete("C");
+
+    assertThat(result.toCompletableFuture().get()).hasSize(3);
+  }
+
+}
@@ -2,6 +2,7 @@ package components.common.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static play.mvc.Results.ok;
+import static play.mvc.Results.status;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import components.common.client.CountryServiceClient.CountryServiceEndpoint;
@@ -11,6 +12,7 @@ import org.junit.Test;
 import play.libs.Json;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.WSClient;
+import play.mvc.Http;
 import play.routing.RoutingDsl;
 import play.server.Server;
 import play.test.WSTestClient;
@@ -24,6 +26,8 @@ public class CountryServiceClientTest {
 
   private static final String BASE_PATH = "/countries/set/";
   private static final String COUNTRY_SET_NAME = "export-control";
+  private static final String ETAG_COUNTRY_SET_NAME = "etagged";
+  private static final String ETAG = "\"v1\"";
 
   private CountryServiceClient client;
   private WSClient ws;
@@ -37,6 +41,13 @@ public class CountryServiceClientTest {
           JsonNode jsonNode = Json.parse(inputStream);
           return ok(jsonNode);
         })
+        .GET(BASE_PATH + ETAG_COUNTRY_SET_NAME).routeTo(() -> {
+          if (ETAG.equals(Http.Context.current().request().getHeaders().get("If-None-Match").orElse(null))) {
+            return status(304);
+          }
+          return ok("[{\"countryRef\": \"CTRY1\", \"countryName\": \"France\"}]").as("application/json")
+              .withHeader("ETag", ETAG);
+        })
         .build());
 
     int port = server.httpPort();
@@ -57,6 +68,31 @@ public class CountryServiceClientTest {
     assertThat(countries.size()).isEqualTo(18);
   }
 
+  @Test
+  public void shouldNotGetUnchangedCountriesWithoutETag() throws Exception {
+    CountriesResult first = client.getCountriesIfModified(null).toCompletableFuture().get();
+    assertThat(first.isModified()).isTrue();
+    assertThat(first.getCountries()).hasSize(18);
+    assertThat(first.getEtag()).startsWith("sha256:");
+
+    CountriesResult second = client.getCountriesIfModified(first.getEtag()).toCompletableFuture().get();
+    assertThat(second.isModified()).isFalse();
+    assertThat(second.getEtag()).isEqualTo(first.getEtag());
+  }
+
+  @Test
+  public void shouldSendIfNoneMatchWithETag() throws Exception {
+    CountryServiceClient etagClient = new CountryServiceClient("http://localhost:" + server.httpPort(), 1000,
+        "service:password", ws, new HttpExecutionContext(Runnable::run), CountryServiceEndpoint.SET, ETAG_COUNTRY_SET_NAME);
+
+    CountriesResult first = etagClient.getCountriesIfModified(null).toCompletableFuture().get();
+    assertThat(first.isModified()).isTrue();
+    assertThat(first.getEtag()).isEqualTo(ETAG);
+
+    CountriesResult second = etagClient.getCountriesIfModified(ETAG).toCompletableFuture().get();
+    assertThat(second.isModified()).isFalse();
+  }
+
   @After
   public void cleanUp() throws Exception {
     try {
@@ -0,0 +1,221 @@
+package components.common.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import components.common.json.JsonCodec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.stubbing.Answer;
+import uk.gov.bis.lite.notification.api.EmailNotification;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+public class NotificationServiceClientTest {
+
+  private static final Answer<SendMessageBatchResult> SUCCESS = invocation -> {
+    SendMessageBatchRequest request = (SendMessageBatchRequest) invocation.getArguments()[0];
+    List<SendMessageBatchResultEntry> entries = request.getEntries().stream()
+        .map(entry -> new SendMessageBatchResultEntry().withId(entry.getId()))
+        .collect(Collectors.toList());
+    return new SendMessageBatchResult().withSuccessful(entries);
+  };
+
+  private static final Answer<SendMessageBatchResult> REJECT_POISON = invocation -> {
+    SendMessageBatchRequest request = (SendMessageBatchRequest) invocation.getArguments()[0];
+    if (request.getEntries().stream().anyMatch(entry -> entry.getMessageBody().contains("poison"))) {
+      AmazonServiceException exception = new AmazonServiceException("Invalid message");
+      exception.setErrorType(AmazonServiceException.ErrorType.Client);
+      throw exception;
+    }
+    return SUCCESS.answer(invocation);
+  };
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void messagesAreSentInBatches() {
+    AmazonSQS amazonSQS = mock(AmazonSQS.class);
+    when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).then(SUCCESS);
+    NotificationServiceClient client = new NotificationServiceClient("url", amazonSQS);
+
+    for (int i = 0; i < 25; i++) {
+      client.sendEmail("template", "user" + i + "@test.com", ImmutableMap.of());
+    }
+    assertThat(client.flush(10, TimeUnit.SECONDS)).isTrue();
+    client.close();
+
+    ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+    verify(amazonSQS, atLeastOnce()).sendMessageBatch(captor.capture());
+    for (SendMessageBatchRequest request : captor.getAllValues()) {
+      assertThat(request.getQueueUrl()).isEqualTo("url");
+      assertThat(request.getEntries().size()).isBetween(1, 10);
+    }
+    assertThat(captor.getAllValues().stream().mapToInt(request -> request.getEntries().size()).sum()).isEqualTo(25);
+    assertThat(client.getSentCount()).isEqualTo(25);
+    assertThat(client.getQueueDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void failedBatchIsRetried() {
+    AmazonSQS amazonSQS = mock(AmazonSQS.class);
+    when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class)))
+        .thenThrow(new AmazonServiceException("Service unavailable"))
+        .then(SUCCESS);
+    NotificationServiceClient client = new NotificationServiceClient("url", amazonSQS);
+
+    client.sendEmail("template", "user@test.com", ImmutableMap.of());
+    assertThat(client.flush(10, TimeUnit.SECONDS)).isTrue();
+    client.close();
+
+    assertThat(client.getSentCount()).isEqualTo(1);
+    assertThat(client.getFailedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void unsentMessagesAreSpooledAndResent() throws Exception {
+    File spoolDirectory = temporaryFolder.newFolder("spool");
+    AmazonSQS unavailableSQS = mock(AmazonSQS.class);
+    when(unavailableSQS.sendMessageBatch(any(SendMessageBatchRequest.class)))
+        .thenThrow(new AmazonServiceException("Service unavailable"));
+    NotificationServiceClient unavailableClient = new NotificationServiceClient("url", unavailableSQS, 10, spoolDirectory);
+
+    unavailableClient.sendEmail("template", "user@test.com", ImmutableMap.of());
+    assertThat(unavailableClient.flush(10, TimeUnit.SECONDS)).isTrue();
+    unavailableClient.close();
+    assertThat(unavailableClient.getSpooledCount()).isEqualTo(1);
+
+    AmazonSQS amazonSQS = mock(AmazonSQS.class);
+    when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).then(SUCCESS);
+    NotificationServiceClient client = new NotificationServiceClient("url", amazonSQS, 10, spoolDirectory);
+    long deadline = System.currentTimeMillis() + 10000;
+    while (client.getSentCount() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+    client.close();
+
+    assertThat(client.getSentCount()).isEqualTo(1);
+    assertThat(client.getSpooledCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void partlyWrittenSpoolFilesAreIgnored() throws Exception {
+    File spoolDirectory = temporaryFolder.newFolder("spool");
+    Path tempFile = spoolDirectory.toPath().resolve("0000000000001-partial.0.json.tmp");
+    Files.write(tempFile, "{\"template\":".getBytes(StandardCharsets.UTF_8));
+    AmazonSQS amazonSQS = mock(AmazonSQS.class);
+    when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).then(SUCCESS);
+
+    NotificationServiceClient client = new NotificationServiceClient("url", amazonSQS, 10, spoolDirectory);
+    assertThat(client.getSpooledCount()).isEqualTo(0);
+    Thread.sleep(1500);
+    client.close();
+
+    verify(amazonSQS, never()).sendMessageBatch(any(SendMessageBatchRequest.class));
+    assertThat(tempFile).exists();
+  }
+
+  @Test
+  public void unreadableSpoolFilesAreMovedToDeadLetter() throws Exception {
+    File spoolDirectory = temporaryFolder.newFolder("spool");
+    Files.write(spoolDirectory.toPath().resolve("0000000000001-unreadable.0.json"),
+        "{not json".getBytes(StandardCharsets.UTF_8));
+    spoolMessage(spoolDirectory, "0000000000002-valid.0.json", "valid");
+    AmazonSQS amazonSQS = mock(AmazonSQS.class);
+    when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).then(SUCCESS);
+
+    NotificationServiceClient client = new NotificationServiceClient("url", amazonSQS, 10, spoolDirectory);
+    awaitCondition(() -> client.getSentCount() == 1);
+    client.close();
+
+    assertThat(client.getSpooledCount()).isEqualTo(0);
+    assertThat(client.getDeadLetterCount()).isEqualTo(1);
+    assertThat(new File(spoolDirectory, "dead-letter/0000000000001-unreadable.0.json")).exists();
+  }
+
+  @Test
+  public void rejectedSpoolFilesDoNotBlockSpool() throws Exception {
+    File spoolDirectory = temporaryFolder.newFolder("spool");
+    spoolMessage(spoolDirectory, "0000000000001-rejected.9.json", "poison");
+    spoolMessage(spoolDirectory, "0000000000002-retried.0.json", "poison");
+    spoolMessage(spoolDirectory, "0000000000003-valid.0.json", "valid");
+    AmazonSQS amazonSQS = mock(AmazonSQS.class);
+    when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).then(REJECT_POISON);
+
+    NotificationServiceClient client = new NotificationServiceClient("url", amazonSQS, 10, spoolDirectory);
+    awaitCondition(() -> client.getDeadLetterCount() == 1 && spoolFileNames(spoolDirectory).size() == 1 &&
+        spoolFileNames(spoolDirectory).get(0).endsWith("-retried.1.json"));
+    client.close();
+
+    assertThat(client.getSentCount()).isEqualTo(1);
+    assertThat(new File(spoolDirectory, "dead-letter/0000000000001-rejected.9.json")).exists();
+    assertThat(spoolFileNames(spoolDirectory)).hasSize(1);
+    assertThat(spoolFileNames(spoolDirectory).get(0)).endsWith("-retried.1.json");
+  }
+
+  @Test
+  public void batchesAreKeptUnderSqsSizeLimit() {
+    AmazonSQS amazonSQS = mock(AmazonSQS.class);
+    when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).then(SUCCESS);
+    NotificationServiceClient client = new NotificationServiceClient("url", amazonSQS);
+
+    for (int i = 0; i < 10; i++) {
+      client.sendEmail("template", "user" + i + "@test.com", ImmutableMap.of("text", Strings.repeat("a", 60000)));
+    }
+    client.sendEmail("template", "large@test.com", ImmutableMap.of("text", Strings.repeat("a", 300000)));
+    assertThat(client.flush(10, TimeUnit.SECONDS)).isTrue();
+    client.close();
+
+    ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+    verify(amazonSQS, atLeastOnce()).sendMessageBatch(captor.capture());
+    for (SendMessageBatchRequest request : captor.getAllValues()) {
+      assertThat(request.getEntries().stream().mapToInt(entry -> entry.getMessageBody().length()).sum())
+          .isLessThanOrEqualTo(256 * 1024);
+    }
+    assertThat(client.getSentCount()).isEqualTo(10);
+    assertThat(client.getFailedCount()).isEqualTo(1);
+  }
+
+  private static void spoolMessage(File spoolDirectory, String fileName, String text) throws Exception {
+    EmailNotification emailNotification = new EmailNotification();
+    emailNotification.setTemplate("template");
+    emailNotification.setEmailAddress("user@test.com");
+    emailNotification.setPersonalisation(ImmutableMap.of("text", text));
+    Files.write(spoolDirectory.toPath().resolve(fileName), JsonCodec.shared().writeValueAsBytes(emailNotification));
+  }
+
+  private static List<String> spoolFileNames(File spoolDirectory) {
+    return Arrays.stream(spoolDirectory.list()).filter(name -> name.endsWith(".json")).collect(Collectors.toList());
+  }
+
+  private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+  }
+
+}
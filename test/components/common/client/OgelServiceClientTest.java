@@ -2,12 +2,16 @@ package components.common.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static play.mvc.Results.ok;
+import static play.mvc.Results.status;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import org.junit.Test;
 import play.libs.Json;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.WSClient;
+import play.mvc.Http;
 import play.routing.RoutingDsl;
 import play.server.Server;
 import play.test.WSTestClient;
@@ -18,6 +22,7 @@ import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class OgelServiceClientTest {
 
@@ -60,6 +65,60 @@ public class OgelServiceClientTest {
     server.stop();
   }
 
+  @Test
+  public void shouldServeOgelFromCache() throws Exception {
+    AtomicInteger requestCount = new AtomicInteger();
+    Server server = createEtagServer(requestCount);
+    int port = server.httpPort();
+    WSClient wsClient = WSTestClient.newClient(port);
+    OgelServiceClient client = buildClient(port, wsClient);
+
+    client.getById("OGL61").toCompletableFuture().get();
+    OgelFullView ogelFullView = client.getById("OGL61").toCompletableFuture().get();
+
+    assertThat(ogelFullView.getId()).isEqualTo("OGL991");
+    assertThat(requestCount.get()).isEqualTo(1);
+
+    wsClient.close();
+    server.stop();
+  }
+
+  @Test
+  public void shouldRevalidateExpiredOgelWithEtag() throws Exception {
+    AtomicInteger requestCount = new AtomicInteger();
+    Server server = createEtagServer(requestCount);
+    int port = server.httpPort();
+    WSClient wsClient = WSTestClient.newClient(port);
+    ResponseCachePolicy expiredPolicy = new ResponseCachePolicy(0, 0, 10);
+    OgelServiceClient client = new OgelServiceClient("http://localhost:" + port, 10000, "service:password", wsClient,
+        new HttpExecutionContext(Runnable::run), expiredPolicy, expiredPolicy, null, ClientPolicy.DEFAULT);
+
+    OgelFullView first = client.getById("OGL61").toCompletableFuture().get();
+    OgelFullView second = client.getById("OGL61").toCompletableFuture().get();
+
+    assertThat(second).isSameAs(first);
+    assertThat(requestCount.get()).isEqualTo(2);
+
+    wsClient.close();
+    server.stop();
+  }
+
+  private Server createEtagServer(AtomicInteger requestCount) {
+    InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream("common/client/ogel.json");
+    JsonNode jsonNode = Json.parse(inputStream);
+    return Server.forRouter(builtInComponents -> RoutingDsl.fromComponents(builtInComponents)
+        .GET("/ogels/OGL61")
+        .routeTo(() -> {
+          requestCount.incrementAndGet();
+          if (Http.Context.current().request().getHeaders().get("If-None-Match").filter("\"v1\""::equals).isPresent()) {
+            return status(304);
+          } else {
+            return ok(jsonNode).withHeader("ETag", "\"v1\"");
+          }
+        })
+        .build());
+  }
+
   private Server createServer(String resource, String path) {
     InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource);
     JsonNode jsonNode = Json.parse(inputStream);
@@ -69,12 +128,36 @@ public class OgelServiceClientTest {
         .build());
   }
 
+  @Test
+  public void shouldReadCachePolicyFromConfig() throws Exception {
+    AtomicInteger requestCount = new AtomicInteger();
+    Server server = createEtagServer(requestCount);
+    int port = server.httpPort();
+    WSClient wsClient = WSTestClient.newClient(port);
+    Config config = ConfigFactory.parseString("ogelService.cache.ogels { ttl = 0s, staleWhileRevalidate = 0s }");
+    OgelServiceClient client = buildClient(port, wsClient, config);
+
+    client.getById("OGL61").toCompletableFuture().get();
+    client.getById("OGL61").toCompletableFuture().get();
+
+    assertThat(requestCount.get()).isEqualTo(2);
+
+    wsClient.close();
+    server.stop();
+  }
+
   private OgelServiceClient buildClient(int port, WSClient wsClient) {
+    return buildClient(port, wsClient, ConfigFactory.empty());
+  }
+
+  private OgelServiceClient buildClient(int port, WSClient wsClient, Config config) {
     return new OgelServiceClient("http://localhost:" + port,
         10000,
         "service:password",
         wsClient,
-        new HttpExecutionContext(Runnable::run));
+        new HttpExecutionContext(Runnable::run),
+        config,
+        new OgelServiceClient.SharedCache());
   }
 
 }
@@ -0,0 +1,94 @@
+package components.common.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static play.mvc.Results.ok;
+
+import filters.common.JwtRequestFilter;
+import filters.common.JwtUserRequestFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.Json;
+import play.libs.concurrent.HttpExecutionContext;
+import play.libs.ws.WSClient;
+import play.mvc.Http;
+import play.routing.RoutingDsl;
+import play.server.Server;
+import play.test.WSTestClient;
+import uk.gov.bis.lite.permissions.api.view.LicenceView;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PermissionsServiceClientTest {
+
+  private static final String USER_ID = "123";
+  private static final String LICENCES_JSON = "[{\"licenceRef\": \"LIC/1\"}, {\"licenceRef\": \"LIC/2\"}]";
+
+  private final AtomicInteger licencesRequestCount = new AtomicInteger();
+  private final AtomicInteger licenceRequestCount = new AtomicInteger();
+
+  private PermissionsServiceClient client;
+  private WSClient ws;
+  private Server server;
+
+  @Before
+  public void setUp() {
+    server = Server.forRouter(builtInComponents -> RoutingDsl.fromComponents(builtInComponents)
+        .GET("/licences/user/" + USER_ID).routeTo(() -> {
+          if (Http.Context.current().request().getQueryString("licenceReference") != null) {
+            licenceRequestCount.incrementAndGet();
+            return ok(Json.parse("[{\"licenceRef\": \"LIC/3\"}]"));
+          } else {
+            licencesRequestCount.incrementAndGet();
+            return ok(Json.parse(LICENCES_JSON));
+          }
+        })
+        .build());
+
+    JwtRequestFilter jwtRequestFilter = mock(JwtRequestFilter.class);
+    when(jwtRequestFilter.forCurrentUser()).thenReturn(new JwtUserRequestFilter(USER_ID, executor -> executor));
+
+    int port = server.httpPort();
+    ws = WSTestClient.newClient(port);
+    client = new PermissionsServiceClient("http://localhost:" + port, 1000, "service:password", ws,
+        new HttpExecutionContext(Runnable::run), jwtRequestFilter, ClientPolicy.DEFAULT);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ws.close();
+    server.stop();
+  }
+
+  @Test
+  public void shouldCacheLicences() throws Exception {
+    List<LicenceView> licences = client.getLicences(USER_ID).toCompletableFuture().get();
+    assertThat(client.getLicences(USER_ID).toCompletableFuture().get()).isEqualTo(licences);
+    assertThat(licences).hasSize(2);
+    assertThat(licencesRequestCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldGetLicenceFromCachedLicences() throws Exception {
+    client.getLicences(USER_ID).toCompletableFuture().get();
+
+    assertThat(client.getLicence(USER_ID, "LIC/2").toCompletableFuture().get().getLicenceRef()).isEqualTo("LIC/2");
+    assertThat(licenceRequestCount.get()).isZero();
+
+    assertThat(client.getLicence(USER_ID, "LIC/3").toCompletableFuture().get().getLicenceRef()).isEqualTo("LIC/3");
+    assertThat(licenceRequestCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRefetchLicencesAfterInvalidation() throws Exception {
+    client.getLicences(USER_ID).toCompletableFuture().get();
+    client.invalidateUser(USER_ID);
+    client.getLicences(USER_ID).toCompletableFuture().get();
+
+    assertThat(licencesRequestCount.get()).isEqualTo(2);
+  }
+
+}
@@ -0,0 +1,62 @@
+package components.common.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import play.libs.ws.WSRequest;
+import play.libs.ws.WSResponse;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class RequestUtilTest {
+
+  private static final String COUNTRIES_JSON = "[{\"countryRef\": \"CTRY1\", \"countryName\": \"Country 1\"}," +
+      "{\"countryRef\": \"CTRY2\", \"countryName\": \"Country 2\"}]";
+
+  @Test
+  public void shouldParseList() {
+    List<CountryView> countries = RequestUtil.parseList(mock(WSRequest.class), response(COUNTRIES_JSON), null,
+        "country-service", "getCountries", CountryView[].class);
+
+    assertThat(countries).extracting(CountryView::getCountryRef).containsExactly("CTRY1", "CTRY2");
+  }
+
+  @Test
+  public void shouldParseStream() {
+    try (Stream<CountryView> countries = RequestUtil.parseStream(mock(WSRequest.class), response(COUNTRIES_JSON), null,
+        "country-service", "getCountries", CountryView.class)) {
+      assertThat(countries.map(CountryView::getCountryName).collect(Collectors.toList()))
+          .containsExactly("Country 1", "Country 2");
+    }
+  }
+
+  @Test
+  public void shouldThrowClientExceptionForInvalidStreamElement() {
+    Stream<CountryView> countries = RequestUtil.parseStream(mock(WSRequest.class), response("[{\"countryRef\": \"CTRY1\"}, 1"),
+        null, "country-service", "getCountries", CountryView.class);
+
+    assertThatThrownBy(() -> countries.collect(Collectors.toList())).isInstanceOf(ClientException.class);
+  }
+
+  @Test
+  public void shouldThrowClientExceptionForInvalidJson() {
+    assertThatThrownBy(() -> RequestUtil.parse(mock(WSRequest.class), response("{"), null, "country-service",
+        "getCountries", CountryView[].class)).isInstanceOf(ClientException.class);
+  }
+
+  private static WSResponse response(String body) {
+    WSResponse response = mock(WSResponse.class);
+    when(response.getStatus()).thenReturn(200);
+    when(response.getBody()).thenReturn(body);
+    when(response.asByteArray()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+    return response;
+  }
+
+}
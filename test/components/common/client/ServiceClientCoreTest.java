@@ -0,0 +1,213 @@
+package components.common.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static play.mvc.Results.internalServerError;
+import static play.mvc.Results.ok;
+import static play.mvc.Results.status;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.MDC;
+import play.libs.ws.WSClient;
+import play.libs.ws.WSRequest;
+import play.libs.ws.WSResponse;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.routing.RoutingDsl;
+import play.server.Server;
+import play.test.WSTestClient;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class ServiceClientCoreTest {
+
+  private final AtomicInteger flakyRequestCount = new AtomicInteger();
+  private final AtomicInteger errorRequestCount = new AtomicInteger();
+  private final AtomicInteger slowRequestCount = new AtomicInteger();
+  private final List<List<String>> correlationHeaders = new CopyOnWriteArrayList<>();
+
+  private Server server;
+  private WSClient wsClient;
+  private String address;
+
+  @Before
+  public void setUp() {
+    server = Server.forRouter(builtInComponents -> RoutingDsl.fromComponents(builtInComponents)
+        .GET("/flaky").routeTo((Supplier<Result>) () -> {
+          correlationHeaders.add(Http.Context.current().request().getHeaders().getAll("X-CorrelationId"));
+          return flakyRequestCount.incrementAndGet() == 1 ? status(503) : ok("ok");
+        })
+        .GET("/slow").routeTo((Supplier<Result>) () -> {
+          slowRequestCount.incrementAndGet();
+          try {
+            Thread.sleep(200);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return ok("slow");
+        })
+        .GET("/error").routeTo((Supplier<Result>) () -> {
+          errorRequestCount.incrementAndGet();
+          return internalServerError();
+        })
+        .build());
+    wsClient = WSTestClient.newClient(server.httpPort());
+    address = "http://localhost:" + server.httpPort();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    wsClient.close();
+    server.stop();
+  }
+
+  @Test
+  public void shouldRetryIdempotentRequest() throws Exception {
+    ServiceClientCore core = new ServiceClientCore("test-service", 1000, new ClientPolicy(10, 5, 30000, 2, 1), wsClient);
+
+    MDC.put("corrID", "caller-correlation-id");
+    WSResponse response;
+    try {
+      response = core.get(core.url(address + "/flaky")).toCompletableFuture().get();
+    } finally {
+      MDC.clear();
+    }
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(flakyRequestCount.get()).isEqualTo(2);
+    assertThat(correlationHeaders).hasSize(2);
+    for (List<String> headers : correlationHeaders) {
+      assertThat(headers).containsExactly("caller-correlation-id");
+    }
+  }
+
+  @Test
+  public void shouldNotReuseCorrelationIdBetweenRetriedRequests() throws Exception {
+    ServiceClientCore core = new ServiceClientCore("test-service", 1000, new ClientPolicy(10, 5, 30000, 2, 1), wsClient);
+
+    MDC.put("corrID", "first-correlation-id");
+    try {
+      core.get(core.url(address + "/flaky")).toCompletableFuture().get();
+      flakyRequestCount.set(0);
+      MDC.put("corrID", "second-correlation-id");
+      core.get(core.url(address + "/flaky")).toCompletableFuture().get();
+    } finally {
+      MDC.clear();
+    }
+
+    assertThat(correlationHeaders).extracting(headers -> headers.get(0)).containsExactly("first-correlation-id",
+        "first-correlation-id", "second-correlation-id", "second-correlation-id");
+  }
+
+  @Test
+  public void shouldNotRetryNonIdempotentRequest() throws Exception {
+    ServiceClientCore core = new ServiceClientCore("test-service", 1000, new ClientPolicy(10, 5, 30000, 2, 1), wsClient);
+
+    WSResponse response = core.execute(core.url(address + "/flaky"), WSRequest::get).toCompletableFuture().get();
+
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(flakyRequestCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldOpenCircuitBreakerAfterFailures() throws Exception {
+    ServiceClientCore core = new ServiceClientCore("test-service", 1000, new ClientPolicy(10, 2, 30000, 0, 1), wsClient);
+
+    for (int i = 0; i < 2; i++) {
+      assertThat(core.get(core.url(address + "/error")).toCompletableFuture().get().getStatus()).isEqualTo(500);
+    }
+
+    assertThat(core.getCircuitBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThatThrownBy(() -> core.get(core.url(address + "/error")).toCompletableFuture().get())
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(ClientException.class);
+    assertThat(errorRequestCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldCloseCircuitBreakerAfterSuccessfulTrial() throws Exception {
+    ServiceClientCore core = new ServiceClientCore("test-service", 1000, new ClientPolicy(10, 1, 0, 0, 1), wsClient);
+
+    core.get(core.url(address + "/error")).toCompletableFuture().get();
+    assertThat(core.getCircuitBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+    flakyRequestCount.set(1);
+    core.get(core.url(address + "/flaky")).toCompletableFuture().get();
+    assertThat(core.getCircuitBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void shouldRejectRequestsOverConcurrencyLimit() throws Exception {
+    ServiceClientCore core = new ServiceClientCore("test-service", 1000, new ClientPolicy(0, 5, 30000, 0, 1), wsClient);
+
+    assertThatThrownBy(() -> core.get(core.url(address + "/flaky")).toCompletableFuture().get())
+        .hasCauseInstanceOf(ClientException.class);
+    assertThat(flakyRequestCount.get()).isZero();
+  }
+
+  @Test
+  public void shouldCoalesceConcurrentIdenticalRequests() throws Exception {
+    ServiceClientCore core = new ServiceClientCore("test-service", 1000, ClientPolicy.DEFAULT, wsClient);
+
+    CompletionStage<WSResponse> first = core.get(core.url(address + "/slow"), "user");
+    CompletionStage<WSResponse> second = core.get(core.url(address + "/slow"), "user");
+    CompletionStage<WSResponse> otherUser = core.get(core.url(address + "/slow"), "other-user");
+    assertThat(core.getInFlightRequestCount()).isEqualTo(2);
+
+    assertThat(first.toCompletableFuture().get().getBody()).isEqualTo("slow");
+    assertThat(second.toCompletableFuture().get().getBody()).isEqualTo("slow");
+    assertThat(otherUser.toCompletableFuture().get().getBody()).isEqualTo("slow");
+    assertThat(slowRequestCount.get()).isEqualTo(2);
+    assertThat(core.getInFlightRequestCount()).isZero();
+
+    core.get(core.url(address + "/slow"), "user").toCompletableFuture().get();
+    assertThat(slowRequestCount.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldRequirePrincipalForUserRequests() {
+    ServiceClientCore core = new ServiceClientCore("test-service", 1000, ClientPolicy.DEFAULT, wsClient);
+
+    assertThatThrownBy(() -> core.get(core.url(address + "/slow"), null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(slowRequestCount.get()).isZero();
+  }
+
+  @Test
+  public void shouldShareCoreBetweenClientsOfSameService() throws Exception {
+    ServiceClientCore core = ServiceClientCore.shared("shared-service", 1000, new ClientPolicy(10, 1, 30000, 0, 1),
+        wsClient);
+    ServiceClientCore otherClientCore = ServiceClientCore.shared("shared-service", 1000, ClientPolicy.DEFAULT,
+        wsClient);
+
+    assertThat(otherClientCore).isSameAs(core);
+    assertThat(ServiceClientCore.shared("other-service", 1000, ClientPolicy.DEFAULT, wsClient)).isNotSameAs(core);
+
+    core.get(core.url(address + "/error")).toCompletableFuture().get();
+    assertThat(otherClientCore.getCircuitBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  public void shouldReadPolicyFromConfig() {
+    ClientPolicy policy = ClientPolicy.fromConfig(ConfigFactory.parseString(
+        "customerService.policy { maxConcurrentRequests = 100, resetTimeout = 10s, retryBaseDelay = 50ms }"),
+        "customerService.policy", ClientPolicy.DEFAULT);
+
+    assertThat(policy.getMaxConcurrentRequests()).isEqualTo(100);
+    assertThat(policy.getMaxFailures()).isEqualTo(ClientPolicy.DEFAULT.getMaxFailures());
+    assertThat(policy.getResetTimeoutMillis()).isEqualTo(10000);
+    assertThat(policy.getMaxRetries()).isEqualTo(ClientPolicy.DEFAULT.getMaxRetries());
+    assertThat(policy.getRetryBaseDelayMillis()).isEqualTo(50);
+    assertThat(ClientPolicy.fromConfig(ConfigFactory.empty(), "customerService.policy", ClientPolicy.DEFAULT))
+        .isSameAs(ClientPolicy.DEFAULT);
+  }
+
+}
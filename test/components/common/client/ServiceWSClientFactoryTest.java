@@ -0,0 +1,69 @@
+package components.common.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static play.mvc.Results.ok;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.inject.ApplicationLifecycle;
+import play.libs.ws.WSClient;
+import play.routing.RoutingDsl;
+import play.server.Server;
+
+public class ServiceWSClientFactoryTest {
+
+  private ActorSystem actorSystem;
+  private Server server;
+  private ServiceWSClientFactory factory;
+
+  @Before
+  public void setUp() {
+    actorSystem = ActorSystem.create();
+    server = Server.forRouter(builtInComponents -> RoutingDsl.fromComponents(builtInComponents)
+        .GET("/test").routeTo(() -> ok("ok"))
+        .build());
+    Config config = ConfigFactory.parseString("serviceClients.\"test-service\".ws.ahc.maxConnectionsPerHost = 5")
+        .withFallback(ConfigFactory.load());
+    factory = new ServiceWSClientFactory(config, ActorMaterializer.create(actorSystem), mock(ApplicationLifecycle.class));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop();
+    for (String serviceName : factory.getStats().keySet()) {
+      factory.getClient(serviceName).close();
+    }
+    actorSystem.terminate();
+  }
+
+  @Test
+  public void shouldCreateClientPerService() {
+    WSClient client = factory.getClient("test-service");
+
+    assertThat(factory.getClient("test-service")).isSameAs(client);
+    assertThat(factory.getClient("other-service")).isNotSameAs(client);
+    assertThat(factory.getStats().get("test-service").getMaxConnectionsPerHost()).isEqualTo(5);
+    assertThat(factory.getStats().get("other-service").getMaxConnectionsPerHost()).isEqualTo(-1);
+  }
+
+  @Test
+  public void shouldRecordRequestStats() throws Exception {
+    WSClient client = factory.getClient("test-service");
+
+    client.url("http://localhost:" + server.httpPort() + "/test").get().toCompletableFuture().get();
+    client.url("http://localhost:" + server.httpPort() + "/test").get().toCompletableFuture().get();
+
+    ServiceWSClientStats stats = factory.getStats().get("test-service");
+    assertThat(stats.getTotalRequests()).isEqualTo(2);
+    assertThat(stats.getActiveRequests()).isZero();
+    assertThat(stats.getPeakActiveRequests()).isEqualTo(1);
+    assertThat(stats.getFailedRequests()).isZero();
+  }
+
+}
@@ -53,7 +53,8 @@ public class UserServiceClientBasicAuthTest {
     int port = server.httpPort();
     ws = WSTestClient.newClient(port);
     String serviceUrl = "http://localhost:" + port;
-    client = new UserServiceClientBasicAuth(serviceUrl, 1000, "service:password", ws, new HttpExecutionContext(Runnable::run));
+    client = new UserServiceClientBasicAuth(serviceUrl, 1000, "service:password", ws, new HttpExecutionContext(Runnable::run),
+        ClientPolicy.DEFAULT);
   }
 
   @Test
@@ -0,0 +1,93 @@
+package components.common.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static play.mvc.Results.ok;
+
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.concurrent.HttpExecutionContext;
+import play.libs.ws.WSClient;
+import play.mvc.Result;
+import play.routing.RoutingDsl;
+import play.server.Server;
+import play.test.WSTestClient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class VirusCheckerClientTest {
+
+  private final AtomicInteger scanCount = new AtomicInteger();
+
+  private Server server;
+  private WSClient wsClient;
+  private VirusCheckerClient client;
+
+  @Before
+  public void setUp() {
+    server = Server.forRouter(builtInComponents -> RoutingDsl.fromComponents(builtInComponents)
+        .POST("/scan").routeTo((Supplier<Result>) () -> {
+          scanCount.incrementAndGet();
+          return ok("\"OK\"").as("application/json");
+        })
+        .build());
+    wsClient = WSTestClient.newClient(server.httpPort());
+    client = new VirusCheckerClient("http://localhost:" + server.httpPort() + "/scan", 10000, 10000, "user:password",
+        wsClient, new HttpExecutionContext(ForkJoinPool.commonPool()), ConfigFactory.empty());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    wsClient.close();
+    server.stop();
+  }
+
+  @Test
+  public void shouldAllowMoreStreamedChecksThanDefaultConcurrencyLimit() throws Exception {
+    int checkCount = ClientPolicy.DEFAULT.getMaxConcurrentRequests() + 10;
+    CompletableFuture<ByteString> received = new CompletableFuture<>();
+    List<CompletionStage<Boolean>> checks = new ArrayList<>();
+    for (int i = 0; i < checkCount; i++) {
+      checks.add(client.isOk(Source.fromCompletionStage(received)));
+    }
+
+    Path path = Files.createTempFile("virus-checker-client-test", ".txt");
+    try {
+      Files.write(path, "file".getBytes());
+      assertThat(client.isOk(path).toCompletableFuture().get(10, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      Files.delete(path);
+    }
+
+    received.complete(ByteString.fromString("file"));
+    for (CompletionStage<Boolean> check : checks) {
+      assertThat(check.toCompletableFuture().get(10, TimeUnit.SECONDS)).isTrue();
+    }
+    assertThat(scanCount.get()).isEqualTo(checkCount + 1);
+  }
+
+  @Test
+  public void shouldNotOpenCircuitBreakerWhenStreamedFilesFail() throws Exception {
+    for (int i = 0; i <= VirusCheckerClient.DEFAULT_STREAMING_POLICY.getMaxFailures(); i++) {
+      CompletionStage<Boolean> check = client.isOk(Source.failed(new RuntimeException("Upload aborted")));
+      assertThatThrownBy(() -> check.toCompletableFuture().get(10, TimeUnit.SECONDS));
+    }
+
+    Source<ByteString, ?> file = Source.single(ByteString.fromString("file"));
+    assertThat(client.isOk(file).toCompletableFuture().get(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+}
@@ -0,0 +1,49 @@
+package components.common.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class JsonCodecTest {
+
+  @Test
+  public void readersAndWritersAreCachedPerType() {
+    JsonCodec codec = new JsonCodec(new ObjectMapper());
+
+    assertThat(codec.readerFor(Map.class)).isSameAs(codec.readerFor(Map.class));
+    assertThat(codec.writerFor(Map.class)).isSameAs(codec.writerFor(Map.class));
+    assertThat(codec.readerFor(Map.class)).isNotSameAs(codec.readerFor(String.class));
+  }
+
+  @Test
+  public void writesValuesAsBytesAndStrings() throws Exception {
+    JsonCodec codec = new JsonCodec(new ObjectMapper());
+    Map<String, String> map = ImmutableMap.of("key", "valué");
+
+    assertThat(codec.writeValueAsString(map)).isEqualTo("{\"key\":\"valué\"}");
+    assertThat(new String(codec.writeValueAsBytes(map), StandardCharsets.UTF_8)).isEqualTo("{\"key\":\"valué\"}");
+    assertThat(codec.writeValueAsString(null)).isEqualTo("null");
+    Map<?, ?> read = codec.readerFor(Map.class).readValue(codec.writeValueAsBytes(map));
+    assertThat(read).isEqualTo(map);
+  }
+
+  @Test
+  public void sharedCodecIsReused() {
+    assertThat(JsonCodec.shared()).isSameAs(JsonCodec.shared());
+  }
+
+  @Test
+  public void sharedCodecFollowsPlayMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    JsonCodec codec = JsonCodec.forMapper(null, mapper);
+
+    assertThat(JsonCodec.forMapper(codec, mapper)).isSameAs(codec);
+    assertThat(JsonCodec.forMapper(codec, new ObjectMapper())).isNotSameAs(codec);
+  }
+
+}
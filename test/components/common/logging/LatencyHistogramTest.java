@@ -0,0 +1,43 @@
+package components.common.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void emptyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertThat(histogram.getCount()).isEqualTo(0);
+    assertThat(histogram.getMeanMillis()).isEqualTo(0);
+    assertThat(histogram.getPercentileMillis(99)).isEqualTo(0);
+  }
+
+  @Test
+  public void percentilesAreBucketUpperBounds() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 90; i++) {
+      histogram.record(8);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(150);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(100);
+    assertThat(histogram.getMeanMillis()).isEqualTo(22.2);
+    assertThat(histogram.getPercentileMillis(50)).isEqualTo(10);
+    assertThat(histogram.getPercentileMillis(95)).isEqualTo(150);
+    assertThat(histogram.getMaxMillis()).isEqualTo(150);
+  }
+
+  @Test
+  public void largeLatenciesAreCappedAtMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(45000);
+
+    assertThat(histogram.getPercentileMillis(50)).isEqualTo(45000);
+  }
+
+}
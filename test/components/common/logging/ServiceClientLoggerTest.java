@@ -0,0 +1,61 @@
+package components.common.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static play.mvc.Results.ok;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.ws.WSClient;
+import play.mvc.Result;
+import play.routing.RoutingDsl;
+import play.server.Server;
+import play.test.WSTestClient;
+
+import java.util.function.Supplier;
+
+public class ServiceClientLoggerTest {
+
+  private Server server;
+  private WSClient wsClient;
+
+  @Before
+  public void setUp() {
+    server = Server.forRouter(builtInComponents -> RoutingDsl.fromComponents(builtInComponents)
+        .GET("/test").routeTo((Supplier<Result>) () -> ok("ok"))
+        .build());
+    wsClient = WSTestClient.newClient(server.httpPort());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ServiceClientLogger.setSampleRate(100);
+    wsClient.close();
+    server.stop();
+  }
+
+  @Test
+  public void shouldRecordLatencyOfEachRequest() {
+    ServiceClientLogger.setSampleRate(1);
+    for (int i = 0; i < 3; i++) {
+      wsClient.url("http://localhost:" + server.httpPort() + "/test")
+          .setRequestFilter(ServiceClientLogger.requestFilter("logger-test", "GET", null))
+          .addQueryParameter("i", String.valueOf(i))
+          .get().toCompletableFuture().join();
+    }
+
+    LatencyHistogram histogram = ServiceClientLogger.getHistogram("logger-test");
+    assertThat(histogram.getCount()).isEqualTo(3);
+    assertThat(ServiceClientLogger.getHistograms()).containsEntry("logger-test", histogram);
+  }
+
+  @Test
+  public void shouldRecordLatencyOfFailedRequest() {
+    wsClient.url("http://localhost:1/test")
+        .setRequestFilter(ServiceClientLogger.requestFilter("logger-test-failure", "GET", null))
+        .get().exceptionally(error -> null).toCompletableFuture().join();
+
+    assertThat(ServiceClientLogger.getHistogram("logger-test-failure").getCount()).isEqualTo(1);
+  }
+
+}
@@ -0,0 +1,94 @@
+package components.common.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static play.mvc.Results.ok;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.MDC;
+import play.libs.ws.WSClient;
+import play.libs.ws.WSResponse;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.routing.RoutingDsl;
+import play.server.Server;
+import play.test.WSTestClient;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+public class TracingTest {
+
+  private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+  private static final String PARENT_SPAN_ID = "00f067aa0ba902b7";
+
+  private final InMemorySpanExporter exporter = new InMemorySpanExporter(10);
+  private Server server;
+  private WSClient wsClient;
+
+  @Before
+  public void setUp() {
+    server = Server.forRouter(builtInComponents -> RoutingDsl.fromComponents(builtInComponents)
+        .GET("/test").routeTo((Supplier<Result>) () ->
+            ok(Http.Context.current().request().getHeaders().get(Tracing.TRACEPARENT_HEADER_NAME).orElse("")))
+        .build());
+    wsClient = WSTestClient.newClient(server.httpPort());
+    Tracing.setExporter(exporter);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Tracing.setExporter(Tracing.getInMemoryExporter());
+    MDC.clear();
+    wsClient.close();
+    server.stop();
+  }
+
+  @Test
+  public void shouldContinueTraceFromRequest() throws Exception {
+    Tracing.setUp(new Http.RequestBuilder().header(Tracing.TRACEPARENT_HEADER_NAME, "00-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01").build());
+
+    WSResponse response = wsClient.url("http://localhost:" + server.httpPort() + "/test")
+        .setRequestFilter(Tracing.requestFilter("test-service"))
+        .get().toCompletableFuture().get();
+
+    List<Span> spans = exporter.getSpans(TRACE_ID);
+    assertThat(spans).hasSize(1);
+    Span span = spans.get(0);
+    assertThat(span.getParentSpanId()).isEqualTo(PARENT_SPAN_ID);
+    assertThat(span.getServiceName()).isEqualTo("test-service");
+    assertThat(span.getStatus()).isEqualTo(200);
+    assertThat(span.getError()).isNull();
+    assertThat(response.getBody()).isEqualTo("00-" + TRACE_ID + "-" + span.getSpanId() + "-01");
+  }
+
+  @Test
+  public void shouldStartNewTraceForInvalidHeader() {
+    Tracing.setUp(new Http.RequestBuilder().header(Tracing.TRACEPARENT_HEADER_NAME, "00-" + TRACE_ID + "-0000000000000000-01").build());
+
+    assertThat(Tracing.getTraceId()).matches("[0-9a-f]{32}").isNotEqualTo(TRACE_ID);
+  }
+
+  @Test
+  public void shouldNotStoreTraceIdWhenNoTraceIsSetUp() {
+    String traceId = Tracing.getTraceId();
+
+    assertThat(traceId).matches("[0-9a-f]{32}");
+    assertThat(MDC.get("traceId")).isNull();
+    assertThat(Tracing.getTraceId()).isNotEqualTo(traceId);
+  }
+
+  @Test
+  public void shouldRecordFailedRequest() {
+    wsClient.url("http://localhost:1/test")
+        .setRequestFilter(Tracing.requestFilter("test-service"))
+        .get().exceptionally(error -> null).toCompletableFuture().join();
+
+    List<Span> spans = exporter.getSpans();
+    assertThat(spans).hasSize(1);
+    assertThat(spans.get(0).getStatus()).isEqualTo(-1);
+    assertThat(spans.get(0).getError()).isNotNull();
+  }
+
+}
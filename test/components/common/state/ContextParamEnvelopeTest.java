@@ -0,0 +1,93 @@
+package components.common.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ContextParamEnvelopeTest {
+
+  private static final String KEY = "demo-secret-which-is-long-enough";
+
+  private final ContextParamEnvelope envelope = new ContextParamEnvelope(KEY, true);
+
+  @Test
+  public void shouldRoundTripParams() {
+    Map<String, String> params = ImmutableMap.of("ctx_journey", "journey~stage&one=two", "ctx_transaction", "123");
+
+    String token = envelope.encode(params);
+
+    assertThat(token).matches("[A-Za-z0-9_.-]+");
+    assertThat(envelope.decode(token)).isEqualTo(params);
+  }
+
+  @Test
+  public void shouldOmitBlankParams() {
+    assertThat(envelope.encode(ImmutableMap.of("ctx_journey", "", "ctx_transaction", " "))).isEmpty();
+    assertThat(envelope.decode(envelope.encode(ImmutableMap.of("ctx_journey", "", "ctx_transaction", "123"))))
+        .containsOnlyKeys("ctx_transaction");
+  }
+
+  @Test
+  public void shouldDeflateLargePayloads() {
+    Map<String, String> params = ImmutableMap.of("ctx_journey", Strings.repeat("journey~stage~", 50));
+
+    String deflatedToken = envelope.encode(params);
+    String plainToken = new ContextParamEnvelope(KEY, false).encode(params);
+
+    assertThat(deflatedToken).startsWith("z.");
+    assertThat(plainToken).startsWith("p.");
+    assertThat(deflatedToken.length()).isLessThan(plainToken.length());
+    assertThat(envelope.decode(deflatedToken)).isEqualTo(params);
+  }
+
+  @Test
+  public void shouldIgnoreTamperedToken() {
+    String token = envelope.encode(ImmutableMap.of("ctx_transaction", "123"));
+    String forgedToken = new ContextParamEnvelope(KEY + "-other", true).encode(ImmutableMap.of("ctx_transaction", "456"));
+    String forgedPayload = forgedToken.substring(0, forgedToken.lastIndexOf('.'));
+    String signature = token.substring(token.lastIndexOf('.'));
+
+    assertThat(envelope.decode(forgedToken)).isEmpty();
+    assertThat(envelope.decode(forgedPayload + signature)).isEmpty();
+    assertThat(envelope.decode("not-a-token")).isEmpty();
+  }
+
+  @Test
+  public void shouldIgnoreExpiredToken() {
+    Instant issued = Instant.parse("2018-01-01T10:00:00Z");
+    ContextParamEnvelope issuingEnvelope = new ContextParamEnvelope(KEY, true, Duration.ofHours(1), () -> "",
+        Clock.fixed(issued, ZoneOffset.UTC));
+    String token = issuingEnvelope.encode(ImmutableMap.of("ctx_transaction", "123"));
+
+    ContextParamEnvelope validEnvelope = new ContextParamEnvelope(KEY, true, Duration.ofHours(1), () -> "",
+        Clock.fixed(issued.plus(Duration.ofMinutes(59)), ZoneOffset.UTC));
+    ContextParamEnvelope expiredEnvelope = new ContextParamEnvelope(KEY, true, Duration.ofHours(1), () -> "",
+        Clock.fixed(issued.plus(Duration.ofMinutes(61)), ZoneOffset.UTC));
+
+    assertThat(validEnvelope.decode(token)).containsEntry("ctx_transaction", "123");
+    assertThat(expiredEnvelope.decode(token)).isEmpty();
+  }
+
+  @Test
+  public void shouldOnlyAcceptTokenForSameBinding() {
+    AtomicReference<String> userId = new AtomicReference<>("user-1");
+    ContextParamEnvelope boundEnvelope = new ContextParamEnvelope(KEY, true, Duration.ofHours(1), userId::get);
+    String token = boundEnvelope.encode(ImmutableMap.of("ctx_transaction", "123"));
+
+    assertThat(token).doesNotContain("user-1");
+    assertThat(boundEnvelope.decode(token)).containsEntry("ctx_transaction", "123");
+
+    userId.set("user-2");
+    assertThat(boundEnvelope.decode(token)).isEmpty();
+  }
+
+}
@@ -0,0 +1,224 @@
+package components.common.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.core.j.JavaContextComponents;
+import play.mvc.Call;
+import play.mvc.Http;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+public class ContextParamManagerTest {
+
+  private static final String KEY = "demo-secret-which-is-long-enough";
+
+  private final ContextParamProvider journeyProvider = new TestContextParamProvider("ctx_journey");
+  private final ContextParamProvider transactionProvider = new TestContextParamProvider("ctx_transaction");
+  private final ContextParamManager contextParamManager = new ContextParamManager(journeyProvider, transactionProvider);
+
+  @Before
+  public void setUp() {
+    setContext(new Http.RequestBuilder().uri("/"));
+  }
+
+  @After
+  public void tearDown() {
+    Http.Context.current.remove();
+  }
+
+  @Test
+  public void shouldReturnUrlUnchangedWhenNoParamsSet() {
+    assertThat(contextParamManager.addParamsToCall(call("/page"))).isEqualTo("/page");
+  }
+
+  @Test
+  public void shouldAddParamsToUrl() {
+    journeyProvider.updateParamValueOnContext("journey~stage one");
+    transactionProvider.updateParamValueOnContext("123");
+
+    assertThat(contextParamManager.addParamsToCall(call("/page")))
+        .isEqualTo("/page?ctx_journey=journey%7Estage%20one&ctx_transaction=123");
+  }
+
+  @Test
+  public void shouldAppendParamsToExistingQueryString() {
+    transactionProvider.updateParamValueOnContext("123");
+
+    assertThat(contextParamManager.addParamsToCall(call("/page?a=b%26c"))).isEqualTo("/page?a=b%26c&ctx_transaction=123");
+  }
+
+  @Test
+  public void shouldRebuildParamsWhenValueUpdated() {
+    transactionProvider.updateParamValueOnContext("123");
+    assertThat(contextParamManager.addParamsToCall(call("/page"))).isEqualTo("/page?ctx_transaction=123");
+
+    transactionProvider.updateParamValueOnContext("456");
+    assertThat(contextParamManager.addParamsToCall(call("/page"))).isEqualTo("/page?ctx_transaction=456");
+
+    transactionProvider.updateParamValueOnContext("");
+    assertThat(contextParamManager.addParamsToCall(call("/page"))).isEqualTo("/page");
+  }
+
+  @Test
+  public void shouldSetContextArgsFromQueryAndPostParams() {
+    setContext(new Http.RequestBuilder()
+        .method("POST")
+        .uri("/page?ctx_journey=journey")
+        .bodyForm(ImmutableMap.of("ctx_journey", "ignored", "ctx_transaction", "123")));
+
+    contextParamManager.setAllContextArgsFromRequest();
+
+    assertThat(journeyProvider.getParamValueFromContext()).isEqualTo("journey");
+    assertThat(transactionProvider.getParamValueFromContext()).isEqualTo("123");
+  }
+
+  @Test
+  public void shouldReadRequestValueFromSnapshotAfterContextUpdated() {
+    setContext(new Http.RequestBuilder().uri("/page?ctx_transaction=123"));
+
+    contextParamManager.setAllContextArgsFromRequest();
+    transactionProvider.updateParamValueOnContext("456");
+
+    assertThat(transactionProvider.getParamValueFromRequest()).isEqualTo("123");
+    assertThat(journeyProvider.getParamValueFromRequest()).isEmpty();
+    assertThat(transactionProvider.getParamValueFromContext()).isEqualTo("456");
+  }
+
+  @Test
+  public void shouldPackParamsIntoEnvelope() {
+    ContextParamManager envelopeManager = new ContextParamManager(
+        new ContextParamEnvelope(KEY, true), journeyProvider, transactionProvider);
+    transactionProvider.updateParamValueOnContext("123");
+
+    String url = envelopeManager.addParamsToCall(call("/page"));
+
+    assertThat(url).startsWith("/page?ctx_envelope=").doesNotContain("ctx_transaction");
+    assertThat(envelopeManager.getAllContextParams()).extracting(ContextParam::getName).containsExactly("ctx_envelope");
+
+    setContext(new Http.RequestBuilder().uri(url));
+    envelopeManager.setAllContextArgsFromRequest();
+
+    assertThat(transactionProvider.getParamValueFromContext()).isEqualTo("123");
+    assertThat(journeyProvider.getParamValueFromContext()).isEmpty();
+  }
+
+  @Test
+  public void shouldIgnoreIndividualParamsWhenEnvelopeIsValid() {
+    ContextParamManager envelopeManager = new ContextParamManager(
+        new ContextParamEnvelope(KEY, true), journeyProvider, transactionProvider);
+    transactionProvider.updateParamValueOnContext("123");
+    String url = envelopeManager.addParamsToCall(call("/page"));
+
+    setContext(new Http.RequestBuilder().uri(url + "&ctx_transaction=456&ctx_journey=journey"));
+    envelopeManager.setAllContextArgsFromRequest();
+
+    assertThat(transactionProvider.getParamValueFromContext()).isEqualTo("123");
+    assertThat(journeyProvider.getParamValueFromContext()).isEmpty();
+  }
+
+  @Test
+  public void shouldNotFallBackToIndividualParamsWhenEnvelopeIsTampered() {
+    ContextParamEnvelope envelope = new ContextParamEnvelope(KEY, true);
+    String token = envelope.encode(ImmutableMap.of("ctx_transaction", "123"));
+    String tamperedToken = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA";
+
+    assertEnvelopeRejected(envelope, "ctx_envelope=" + tamperedToken + "&ctx_transaction=456");
+  }
+
+  @Test
+  public void shouldNotFallBackToIndividualParamsWhenEnvelopeIsExpired() {
+    Instant issuedAt = Instant.parse("2017-01-01T00:00:00Z");
+    String token = new ContextParamEnvelope(KEY, true, Duration.ofHours(1), () -> "",
+        Clock.fixed(issuedAt, ZoneOffset.UTC)).encode(ImmutableMap.of("ctx_transaction", "123"));
+    ContextParamEnvelope envelope = new ContextParamEnvelope(KEY, true, Duration.ofHours(1), () -> "", true,
+        Clock.fixed(issuedAt.plus(Duration.ofHours(2)), ZoneOffset.UTC));
+
+    assertEnvelopeRejected(envelope, "ctx_envelope=" + token + "&ctx_transaction=456");
+  }
+
+  @Test
+  public void shouldNotFallBackToIndividualParamsWhenEnvelopeIsForOtherBinding() {
+    String token = new ContextParamEnvelope(KEY, true, Duration.ofHours(1), () -> "user1")
+        .encode(ImmutableMap.of("ctx_transaction", "123"));
+    ContextParamEnvelope envelope = new ContextParamEnvelope(KEY, true, Duration.ofHours(1), () -> "user2", true);
+
+    assertEnvelopeRejected(envelope, "ctx_envelope=" + token + "&ctx_transaction=456");
+  }
+
+  @Test
+  public void shouldIgnoreIndividualParamsWhenEnvelopeIsStripped() {
+    assertEnvelopeRejected(new ContextParamEnvelope(KEY, true), "ctx_transaction=456&ctx_journey=journey");
+  }
+
+  @Test
+  public void shouldReadIndividualParamsWithoutEnvelopeWhenUnsignedParamsAccepted() {
+    ContextParamManager envelopeManager = new ContextParamManager(
+        new ContextParamEnvelope(KEY, true, Duration.ofHours(1), () -> "", true), journeyProvider, transactionProvider);
+
+    setContext(new Http.RequestBuilder().uri("/page?ctx_transaction=456"));
+    envelopeManager.setAllContextArgsFromRequest();
+
+    assertThat(transactionProvider.getParamValueFromContext()).isEqualTo("456");
+    assertThat(transactionProvider.getParamValueFromRequest()).isEqualTo("456");
+  }
+
+  private void assertEnvelopeRejected(ContextParamEnvelope envelope, String queryString) {
+    ContextParamManager envelopeManager = new ContextParamManager(envelope, journeyProvider, transactionProvider);
+    ContextParamProvider unknownProvider = new TestContextParamProvider("ctx_other");
+
+    setContext(new Http.RequestBuilder().uri("/page?" + queryString + "&ctx_other=789"));
+    envelopeManager.setAllContextArgsFromRequest();
+
+    assertThat(transactionProvider.getParamValueFromContext()).isEmpty();
+    assertThat(journeyProvider.getParamValueFromContext()).isEmpty();
+    assertThat(transactionProvider.getParamValueFromRequest()).isEmpty();
+    assertThat(unknownProvider.getParamValueFromRequest()).isEmpty();
+  }
+
+  @Test
+  public void shouldRenderEscapedFormParams() {
+    journeyProvider.updateParamValueOnContext("a\"<b>&c");
+    transactionProvider.updateParamValueOnContext("123");
+
+    assertThat(contextParamManager.getContextFormParamsHtml().body()).isEqualTo(
+        "<input type=\"hidden\" name=\"ctx_journey\" value=\"a&quot;&lt;b&gt;&amp;c\" />\n" +
+            "<input type=\"hidden\" name=\"ctx_transaction\" value=\"123\" />\n");
+    assertThat(contextParamManager.getContextFormParamsHtml()).isSameAs(contextParamManager.getContextFormParamsHtml());
+
+    journeyProvider.updateParamValueOnContext("");
+
+    assertThat(contextParamManager.getContextFormParamsHtml().body())
+        .isEqualTo("<input type=\"hidden\" name=\"ctx_transaction\" value=\"123\" />\n");
+  }
+
+  private static void setContext(Http.RequestBuilder requestBuilder) {
+    Http.Context.current.set(new Http.Context(requestBuilder, mock(JavaContextComponents.class)));
+  }
+
+  private static Call call(String url) {
+    return new play.api.mvc.Call("GET", url, null);
+  }
+
+  private static class TestContextParamProvider extends ContextParamProvider {
+
+    private final String paramName;
+
+    private TestContextParamProvider(String paramName) {
+      this.paramName = paramName;
+    }
+
+    @Override
+    public String getParamName() {
+      return paramName;
+    }
+  }
+
+}
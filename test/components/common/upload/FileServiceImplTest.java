@@ -0,0 +1,61 @@
+package components.common.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.services.s3.AmazonS3;
+import components.common.client.VirusCheckerClient;
+import org.junit.Test;
+import play.libs.concurrent.HttpExecutionContext;
+import play.mvc.Http;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class FileServiceImplTest {
+
+  private final AmazonS3 amazonS3 = mock(AmazonS3.class);
+  private final FileServiceImpl fileService = new FileServiceImpl("bucket", amazonS3, mock(VirusCheckerClient.class),
+      new HttpExecutionContext(Runnable::run));
+
+  @Test
+  public void shouldMoveStreamedFileFromStagingFolder() throws Exception {
+    UploadResult staged = UploadResult.successfulUpload("fil_1", "file.txt", "bucket", "staging", 5L, null);
+
+    List<UploadResult> results = processUpload(new MultipartResult(staged));
+
+    assertThat(results).hasSize(1);
+    assertThat(results.get(0).isValid()).isTrue();
+    assertThat(results.get(0).getId()).isEqualTo("fil_1");
+    assertThat(results.get(0).getFolder()).isEqualTo("folder");
+    assertThat(results.get(0).getSize()).isEqualTo(5L);
+    verify(amazonS3).copyObject("bucket", "staging/fil_1", "bucket", "folder/fil_1");
+    verify(amazonS3).deleteObject("bucket", "staging/fil_1");
+  }
+
+  @Test
+  public void shouldReturnFailedStreamedFileWithoutMovingIt() throws Exception {
+    UploadResult failed = UploadResult.failedUpload("file.txt", "Not a valid file");
+
+    List<UploadResult> results = processUpload(new MultipartResult(failed));
+
+    assertThat(results).containsExactly(failed);
+    verify(amazonS3, never()).copyObject(anyString(), anyString(), anyString(), anyString());
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<UploadResult> processUpload(MultipartResult multipartResult) throws Exception {
+    Http.MultipartFormData<MultipartResult> body = mock(Http.MultipartFormData.class);
+    when(body.getFiles()).thenReturn(Collections.singletonList(
+        new Http.MultipartFormData.FilePart<>("fileupload", "file.txt", "text/plain", multipartResult)));
+    Http.Request request = mock(Http.Request.class);
+    when(request.body()).thenReturn(new Http.RequestBody(body));
+    return fileService.processUpload("folder", request).toCompletableFuture().get(5, TimeUnit.SECONDS);
+  }
+
+}
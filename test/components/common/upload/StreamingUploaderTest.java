@@ -0,0 +1,160 @@
+package components.common.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import components.common.client.VirusCheckerClient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class StreamingUploaderTest {
+
+  private static final int PART_SIZE = 10;
+
+  private static ActorSystem actorSystem;
+  private static Materializer materializer;
+  private static ExecutorService s3Executor;
+
+  private AmazonS3 amazonS3;
+  private VirusCheckerClient virusCheckerClient;
+  private StreamingUploader streamingUploader;
+  private final List<ByteString> scanned = new ArrayList<>();
+  private final List<String> s3Threads = new CopyOnWriteArrayList<>();
+
+  @BeforeClass
+  public static void startActorSystem() {
+    actorSystem = ActorSystem.create("StreamingUploaderTest");
+    materializer = ActorMaterializer.create(actorSystem);
+    s3Executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "s3-test"));
+  }
+
+  @AfterClass
+  public static void stopActorSystem() {
+    actorSystem.terminate();
+    s3Executor.shutdown();
+  }
+
+  @Before
+  public void setUp() {
+    amazonS3 = mock(AmazonS3.class);
+    virusCheckerClient = mock(VirusCheckerClient.class);
+    streamingUploader = new StreamingUploader("bucket", amazonS3, virusCheckerClient, materializer, s3Executor,
+        PART_SIZE);
+    when(amazonS3.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenAnswer(invocation -> {
+      s3Threads.add(Thread.currentThread().getName());
+      InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+      result.setUploadId("upload-id");
+      return result;
+    });
+    when(amazonS3.uploadPart(any(UploadPartRequest.class))).thenAnswer(invocation -> {
+      s3Threads.add(Thread.currentThread().getName());
+      UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+      UploadPartResult result = new UploadPartResult();
+      result.setPartNumber(request.getPartNumber());
+      result.setETag("etag-" + request.getPartNumber());
+      return result;
+    });
+  }
+
+  @Test
+  public void shouldPutSmallFileWhichPassesVirusCheck() throws Exception {
+    mockVirusCheck(true);
+
+    UploadResult result = upload("hello", "wor");
+
+    assertThat(result.isValid()).isTrue();
+    assertThat(result.getId()).startsWith("fil_");
+    assertThat(result.getFolder()).isEqualTo("folder");
+    assertThat(result.getSize()).isEqualTo(8L);
+    assertThat(scanned.get(0).utf8String()).isEqualTo("hellowor");
+    verify(amazonS3).putObject(eq("bucket"), eq("folder/" + result.getId()), any(InputStream.class), any(ObjectMetadata.class));
+    verify(amazonS3, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+  }
+
+  @Test
+  public void shouldUploadPartsOfLargeFileAndCompleteWhenVirusCheckPasses() throws Exception {
+    mockVirusCheck(true);
+
+    UploadResult result = upload("0123456", "7890123", "4567890", "123");
+
+    assertThat(result.isValid()).isTrue();
+    assertThat(result.getSize()).isEqualTo(24L);
+    ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+    verify(amazonS3, times(3)).uploadPart(parts.capture());
+    assertThat(parts.getAllValues()).extracting(UploadPartRequest::getPartSize).containsExactly(10L, 10L, 4L);
+    ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    verify(amazonS3).completeMultipartUpload(complete.capture());
+    assertThat(complete.getValue().getPartETags()).extracting(PartETag::getPartNumber).containsExactly(1, 2, 3);
+    assertThat(scanned.get(0).utf8String()).isEqualTo("012345678901234567890123");
+    assertThat(s3Threads).hasSize(4).containsOnly("s3-test");
+  }
+
+  @Test
+  public void shouldAbortUploadWhenVirusCheckFails() throws Exception {
+    mockVirusCheck(false);
+
+    UploadResult result = upload("0123456789", "0123456789", "0");
+
+    assertThat(result.isValid()).isFalse();
+    assertThat(result.getError()).isEqualTo("Not a valid file");
+    verify(amazonS3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    verify(amazonS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    verify(amazonS3, never()).putObject(anyString(), anyString(), any(InputStream.class), any(ObjectMetadata.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void mockVirusCheck(boolean isOk) {
+    when(virusCheckerClient.isOk(any(Source.class))).thenAnswer(invocation -> {
+      Source<ByteString, ?> source = (Source<ByteString, ?>) invocation.getArguments()[0];
+      return source.runFold(ByteString.empty(), ByteString::concat, materializer)
+          .thenApply(bytes -> {
+            scanned.add(bytes);
+            return isOk;
+          });
+    });
+  }
+
+  private UploadResult upload(String... chunks) throws Exception {
+    List<ByteString> bytes = new ArrayList<>();
+    for (String chunk : chunks) {
+      bytes.add(ByteString.fromString(chunk));
+    }
+    return Source.from(bytes)
+        .runWith(streamingUploader.sink("folder", "file.txt"), materializer)
+        .toCompletableFuture()
+        .get(10, TimeUnit.SECONDS);
+  }
+
+}
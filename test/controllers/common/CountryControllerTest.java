@@ -0,0 +1,79 @@
+package controllers.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.typesafe.config.ConfigFactory;
+import components.common.cache.CountryProvider;
+import components.common.cache.CountrySearchIndex;
+import components.common.cache.CountrySnapshot;
+import components.common.json.JsonCodec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.core.j.JavaContextComponents;
+import play.http.HttpEntity;
+import play.mvc.Http;
+import play.mvc.Result;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.Arrays;
+
+public class CountryControllerTest {
+
+  private final CountryProvider countryProvider = mock(CountryProvider.class);
+  private final CountrySearchIndex index = new CountrySearchIndex(new CountrySnapshot(1, Arrays.asList(
+      new CountryView("CTRY1", "France", null),
+      new CountryView("CTRY2", "Spain", null))));
+  private final CountryController controller = new CountryController(countryProvider, new JsonCodec(new ObjectMapper()),
+      ConfigFactory.parseString("countryCache.refreshInterval = 15 minutes"));
+
+  @Before
+  public void setUp() {
+    when(countryProvider.getSearchIndex()).thenReturn(index);
+  }
+
+  @After
+  public void tearDown() {
+    Http.Context.current.remove();
+  }
+
+  @Test
+  public void shouldServeAllCountries() throws Exception {
+    setContext(new Http.RequestBuilder().uri("/countries"));
+
+    Result result = controller.countries("", 10);
+
+    assertThat(result.status()).isEqualTo(200);
+    assertThat(result.contentType()).contains("application/json");
+    assertThat(result.header("ETag")).contains("\"" + index.getEtag() + "\"");
+    assertThat(result.header("Cache-Control")).contains("public, max-age=900");
+  }
+
+  @Test
+  public void shouldSearchCountries() throws Exception {
+    setContext(new Http.RequestBuilder().uri("/countries?q=spa"));
+
+    Result result = controller.countries("spa", 10);
+
+    assertThat(result.status()).isEqualTo(200);
+    assertThat(((HttpEntity.Strict) result.body()).data().utf8String()).contains("CTRY2").doesNotContain("CTRY1");
+  }
+
+  @Test
+  public void shouldReturnNotModifiedForMatchingEtag() throws Exception {
+    setContext(new Http.RequestBuilder().uri("/countries").header("If-None-Match", "W/\"" + index.getEtag() + "\""));
+
+    Result result = controller.countries("", 10);
+
+    assertThat(result.status()).isEqualTo(304);
+    assertThat(result.header("ETag")).contains("\"" + index.getEtag() + "\"");
+  }
+
+  private static void setContext(Http.RequestBuilder requestBuilder) {
+    Http.Context.current.set(new Http.Context(requestBuilder, mock(JavaContextComponents.class)));
+  }
+
+}
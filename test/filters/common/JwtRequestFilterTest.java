@@ -3,6 +3,8 @@ package filters.common;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static play.mvc.Results.internalServerError;
 import static play.mvc.Results.notFound;
@@ -10,9 +12,17 @@ import static play.mvc.Results.ok;
 import static play.mvc.Results.unauthorized;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.name.Names;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import components.common.auth.AuthInfo;
 import components.common.auth.SpireAuthManager;
+import components.common.client.ClientPolicy;
+import components.common.client.CustomerServiceClient;
 import components.common.client.UserServiceClientBasicAuth;
+import components.common.client.UserServiceClientJwt;
 import org.apache.commons.lang3.StringUtils;
 import org.jose4j.jwa.AlgorithmConstraints;
 import org.jose4j.jws.AlgorithmIdentifiers;
@@ -22,6 +32,7 @@ import org.jose4j.jwt.consumer.JwtConsumerBuilder;
 import org.jose4j.keys.HmacKey;
 import org.junit.Before;
 import org.junit.Test;
+import org.slf4j.MDC;
 import play.libs.Json;
 import play.libs.concurrent.HttpExecutionContext;
 import play.libs.ws.StandaloneWSRequest;
@@ -34,10 +45,15 @@ import play.mvc.Results;
 import play.routing.RoutingDsl;
 import play.server.Server;
 import play.test.WSTestClient;
+import uk.gov.bis.lite.user.api.view.UserAccountTypeView;
 
 import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 public class JwtRequestFilterTest {
@@ -45,6 +61,8 @@ public class JwtRequestFilterTest {
   private static final String UNAUTHORIZED_USER_ID = "UNAUTHORIZED";
   private static final String ERROR_USER_ID = "ERROR";
   private static final String ISSUER = "some-service";
+  private static final String KEY = "demo-secret-which-is-very-long-so-as-to-hit-the-byte-requirement";
+  private final AtomicInteger userAccountTypeRequestCount = new AtomicInteger();
   private Server server;
 
   @Before
@@ -52,6 +70,7 @@ public class JwtRequestFilterTest {
     server = Server.forRouter(builtInComponents -> RoutingDsl.fromComponents(builtInComponents)
         .GET("/test").routeTo((Supplier<Result>) Results::ok)
         .GET("/user-account-type/:id").routeTo(id -> {
+          userAccountTypeRequestCount.incrementAndGet();
           if (USER_ID.equals(id)) {
             InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream("common/client/user-account-type.json");
             JsonNode jsonNode = Json.parse(inputStream);
@@ -76,8 +95,6 @@ public class JwtRequestFilterTest {
    * @throws Exception
    */
   private JwtClaims doRequestFilterTestWithGivenAuthInfo(AuthInfo authInfo, String issuer) throws Exception {
-    String key = "demo-secret-which-is-very-long-so-as-to-hit-the-byte-requirement";
-
     WSClient wsClient = WSTestClient.newClient(server.httpPort());
 
     SpireAuthManager spireAuthManager = mock(SpireAuthManager.class);
@@ -88,12 +105,18 @@ public class JwtRequestFilterTest {
 
     // Construct user service client
     String serviceUrl = "http://localhost:" + server.httpPort();
-    UserServiceClientBasicAuth userServiceClientBasicAuth = new UserServiceClientBasicAuth(serviceUrl, 1000, "service:password", wsClient, new HttpExecutionContext(Runnable::run));
-
-    JwtRequestFilter filter = new JwtRequestFilter(spireAuthManager, new JwtRequestFilterConfig(key, issuer), userServiceClientBasicAuth);
-    filter.apply(executor)
-        .apply(wsClient.url("/test"))
-        .toCompletableFuture().get();
+    UserServiceClientBasicAuth userServiceClientBasicAuth = new UserServiceClientBasicAuth(serviceUrl, 1000, "service:password", wsClient, new HttpExecutionContext(Runnable::run),
+        ClientPolicy.DEFAULT);
+
+    JwtRequestFilter filter = new JwtRequestFilter(spireAuthManager, new JwtRequestFilterConfig(KEY, issuer), userServiceClientBasicAuth);
+    try {
+      filter.apply(executor)
+          .apply(wsClient.url("/test"))
+          .toCompletableFuture().get();
+    } catch (ExecutionException e) {
+      // The token is created asynchronously, so errors requesting the user account type complete the request exceptionally
+      throw e.getCause() instanceof JwtRequestFilterException ? (JwtRequestFilterException) e.getCause() : e;
+    }
 
     // Extract token from Authorization header
     String authorizationHeader = (String) executor.getStandaloneWSRequest().getHeaders().get("Authorization").toArray()[0];
@@ -104,7 +127,7 @@ public class JwtRequestFilterTest {
 
     // Validate signature, consumer claims without restrictions
     JwtConsumer consumer = new JwtConsumerBuilder()
-        .setVerificationKey(new HmacKey(key.getBytes()))
+        .setVerificationKey(new HmacKey(KEY.getBytes()))
         .setJwsAlgorithmConstraints(new AlgorithmConstraints(AlgorithmConstraints.ConstraintType.WHITELIST, AlgorithmIdentifiers.HMAC_SHA256))
         .build();
 
@@ -267,6 +290,147 @@ public class JwtRequestFilterTest {
     assertThat(claimsMap.get("fullName")).isNull();
   }
 
+  @Test
+  public void tokenIsReusedForSameClaims() throws Exception {
+    AuthInfo authInfo = mock(AuthInfo.class);
+    when(authInfo.getId()).thenReturn(USER_ID);
+    when(authInfo.getEmail()).thenReturn("example@example.org");
+    when(authInfo.getFullName()).thenReturn("Mr test");
+
+    String serviceUrl = "http://localhost:" + server.httpPort();
+    WSClient wsClient = WSTestClient.newClient(server.httpPort());
+    UserServiceClientBasicAuth userServiceClientBasicAuth = new UserServiceClientBasicAuth(serviceUrl, 1000, "service:password", wsClient, new HttpExecutionContext(Runnable::run),
+        ClientPolicy.DEFAULT);
+    JwtRequestFilter filter = new JwtRequestFilter(mock(SpireAuthManager.class), new JwtRequestFilterConfig(KEY, ISSUER), userServiceClientBasicAuth);
+
+    String token = filter.getToken(authInfo).toCompletableFuture().get();
+    assertThat(filter.getToken(authInfo).toCompletableFuture().get()).isEqualTo(token);
+    assertThat(userAccountTypeRequestCount.get()).isEqualTo(1);
+
+    AuthInfo otherAuthInfo = mock(AuthInfo.class);
+    when(otherAuthInfo.getId()).thenReturn(USER_ID);
+    when(otherAuthInfo.getEmail()).thenReturn("other@example.org");
+    when(otherAuthInfo.getFullName()).thenReturn("Mr test");
+
+    assertThat(filter.getToken(otherAuthInfo).toCompletableFuture().get()).isNotEqualTo(token);
+    assertThat(userAccountTypeRequestCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void userServiceErrorIsNotCached() throws Exception {
+    AuthInfo authInfo = mock(AuthInfo.class);
+    when(authInfo.getId()).thenReturn(ERROR_USER_ID);
+
+    String serviceUrl = "http://localhost:" + server.httpPort();
+    WSClient wsClient = WSTestClient.newClient(server.httpPort());
+    UserServiceClientBasicAuth userServiceClientBasicAuth = new UserServiceClientBasicAuth(serviceUrl, 1000, "service:password", wsClient, new HttpExecutionContext(Runnable::run),
+        ClientPolicy.DEFAULT);
+    JwtRequestFilter filter = new JwtRequestFilter(mock(SpireAuthManager.class), new JwtRequestFilterConfig(KEY, ISSUER), userServiceClientBasicAuth);
+
+    for (int i = 0; i < 2; i++) {
+      assertThatThrownBy(() -> filter.getToken(authInfo).toCompletableFuture().get())
+          .hasCauseExactlyInstanceOf(JwtRequestFilterException.class);
+    }
+    assertThat(userAccountTypeRequestCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void requestIsSentWithoutBlockingOnUserService() throws Exception {
+    AuthInfo authInfo = mock(AuthInfo.class);
+    when(authInfo.getId()).thenReturn(USER_ID);
+
+    CompletableFuture<UserAccountTypeView> userAccountTypeFuture = new CompletableFuture<>();
+    UserServiceClientBasicAuth userServiceClientBasicAuth = mock(UserServiceClientBasicAuth.class);
+    when(userServiceClientBasicAuth.getUserAccountTypeView(USER_ID)).thenReturn(userAccountTypeFuture);
+
+    WSClient wsClient = WSTestClient.newClient(server.httpPort());
+    WSRequestExecutorTestHarness executor = new WSRequestExecutorTestHarness();
+    JwtRequestFilter filter = new JwtRequestFilter(mock(SpireAuthManager.class), new JwtRequestFilterConfig(KEY, ISSUER), userServiceClientBasicAuth);
+
+    CompletionStage<StandaloneWSResponse> response = filter.forAuthInfo(authInfo).apply(executor).apply(wsClient.url("/test"));
+    assertThat(response.toCompletableFuture().isDone()).isFalse();
+    assertThat(executor.getStandaloneWSRequest()).isNull();
+
+    userAccountTypeFuture.complete(Json.fromJson(Json.parse("{\"accountType\": \"EXPORTER\"}"), UserAccountTypeView.class));
+
+    assertThat(response.toCompletableFuture().get().getStatus()).isEqualTo(200);
+    assertThat(executor.getStandaloneWSRequest().getHeaders().get("Authorization")).hasSize(1);
+  }
+
+  @Test
+  public void laterFiltersRunWithMdcOfRequestThread() throws Exception {
+    AuthInfo authInfo = mock(AuthInfo.class);
+    when(authInfo.getId()).thenReturn(USER_ID);
+
+    CompletableFuture<UserAccountTypeView> userAccountTypeFuture = new CompletableFuture<>();
+    UserServiceClientBasicAuth userServiceClientBasicAuth = mock(UserServiceClientBasicAuth.class);
+    when(userServiceClientBasicAuth.getUserAccountTypeView(USER_ID)).thenReturn(userAccountTypeFuture);
+    JwtRequestFilter filter = new JwtRequestFilter(mock(SpireAuthManager.class), new JwtRequestFilterConfig(KEY, ISSUER), userServiceClientBasicAuth);
+
+    MDC.put("corrID", "request-correlation-id");
+    JwtUserRequestFilter userFilter;
+    try {
+      userFilter = filter.forAuthInfo(authInfo);
+    } finally {
+      MDC.clear();
+    }
+
+    AtomicReference<String> correlationId = new AtomicReference<>();
+    WSClient wsClient = WSTestClient.newClient(server.httpPort());
+    CompletionStage<StandaloneWSResponse> response = userFilter.apply(request -> {
+      correlationId.set(MDC.get("corrID"));
+      return (CompletionStage<StandaloneWSResponse>) request.execute();
+    }).apply(wsClient.url("/test"));
+
+    AtomicReference<String> completingThreadCorrelationId = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      MDC.put("corrID", "other-correlation-id");
+      userAccountTypeFuture.complete(Json.fromJson(Json.parse("{\"accountType\": \"EXPORTER\"}"), UserAccountTypeView.class));
+      completingThreadCorrelationId.set(MDC.get("corrID"));
+    });
+    thread.start();
+    thread.join();
+
+    assertThat(response.toCompletableFuture().get().getStatus()).isEqualTo(200);
+    assertThat(correlationId.get()).isEqualTo("request-correlation-id");
+    assertThat(completingThreadCorrelationId.get()).isEqualTo("other-correlation-id");
+  }
+
+  @Test
+  public void clientsShareUserServiceLookup() throws Exception {
+    AuthInfo authInfo = mock(AuthInfo.class);
+    when(authInfo.getId()).thenReturn(USER_ID);
+    SpireAuthManager spireAuthManager = mock(SpireAuthManager.class);
+    when(spireAuthManager.getAuthInfoFromContext()).thenReturn(authInfo);
+    UserServiceClientBasicAuth userServiceClientBasicAuth = mock(UserServiceClientBasicAuth.class);
+    when(userServiceClientBasicAuth.getUserAccountTypeView(USER_ID)).thenReturn(CompletableFuture.completedFuture(
+        Json.fromJson(Json.parse("{\"accountType\": \"EXPORTER\"}"), UserAccountTypeView.class)));
+    WSClient wsClient = WSTestClient.newClient(server.httpPort());
+    String serviceUrl = "http://localhost:" + server.httpPort();
+
+    Injector injector = Guice.createInjector(binder -> {
+      binder.bind(SpireAuthManager.class).toInstance(spireAuthManager);
+      binder.bind(JwtRequestFilterConfig.class).toInstance(new JwtRequestFilterConfig(KEY, ISSUER));
+      binder.bind(UserServiceClientBasicAuth.class).toInstance(userServiceClientBasicAuth);
+      binder.bind(WSClient.class).toInstance(wsClient);
+      binder.bind(HttpExecutionContext.class).toInstance(new HttpExecutionContext(Runnable::run));
+      binder.bind(Config.class).toInstance(ConfigFactory.empty());
+      binder.bindConstant().annotatedWith(Names.named("customerServiceAddress")).to(serviceUrl);
+      binder.bindConstant().annotatedWith(Names.named("customerServiceTimeout")).to(1000);
+      binder.bindConstant().annotatedWith(Names.named("customerServiceCredentials")).to("service:password");
+      binder.bindConstant().annotatedWith(Names.named("userServiceAddress")).to(serviceUrl);
+      binder.bindConstant().annotatedWith(Names.named("userServiceTimeout")).to(1000);
+    });
+
+    injector.getInstance(CustomerServiceClient.class).getCustomersByUserId(USER_ID)
+        .handle((result, error) -> null).toCompletableFuture().get();
+    injector.getInstance(UserServiceClientJwt.class).getUserPrivilegeView(USER_ID)
+        .handle((result, error) -> null).toCompletableFuture().get();
+
+    assertThat(injector.getInstance(JwtRequestFilter.class)).isSameAs(injector.getInstance(JwtRequestFilter.class));
+    verify(userServiceClientBasicAuth, times(1)).getUserAccountTypeView(USER_ID);
+  }
+
   @Test
   public void userServiceErrorNotFound() throws Exception {
     AuthInfo authInfo = mock(AuthInfo.class);
@@ -17,6 +17,7 @@ import au.com.dius.pact.consumer.dsl.PactDslJsonRootValue;
 import au.com.dius.pact.consumer.dsl.PactDslWithProvider;
 import au.com.dius.pact.model.RequestResponsePact;
 import components.common.client.ClientException;
+import components.common.client.ClientPolicy;
 import components.common.client.CustomerServiceClient;
 import org.junit.After;
 import org.junit.Before;
@@ -58,7 +59,8 @@ public class CommonCustomerServiceConsumerPact {
         1000, "service:password",
         wsClient,
         new HttpExecutionContext(Runnable::run),
-        new JwtTestRequestFilter());
+        new JwtTestRequestFilter(),
+        ClientPolicy.DEFAULT);
   }
 
   @Pact(provider = PROVIDER, consumer = CONSUMER)
@@ -16,6 +16,7 @@ import au.com.dius.pact.consumer.dsl.PactDslJsonRootValue;
 import au.com.dius.pact.consumer.dsl.PactDslWithProvider;
 import au.com.dius.pact.model.RequestResponsePact;
 import components.common.client.ClientException;
+import components.common.client.ClientPolicy;
 import components.common.client.OgelServiceClient;
 import org.junit.After;
 import org.junit.Before;
@@ -71,7 +72,11 @@ public class CommonOgelServiceConsumerPact {
         10000,
         "service:password",
         wsClient,
-        new HttpExecutionContext(Runnable::run));
+        new HttpExecutionContext(Runnable::run),
+        OgelServiceClient.DEFAULT_OGEL_CACHE_POLICY,
+        OgelServiceClient.DEFAULT_APPLICABLE_OGELS_CACHE_POLICY,
+        null,
+        ClientPolicy.DEFAULT);
   }
 
   @Pact(provider = PROVIDER, consumer = CONSUMER)
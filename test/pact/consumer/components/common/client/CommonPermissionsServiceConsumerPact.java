@@ -16,6 +16,7 @@ import au.com.dius.pact.consumer.dsl.PactDslJsonBody;
 import au.com.dius.pact.consumer.dsl.PactDslWithProvider;
 import au.com.dius.pact.model.RequestResponsePact;
 import components.common.client.ClientException;
+import components.common.client.ClientPolicy;
 import components.common.client.PermissionsServiceClient;
 import org.junit.After;
 import org.junit.Before;
@@ -71,7 +72,8 @@ public class CommonPermissionsServiceConsumerPact {
         1000, "service:password",
         wsClient,
         new HttpExecutionContext(Runnable::run),
-        new JwtTestRequestFilter());
+        new JwtTestRequestFilter(),
+        ClientPolicy.DEFAULT);
   }
 
   @Pact(provider = PROVIDER, consumer = CONSUMER)
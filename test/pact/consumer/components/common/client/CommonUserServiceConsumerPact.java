@@ -15,6 +15,7 @@ import au.com.dius.pact.consumer.dsl.PactDslJsonBody;
 import au.com.dius.pact.consumer.dsl.PactDslWithProvider;
 import au.com.dius.pact.model.RequestResponsePact;
 import components.common.client.ClientException;
+import components.common.client.ClientPolicy;
 import components.common.client.UserServiceClientBasicAuth;
 import components.common.client.UserServiceClientJwt;
 import org.junit.After;
@@ -70,7 +71,8 @@ public class CommonUserServiceConsumerPact {
         10000,
         "service:password",
         wsClient,
-        new HttpExecutionContext(Runnable::run));
+        new HttpExecutionContext(Runnable::run),
+        ClientPolicy.DEFAULT);
   }
 
   public static UserServiceClientJwt buildJwtClient(WSClient wsClient, PactProviderRuleMk2 mockProvider) {
@@ -78,7 +80,8 @@ public class CommonUserServiceConsumerPact {
         10000,
         new JwtTestRequestFilter(),
         wsClient,
-        new HttpExecutionContext(Runnable::run));
+        new HttpExecutionContext(Runnable::run),
+        ClientPolicy.DEFAULT);
   }
 
   @Pact(provider = PROVIDER, consumer = CONSUMER)
@@ -1,6 +1,7 @@
 package pact.consumer.components.common.client;
 
 import filters.common.JwtRequestFilter;
+import filters.common.JwtUserRequestFilter;
 import play.libs.ws.WSRequestExecutor;
 
 public class JwtTestRequestFilter extends JwtRequestFilter {
@@ -9,6 +10,11 @@ public class JwtTestRequestFilter extends JwtRequestFilter {
     super(null, null, null);
   }
 
+  @Override
+  public JwtUserRequestFilter forCurrentUser() {
+    return new JwtUserRequestFilter(null, this);
+  }
+
   @Override
   public WSRequestExecutor apply(WSRequestExecutor executor) {
     return request -> {
@@ -1,24 +1,40 @@
 package pact.provider.components.common.client;
 
-import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
 import com.google.common.collect.ImmutableMap;
 import components.common.client.NotificationServiceClient;
 import org.mockito.ArgumentCaptor;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 public class CommonNotificationServiceProviderPact {
 
   public static String validEmailNotification(AmazonSQS amazonSQS) {
+    when(amazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+      SendMessageBatchRequest request = (SendMessageBatchRequest) invocation.getArguments()[0];
+      List<SendMessageBatchResultEntry> entries = request.getEntries().stream()
+          .map(entry -> new SendMessageBatchResultEntry().withId(entry.getId()))
+          .collect(Collectors.toList());
+      return new SendMessageBatchResult().withSuccessful(entries);
+    });
     NotificationServiceClient notificationServiceClient = new NotificationServiceClient("url", amazonSQS);
     notificationServiceClient.sendEmail("validTemplate", "user@test.com",
         ImmutableMap.of("validParamOne", "valueOne", "validParamTwo", "valueTwo"));
+    notificationServiceClient.close();
 
-    ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
-    verify(amazonSQS).sendMessage(eq("url"), captor.capture());
+    ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+    verify(amazonSQS, atLeastOnce()).sendMessageBatch(captor.capture());
 
-    return captor.getValue();
+    return captor.getValue().getEntries().get(0).getMessageBody();
   }
 
 }
@@ -0,0 +1,54 @@
+package utils.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import components.common.cache.CountrySnapshot;
+import org.junit.Test;
+import uk.gov.bis.lite.countryservice.api.CountryView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CountryOptionsTest {
+
+  private static final List<CountryView> COUNTRIES = Arrays.asList(
+      new CountryView("CTRY0", "Bosnia & Herzegovina", Collections.singletonList("Bosnia")),
+      new CountryView("CTRY1", "France", null));
+
+  @Test
+  public void shouldRenderEscapedOptions() {
+    String html = CountryOptions.render(COUNTRIES, null).body();
+
+    assertThat(html).isEqualTo(
+        "<option value=\"CTRY0\" data-alternative-spellings=\"Bosnia\" data-relevancy-booster=\"1\">Bosnia &amp; Herzegovina</option>\n" +
+        "<option value=\"CTRY1\" data-alternative-spellings=\"\" data-relevancy-booster=\"1\">France</option>\n");
+  }
+
+  @Test
+  public void shouldMarkSelectedCountry() {
+    String html = CountryOptions.render(COUNTRIES, "CTRY1").body();
+
+    assertThat(html).contains("<option value=\"CTRY1\" data-alternative-spellings=\"\" data-relevancy-booster=\"1\" selected=\"selected\">France</option>");
+    assertThat(html).containsOnlyOnce("selected=");
+    assertThat(CountryOptions.render(COUNTRIES, "CTRY2").body()).doesNotContain("selected=");
+  }
+
+  @Test
+  public void shouldReuseRenderedOptionsOfSnapshot() {
+    List<CountryView> countries = new CountrySnapshot(1, COUNTRIES).getCountries();
+
+    assertThat(CountryOptions.render(countries, null)).isSameAs(CountryOptions.render(countries, null));
+    assertThat(CountryOptions.render(countries, "CTRY0")).isSameAs(CountryOptions.render(countries, "CTRY0"));
+    assertThat(CountryOptions.render(new ArrayList<>(countries), null).body())
+        .isEqualTo(CountryOptions.render(countries, null).body());
+  }
+
+  @Test
+  public void shouldNotCacheOptionsOfOtherLists() {
+    assertThat(CountryOptions.render(COUNTRIES, null)).isNotSameAs(CountryOptions.render(COUNTRIES, null));
+    assertThat(CountryOptions.render(COUNTRIES, "CTRY1").body()).contains("selected=");
+  }
+
+}